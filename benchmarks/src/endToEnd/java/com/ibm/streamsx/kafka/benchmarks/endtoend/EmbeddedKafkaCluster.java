@@ -0,0 +1,116 @@
+package com.ibm.streamsx.kafka.benchmarks.endtoend;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import kafka.server.KafkaServerStartable;
+
+/**
+ * A single node Kafka cluster with ZooKeeper, which runs within this JVM and listens on localhost only.
+ * The data of ZooKeeper and the broker are written to a temporary directory, which is deleted on close.
+ */
+public class EmbeddedKafkaCluster implements AutoCloseable {
+
+    private static final String HOST = "localhost"; //$NON-NLS-1$
+    private static final long STARTUP_TIMEOUT_MS = 30000l;
+
+    private final File dataDir;
+    private final ServerCnxnFactory zookeeper;
+    private final KafkaServerStartable broker;
+    private final String bootstrapServers;
+
+    /**
+     * Starts ZooKeeper and the broker.
+     * @throws Exception ZooKeeper or the broker could not be started
+     */
+    public EmbeddedKafkaCluster() throws Exception {
+        dataDir = Files.createTempDirectory("kafka-benchmark-").toFile(); //$NON-NLS-1$
+        final File zookeeperDir = new File(dataDir, "zookeeper"); //$NON-NLS-1$
+        zookeeper = ServerCnxnFactory.createFactory(new InetSocketAddress(HOST, 0), 100);
+        zookeeper.startup(new ZooKeeperServer(zookeeperDir, zookeeperDir, 500));
+
+        final int brokerPort = getFreePort();
+        final Properties props = new Properties();
+        props.setProperty("broker.id", "0"); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("zookeeper.connect", HOST + ":" + zookeeper.getLocalPort()); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("listeners", "PLAINTEXT://" + HOST + ":" + brokerPort); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        props.setProperty("log.dirs", new File(dataDir, "kafka").getAbsolutePath()); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("auto.create.topics.enable", "false"); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("group.initial.rebalance.delay.ms", "0"); //$NON-NLS-1$ //$NON-NLS-2$
+        // a single broker cannot replicate the internal topics
+        props.setProperty("offsets.topic.replication.factor", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("transaction.state.log.replication.factor", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+        props.setProperty("transaction.state.log.min.isr", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+        broker = KafkaServerStartable.fromProps(props);
+        broker.startup();
+        bootstrapServers = HOST + ":" + brokerPort; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the bootstrap servers for the clients.
+     * @return the bootstrap servers in the form host:port
+     */
+    public String getBootstrapServers() {
+        return bootstrapServers;
+    }
+
+    /**
+     * Creates a topic and waits until all partitions have a leader.
+     * @param topic      the topic name
+     * @param partitions the number of partitions
+     * @throws Exception the topic could not be created
+     */
+    public void createTopic(String topic, int partitions) throws Exception {
+        try (AdminClient admin = AdminClient.create(Collections.singletonMap(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            admin.createTopics(Collections.singletonList(new NewTopic(topic, partitions, (short) 1))).all().get(STARTUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    TopicDescription description = admin.describeTopics(Collections.singletonList(topic)).all().get().get(topic);
+                    if (description.partitions().size() == partitions && description.partitions().stream().allMatch(p -> p.leader() != null)) {
+                        return;
+                    }
+                } catch (Exception e) {
+                    // metadata not yet propagated
+                }
+                Thread.sleep(100l);
+            }
+            throw new IllegalStateException("The partitions of topic " + topic + " have no leader"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Stops the broker and ZooKeeper, and deletes their data.
+     */
+    @Override
+    public void close() throws IOException {
+        broker.shutdown();
+        broker.awaitShutdown();
+        zookeeper.shutdown();
+        try (Stream<Path> paths = Files.walk(dataDir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, new InetSocketAddress(HOST, 0).getAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ibm.streamsx.kafka.benchmarks.endtoend;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import com.google.gson.GsonBuilder;
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.clients.consumer.KafkaConsumerClient;
+import com.ibm.streamsx.kafka.clients.consumer.StartPosition;
+import com.ibm.streamsx.kafka.clients.producer.KafkaProducerClient;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures throughput and end-to-end latency of the producer and consumer clients of the toolkit
+ * with an {@link EmbeddedKafkaCluster}.
+ * <p>
+ * The producer client sends messages at a fixed rate to a topic, from which the consumer client reads.
+ * Every message carries the time, at which it was scheduled to be sent, so that the latency from
+ * this time until the consumer client hands the record out of its message queue is measured.
+ * Using the scheduled time instead of the actual send time includes the delays, when the producer falls behind the rate.
+ * Messages sent within the warm-up period are not measured.
+ * <p>
+ * Options are given as <tt>name=value</tt> arguments:
+ * <ul>
+ * <li><tt>rate</tt> - messages per second, 0 sends as fast as possible; default 10000</li>
+ * <li><tt>messageSize</tt> - size of the message value in bytes, at least 8; default 100</li>
+ * <li><tt>partitions</tt> - number of partitions of the topic; default 1</li>
+ * <li><tt>duration</tt> - measured time in seconds; default 30</li>
+ * <li><tt>warmup</tt> - warm-up time in seconds; default 5</li>
+ * <li><tt>output</tt> - file for the results; the results are always written to stdout</li>
+ * <li><tt>producer.&lt;property&gt;</tt>, <tt>consumer.&lt;property&gt;</tt> - Kafka properties of the clients,
+ *     for example <tt>producer.acks=all</tt> or <tt>producer.linger.ms=5</tt></li>
+ * </ul>
+ * The results are written in JSON format.
+ */
+public class EndToEndBenchmark {
+
+    private static final String TOPIC = "endToEnd"; //$NON-NLS-1$
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30l);
+
+    private double rate = 10000.0;
+    private int messageSize = 100;
+    private int partitions = 1;
+    private double duration = 30.0;
+    private double warmup = 5.0;
+    private String output = null;
+    private final KafkaOperatorProperties producerProperties = new KafkaOperatorProperties();
+    private final KafkaOperatorProperties consumerProperties = new KafkaOperatorProperties();
+
+    // the scheduled send time of the first measured message and the time after the last one
+    private volatile long measurementStartNanos;
+    private volatile long measurementEndNanos = Long.MAX_VALUE;
+    private volatile long nMeasuredSent = -1l;
+
+    public static void main(String[] args) throws Exception {
+        EndToEndBenchmark benchmark = new EndToEndBenchmark(args);
+        final String result = benchmark.run();
+        System.out.println(result);
+        if (benchmark.output != null) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(benchmark.output), StandardCharsets.UTF_8)) {
+                writer.write(result);
+            }
+        }
+        // the daemon threads of the stubs and the clients do not keep the JVM alive
+        System.exit(0);
+    }
+
+    EndToEndBenchmark(String[] args) {
+        for (String arg: args) {
+            final int i = arg.indexOf('=');
+            if (i <= 0) {
+                throw new IllegalArgumentException("option must be name=value: " + arg); //$NON-NLS-1$
+            }
+            final String name = arg.substring(0, i);
+            final String value = arg.substring(i + 1);
+            if (name.startsWith("producer.")) { //$NON-NLS-1$
+                producerProperties.setProperty(name.substring("producer.".length()), value); //$NON-NLS-1$
+                continue;
+            }
+            if (name.startsWith("consumer.")) { //$NON-NLS-1$
+                consumerProperties.setProperty(name.substring("consumer.".length()), value); //$NON-NLS-1$
+                continue;
+            }
+            switch (name) {
+            case "rate": rate = Double.parseDouble(value); break; //$NON-NLS-1$
+            case "messageSize": messageSize = Integer.parseInt(value); break; //$NON-NLS-1$
+            case "partitions": partitions = Integer.parseInt(value); break; //$NON-NLS-1$
+            case "duration": duration = Double.parseDouble(value); break; //$NON-NLS-1$
+            case "warmup": warmup = Double.parseDouble(value); break; //$NON-NLS-1$
+            case "output": output = value; break; //$NON-NLS-1$
+            default: throw new IllegalArgumentException("unknown option: " + name); //$NON-NLS-1$
+            }
+        }
+        if (messageSize < Long.BYTES) {
+            throw new IllegalArgumentException("messageSize must be at least " + Long.BYTES); //$NON-NLS-1$
+        }
+    }
+
+    String run() throws Exception {
+        // the clients add generated properties, which are not reported
+        final Map<Object, Object> givenProducerProperties = new LinkedHashMap<>(producerProperties);
+        final Map<Object, Object> givenConsumerProperties = new LinkedHashMap<>(consumerProperties);
+        try (EmbeddedKafkaCluster cluster = new EmbeddedKafkaCluster()) {
+            cluster.createTopic(TOPIC, partitions);
+            producerProperties.setProperty("bootstrap.servers", cluster.getBootstrapServers()); //$NON-NLS-1$
+            consumerProperties.setProperty("bootstrap.servers", cluster.getBootstrapServers()); //$NON-NLS-1$
+
+            final KafkaConsumerClient consumer = new KafkaConsumerClient.KafkaConsumerClientBuilder()
+                    .setKafkaProperties(consumerProperties)
+                    .setKeyClass(String.class)
+                    .setValueClass(Blob.class)
+                    .setOperatorContext(Stubs.operatorContext())
+                    .build();
+            final List<Integer> partitionList = IntStream.range(0, partitions).boxed().collect(Collectors.toList());
+            consumer.subscribeToTopics(Arrays.asList(TOPIC), partitionList, StartPosition.Beginning);
+            consumer.sendStartPollingEvent(100l);
+            final LatencyRecorder latencies = new LatencyRecorder();
+            final Thread consumerThread = new Thread(() -> consume(consumer, latencies), "consumer"); //$NON-NLS-1$
+            consumerThread.start();
+
+            final KafkaProducerClient producer = new KafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class, producerProperties);
+            final long sendStartNanos = System.nanoTime();
+            produce(producer);
+            final long sendEndNanos = System.nanoTime();
+            producer.flush();
+
+            consumerThread.join(TimeUnit.NANOSECONDS.toMillis(DRAIN_TIMEOUT_NANOS) + 2000l);
+            producer.close();
+            consumer.sendShutdownEvent(5l, TimeUnit.SECONDS);
+            return toJson(latencies, sendEndNanos - sendStartNanos, givenProducerProperties, givenConsumerProperties);
+        }
+    }
+
+    private void produce(KafkaProducerClient producer) throws Exception {
+        final long intervalNanos = rate > 0.0? (long) (1.0e9 / rate): 0l;
+        final long startNanos = System.nanoTime();
+        measurementStartNanos = startNanos + (long) (warmup * 1.0e9);
+        final long endNanos = measurementStartNanos + (long) (duration * 1.0e9);
+        long nSent = 0l;
+        long nMeasured = 0l;
+        long scheduledNanos = startNanos;
+        while (scheduledNanos < endNanos) {
+            if (intervalNanos > 0l) {
+                scheduledNanos = startNanos + nSent * intervalNanos;
+                long now;
+                while ((now = System.nanoTime()) < scheduledNanos) {
+                    if (scheduledNanos - now > 100000l) LockSupport.parkNanos(scheduledNanos - now - 50000l);
+                }
+            } else {
+                scheduledNanos = System.nanoTime();
+            }
+            if (scheduledNanos >= endNanos) break;
+            final byte[] value = new byte[messageSize];
+            ByteBuffer.wrap(value).putLong(scheduledNanos);
+            producer.processTuple(new ProducerRecord<String, byte[]>(TOPIC, value));
+            ++nSent;
+            if (scheduledNanos >= measurementStartNanos) ++nMeasured;
+        }
+        measurementEndNanos = endNanos;
+        nMeasuredSent = nMeasured;
+    }
+
+    private void consume(KafkaConsumerClient consumer, LatencyRecorder latencies) {
+        long drainDeadline = Long.MAX_VALUE;
+        try {
+            while (System.nanoTime() < drainDeadline) {
+                final ConsumerRecord<?, ?> record = consumer.getNextRecord();
+                final long now = System.nanoTime();
+                if (drainDeadline == Long.MAX_VALUE && nMeasuredSent >= 0l) {
+                    drainDeadline = now + DRAIN_TIMEOUT_NANOS;
+                }
+                if (record == null) continue;
+                final long scheduledNanos = ByteBuffer.wrap((byte[]) record.value()).getLong();
+                if (scheduledNanos >= measurementStartNanos && scheduledNanos < measurementEndNanos) {
+                    latencies.record(now - scheduledNanos, now);
+                    if (latencies.size() == nMeasuredSent) return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String toJson(LatencyRecorder latencies, long sendTimeNanos, Map<Object, Object> producerProperties, Map<Object, Object> consumerProperties) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        final Map<String, Object> options = new LinkedHashMap<>();
+        options.put("rate", rate); //$NON-NLS-1$
+        options.put("messageSize", messageSize); //$NON-NLS-1$
+        options.put("partitions", partitions); //$NON-NLS-1$
+        options.put("duration", duration); //$NON-NLS-1$
+        options.put("warmup", warmup); //$NON-NLS-1$
+        options.put("producerProperties", producerProperties); //$NON-NLS-1$
+        options.put("consumerProperties", consumerProperties); //$NON-NLS-1$
+        result.put("options", options); //$NON-NLS-1$
+        result.put("messagesSent", nMeasuredSent); //$NON-NLS-1$
+        result.put("messagesReceived", latencies.size()); //$NON-NLS-1$
+        result.put("messagesMissing", nMeasuredSent - latencies.size()); //$NON-NLS-1$
+        final double sendSeconds = Math.min(duration, sendTimeNanos / 1.0e9 - warmup);
+        result.put("producerThroughputMessagesPerSecond", sendSeconds > 0.0? nMeasuredSent / sendSeconds: 0.0); //$NON-NLS-1$
+        result.put("consumerThroughputMessagesPerSecond", latencies.getThroughput()); //$NON-NLS-1$
+        result.put("consumerThroughputMBPerSecond", latencies.getThroughput() * messageSize / (1024.0 * 1024.0)); //$NON-NLS-1$
+        final Map<String, Object> latencyMs = new LinkedHashMap<>();
+        latencyMs.put("p50", latencies.getPercentileMillis(0.5)); //$NON-NLS-1$
+        latencyMs.put("p99", latencies.getPercentileMillis(0.99)); //$NON-NLS-1$
+        latencyMs.put("p999", latencies.getPercentileMillis(0.999)); //$NON-NLS-1$
+        latencyMs.put("max", latencies.getPercentileMillis(1.0)); //$NON-NLS-1$
+        result.put("latencyMs", latencyMs); //$NON-NLS-1$
+        return new GsonBuilder().setPrettyPrinting().create().toJson(result);
+    }
+
+    /**
+     * Collects the latencies of the measured messages. Used by a single thread.
+     */
+    static class LatencyRecorder {
+        private long[] latencies = new long[1 << 16];
+        private int size = 0;
+        private long firstReceiveNanos = 0l;
+        private long lastReceiveNanos = 0l;
+        private boolean sorted = false;
+
+        void record(long latencyNanos, long receiveNanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * size);
+            }
+            latencies[size++] = latencyNanos;
+            if (firstReceiveNanos == 0l) firstReceiveNanos = receiveNanos;
+            lastReceiveNanos = receiveNanos;
+            sorted = false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double getThroughput() {
+            final long nanos = lastReceiveNanos - firstReceiveNanos;
+            return nanos > 0l? (size - 1) * 1.0e9 / nanos: 0.0;
+        }
+
+        /**
+         * Gets a percentile of the latencies.
+         * @param quantile the quantile between 0.0 and 1.0
+         * @return the latency in milliseconds or 0.0, when no latency is recorded
+         */
+        double getPercentileMillis(double quantile) {
+            if (size == 0) return 0.0;
+            if (!sorted) {
+                Arrays.sort(latencies, 0, size);
+                sorted = true;
+            }
+            final int index = Math.max(0, (int) Math.ceil(quantile * size) - 1);
+            return latencies[index] / 1.0e6;
+        }
+    }
+}
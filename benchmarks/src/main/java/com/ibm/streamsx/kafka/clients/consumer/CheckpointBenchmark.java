@@ -0,0 +1,153 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.clients.OffsetManager;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures checkpoint and reset of the {@link KafkaConsumerClient} in a consistent region
+ * depending on the number of assigned partitions. The Kafka consumer is a {@link MockConsumer}.
+ * <ul>
+ * <li><tt>checkpoint</tt>, <tt>reset</tt>, <tt>resetToInitialState</tt> - the events of the client as the operator
+ *     sends them, including the hand-over to the event thread. The checkpoint stream is a stub, which discards the written data.</li>
+ * <li><tt>writeOffsetManager</tt>, <tt>readOffsetManager</tt> - Java serialization of the {@link OffsetManager}
+ *     as done for the checkpoint</li>
+ * <li><tt>refreshFromCluster</tt> - assignment of the consumer and seek to the offsets of the offset manager</li>
+ * <li><tt>encodeControlVariable</tt>, <tt>decodeControlVariable</tt> - the encoding of the offset manager for the
+ *     control variable in the JCP, which is read on reset to initial state</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckpointBenchmark {
+
+    private static final String TOPIC = "benchmark"; //$NON-NLS-1$
+
+    /** number of partitions of the topic, all of them assigned to the client */
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int partitions;
+
+    private KafkaConsumerClient client;
+    private OffsetManager offsetManager;
+    private MockConsumer<byte[], byte[]> mockConsumer;
+    private byte[] serializedOffsetManager;
+    private String encodedOffsetManager;
+    private long sequenceId = 0l;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        final List<PartitionInfo> partitionInfos = new ArrayList<>(partitions);
+        final Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        for (int p = 0; p < partitions; ++p) {
+            partitionInfos.add(new PartitionInfo(TOPIC, p, null, null, null));
+            beginningOffsets.put(new TopicPartition(TOPIC, p), 1000000l + p);
+        }
+        mockConsumer.updatePartitions(TOPIC, partitionInfos);
+        mockConsumer.updateBeginningOffsets(beginningOffsets);
+        client = new KafkaConsumerClient.KafkaConsumerClientBuilder()
+                .setKafkaProperties(new KafkaOperatorProperties())
+                .setKeyClass(String.class)
+                .setValueClass(Blob.class)
+                .setOperatorContext(Stubs.operatorContext(true))
+                .setConsumerFactory(p -> mockConsumer)
+                .build();
+        // assigns all partitions, seeks to the beginning, and saves the offsets in the offset manager and the JCP
+        client.subscribeToTopics(Collections.singletonList(TOPIC), null, StartPosition.Beginning);
+        offsetManager = client.getOffsetManager();
+        serializedOffsetManager = writeOffsetManager().toByteArray();
+        encodedOffsetManager = encodeControlVariable();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void checkpoint() throws Exception {
+        client.sendCheckpointEvent(Stubs.checkpoint(++sequenceId));
+    }
+
+    @Benchmark
+    public void reset() throws Exception {
+        client.sendResetEvent(Stubs.checkpoint(sequenceId, serializedOffsetManager));
+    }
+
+    @Benchmark
+    public void resetToInitialState() throws Exception {
+        client.sendResetToInitEvent();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeOffsetManager() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(offsetManager);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public OffsetManager readOffsetManager() throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedOffsetManager))) {
+            OffsetManager mgr = (OffsetManager) in.readObject();
+            mgr.setOffsetConsumer(mockConsumer);
+            return mgr;
+        }
+    }
+
+    /**
+     * The event thread of the client waits for events and does not use the consumer.
+     */
+    @Benchmark
+    public void refreshFromCluster() {
+        client.refreshFromCluster();
+    }
+
+    @Benchmark
+    public String encodeControlVariable() {
+        return new String(Base64.getEncoder().encode(SerializationUtils.serialize(offsetManager)));
+    }
+
+    @Benchmark
+    public OffsetManager decodeControlVariable() {
+        return SerializationUtils.deserialize(Base64.getDecoder().decode(encodedOffsetManager));
+    }
+}
@@ -0,0 +1,117 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures the path of a record from <tt>poll()</tt> of the Kafka consumer through the message queue
+ * of the {@link KafkaConsumerClient} to {@link KafkaConsumerClient#getNextRecord()}.
+ * <p>
+ * The Kafka consumer is a {@link MockConsumer}, which returns <tt>max.poll.records</tt> new records
+ * with every poll, so that the event thread of the client fills the queue as fast as possible.
+ * The message queue of the client holds up to 100 times <tt>max.poll.records</tt> records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerClientBenchmark {
+
+    private static final String TOPIC = "benchmark"; //$NON-NLS-1$
+    private static final TopicPartition TP = new TopicPartition(TOPIC, 0);
+
+    /** size of the message value in bytes */
+    @Param({"10", "100", "1000"})
+    public int messageSize;
+
+    /** records returned by one poll; determines the capacity of the message queue */
+    @Param({"50", "500"})
+    public int maxPollRecords;
+
+    private MockConsumer<byte[], byte[]> mockConsumer;
+    private KafkaConsumerClient client;
+    private byte[] value;
+    private long nextOffset;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        value = new byte[messageSize];
+        nextOffset = 0l;
+        mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.updateBeginningOffsets(Collections.singletonMap(TP, 0l));
+        KafkaOperatorProperties props = new KafkaOperatorProperties();
+        props.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        client = new KafkaConsumerClient.KafkaConsumerClientBuilder()
+                .setKafkaProperties(props)
+                .setKeyClass(String.class)
+                .setValueClass(Blob.class)
+                .setOperatorContext(Stubs.operatorContext())
+                .setConsumerFactory(p -> mockConsumer)
+                .build();
+        client.subscribeToTopics(Collections.singletonList(TOPIC), Collections.singletonList(0), StartPosition.Beginning);
+        mockConsumer.schedulePollTask(this::addRecords);
+        client.sendStartPollingEvent(100l);
+    }
+
+    /*
+     * Runs within MockConsumer.poll(). Adds the records returned by this poll and schedules itself for the next poll.
+     */
+    private void addRecords() {
+        for (int i = 0; i < maxPollRecords; ++i) {
+            mockConsumer.addRecord(new ConsumerRecord<>(TOPIC, 0, nextOffset++, null, value));
+        }
+        mockConsumer.schedulePollTask(this::addRecords);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public ConsumerRecord<?, ?> getNextRecord() throws InterruptedException {
+        return client.getNextRecord();
+    }
+
+    /**
+     * Gets batches of up to 500 records as the operator does in batch mode.
+     * The score is batches per time unit.
+     */
+    @Benchmark
+    public int getNextRecords(BatchState batch) throws InterruptedException {
+        batch.records.clear();
+        return client.getNextRecords(batch.records, 500, 0l);
+    }
+
+    @State(Scope.Thread)
+    public static class BatchState {
+        final List<ConsumerRecord<?, ?>> records = new ArrayList<>(500);
+    }
+}
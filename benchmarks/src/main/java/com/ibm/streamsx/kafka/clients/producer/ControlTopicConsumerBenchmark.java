@@ -0,0 +1,153 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures the start of <tt>nClients</tt> transactional producer clients within one PE. Every client
+ * reads the partitions and the end offsets of the control topic when it is created.
+ * <ul>
+ * <li><tt>Shared</tt> - the clients have the same consumer properties and share one consumer for the control topic.</li>
+ * <li><tt>PerClient</tt> - the consumer properties of the clients differ, so that every client creates its own consumer,
+ *     as all clients did before the consumer was shared.</li>
+ * </ul>
+ * The consumers of the control topic are {@link MockConsumer}s, which wait <tt>requestLatencyMs</tt> milliseconds when
+ * they are created and on every metadata and offsets request, which a Kafka consumer would send to the brokers.
+ * The counters <tt>consumersCreated</tt> and <tt>consumerRequests</tt> give the numbers for the last start of all clients
+ * in every iteration; JMH reports their sum over the measurement iterations.
+ * The clients are closed after every measured start.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlTopicConsumerBenchmark {
+
+    private static final String CONTROL_TOPIC = "__streams_control_topic"; //$NON-NLS-1$
+
+    /** number of transactional producer clients in the PE */
+    @Param({"1", "10", "50"})
+    public int nClients;
+
+    /** whether the clients share the consumer for the control topic */
+    @Param({"Shared", "PerClient"})
+    public String controlTopicConsumer;
+
+    /** simulated time in milliseconds of a request of the consumer to the brokers */
+    @Param({"0", "2"})
+    public int requestLatencyMs;
+
+    private final List<KafkaProducerClient> clients = new ArrayList<>();
+
+    /**
+     * Counts the consumers created and the requests sent to the brokers for one start of all clients.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ConsumerCounters {
+        public int consumersCreated;
+        public int consumerRequests;
+
+        @Setup(Level.Invocation)
+        public void clear() {
+            consumersCreated = 0;
+            consumerRequests = 0;
+        }
+    }
+
+    @Benchmark
+    public void startClients(ConsumerCounters counters) throws Exception {
+        for (int i = 0; i < nClients; ++i) {
+            final KafkaOperatorProperties props = new KafkaOperatorProperties();
+            // a property that is copied into the consumer properties
+            props.put(ProducerConfig.METRICS_NUM_SAMPLES_CONFIG, controlTopicConsumer.equals("Shared")? "2": String.valueOf(2 + i)); //$NON-NLS-1$ //$NON-NLS-2$
+            clients.add(new TransactionalKafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class, props,
+                    /*lazyTransactionBegin*/true, /*pipelinedCommits*/false,
+                    p -> new MockProducer<String, byte[]>(true, new StringSerializer(), new ByteArraySerializer()),
+                    p -> new CountingConsumer(counters, requestLatencyMs)));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeClients() {
+        for (KafkaProducerClient client: clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * A MockConsumer for the control topic, which counts its creation and the requests to the brokers,
+     * and waits the request latency for each of them.
+     */
+    private static class CountingConsumer extends MockConsumer<byte[], byte[]> {
+        private final ConsumerCounters counters;
+        private final int requestLatencyMs;
+
+        CountingConsumer(ConsumerCounters counters, int requestLatencyMs) {
+            super(OffsetResetStrategy.EARLIEST);
+            this.counters = counters;
+            this.requestLatencyMs = requestLatencyMs;
+            updatePartitions(CONTROL_TOPIC, Collections.singletonList(new PartitionInfo(CONTROL_TOPIC, 0, null, null, null)));
+            updateEndOffsets(Collections.singletonMap(new TopicPartition(CONTROL_TOPIC, 0), 0l));
+            ++counters.consumersCreated;
+            // the Kafka consumer fetches the cluster metadata when it is created
+            request();
+        }
+
+        @Override
+        public synchronized List<PartitionInfo> partitionsFor(String topic) {
+            request();
+            return super.partitionsFor(topic);
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
+            request();
+            return super.endOffsets(partitions);
+        }
+
+        private void request() {
+            ++counters.consumerRequests;
+            if (requestLatencyMs <= 0) return;
+            try {
+                Thread.sleep(requestLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures the producer clients for the different consistent region policies with {@link MockProducer}s,
+ * which acknowledge every record immediately. The consumer for the control topic of the transactional
+ * client is a {@link MockConsumer}.
+ * <ul>
+ * <li><tt>processTuple</tt> - the cost per tuple including a drain and a checkpoint after every <tt>checkpointInterval</tt> tuples,
+ *     as the consistent region would do. The futures lists of the AtLeastOnce and Transactional clients grow
+ *     up to <tt>checkpointInterval</tt> entries.</li>
+ * <li><tt>drain</tt> - the cost of a drain after <tt>checkpointInterval</tt> tuples have been sent</li>
+ * <li><tt>drainAndCheckpoint</tt> - the cost of drain and checkpoint after <tt>checkpointInterval</tt> tuples have been sent.
+ *     For the Transactional policy this includes the commit of the transaction.</li>
+ * </ul>
+ * The MockProducer does not serialize the records, so that the costs of the serializers and of the network are not included.
+ * The policy <tt>None</tt> is the client for operators outside of a consistent region; its drain and checkpoint do nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerClientBenchmark {
+
+    private static final String TOPIC = "benchmark"; //$NON-NLS-1$
+    private static final String CONTROL_TOPIC = "__streams_control_topic"; //$NON-NLS-1$
+
+    /** the consistent region policy; TransactionalPipelined is the Transactional policy with pipelined commits */
+    @Param({"None", "AtLeastOnce", "Transactional", "TransactionalPipelined"})
+    public String consistentRegionPolicy;
+
+    /** size of the message value in bytes */
+    @Param({"100", "1000"})
+    public int messageSize;
+
+    /** number of tuples between two checkpoints */
+    @Param({"1000", "100000"})
+    public int checkpointInterval;
+
+    // the factory is also invoked by a background thread when commits are pipelined
+    private final List<MockProducer<String, byte[]>> mockProducers = new CopyOnWriteArrayList<>();
+    private KafkaProducerClient client;
+    private ProducerRecord<String, byte[]> record;
+    private long sequenceId;
+    private int nSinceCheckpoint;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        record = new ProducerRecord<>(TOPIC, "key", new byte[messageSize]); //$NON-NLS-1$
+        sequenceId = 0l;
+        nSinceCheckpoint = 0;
+        final KafkaOperatorProperties props = new KafkaOperatorProperties();
+        final Function<KafkaOperatorProperties, Producer<?, ?>> producerFactory = p -> {
+            MockProducer<String, byte[]> mockProducer = new BenchmarkProducer();
+            mockProducers.add(mockProducer);
+            return mockProducer;
+        };
+        switch (consistentRegionPolicy) {
+        case "None": //$NON-NLS-1$
+            client = new KafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class, props, producerFactory);
+            break;
+        case "AtLeastOnce": //$NON-NLS-1$
+            client = new AtLeastOnceKafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class, props, producerFactory);
+            break;
+        default:
+            client = new TransactionalKafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class, props,
+                    /*lazyTransactionBegin*/true, consistentRegionPolicy.equals("TransactionalPipelined"), //$NON-NLS-1$
+                    producerFactory, ProducerClientBenchmark::createControlTopicConsumer);
+        }
+    }
+
+    private static Consumer<?, ?> createControlTopicConsumer(KafkaOperatorProperties props) {
+        MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updatePartitions(CONTROL_TOPIC, Collections.singletonList(new PartitionInfo(CONTROL_TOPIC, 0, null, null, null)));
+        consumer.updateEndOffsets(Collections.singletonMap(new TopicPartition(CONTROL_TOPIC, 0), 0l));
+        return consumer;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        mockProducers.clear();
+    }
+
+    /**
+     * Drains and checkpoints the client as the consistent region does. 
+     * The records that are remembered by non-transactional MockProducers are dropped.
+     */
+    void completeCheckpoint() throws Exception {
+        client.drain();
+        client.checkpoint(Stubs.checkpoint(++sequenceId));
+        nSinceCheckpoint = 0;
+        if (!(client instanceof TransactionalKafkaProducerClient)) {
+            for (MockProducer<?, ?> p: mockProducers) {
+                p.clear();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean processTuple() throws Exception {
+        final boolean result = client.processTuple(record);
+        if (++nSinceCheckpoint >= checkpointInterval) {
+            completeCheckpoint();
+        }
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 100)
+    public void drain(PendingTuples pending) throws Exception {
+        client.drain();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 100)
+    public void drainAndCheckpoint(PendingTuples pending) throws Exception {
+        client.drain();
+        client.checkpoint(Stubs.checkpoint(++sequenceId));
+    }
+
+    /**
+     * A MockProducer that drops the records of a transaction when the transaction is committed,
+     * so that the heap does not fill up with the sent records.
+     * Clearing a MockProducer resets also its transaction state, which must therefore be initialized again.
+     */
+    private static class BenchmarkProducer extends MockProducer<String, byte[]> {
+
+        BenchmarkProducer() {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+        }
+
+        @Override
+        public synchronized void commitTransaction() {
+            super.commitTransaction();
+            clear();
+            initTransactions();
+        }
+    }
+
+    /**
+     * Sends <tt>checkpointInterval</tt> tuples before every measured drain, and completes the checkpoint afterwards.
+     */
+    @State(Scope.Thread)
+    public static class PendingTuples {
+
+        @Setup(Level.Iteration)
+        public void sendTuples(ProducerClientBenchmark benchmark) throws Exception {
+            for (int i = 0; i < benchmark.checkpointInterval; ++i) {
+                benchmark.client.processTuple(benchmark.record);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void completeCheckpoint(ProducerClientBenchmark benchmark) throws Exception {
+            benchmark.completeCheckpoint();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ibm.streamsx.kafka.operators;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.ValueFactory;
+
+/**
+ * Measures the conversion of an SPL attribute value into the Java object, which is passed to the serializer
+ * of the Kafka producer, for all attribute types that the KafkaProducer operator supports for key and message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeConversionBenchmark {
+
+    /** the SPL type of the attribute */
+    @Param({"rstring", "int32", "int64", "uint32", "uint64", "float32", "float64", "blob"})
+    public String splType;
+
+    /** size of the attribute value in bytes; ignored for numeric types */
+    @Param({"10", "1000"})
+    public int messageSize;
+
+    private KafkaProducerOperator operator;
+    private Class<?> type;
+    private Object value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        operator = new KafkaProducerOperator();
+        final byte[] bytes = new byte[messageSize];
+        Arrays.fill(bytes, (byte) 'x');
+        switch (splType) {
+        case "rstring": type = RString.class; value = new RString(new String(bytes, StandardCharsets.UTF_8)); break; //$NON-NLS-1$
+        case "int32": //$NON-NLS-1$
+        case "uint32": type = Integer.class; value = Integer.valueOf(4711); break; //$NON-NLS-1$
+        case "int64": //$NON-NLS-1$
+        case "uint64": type = Long.class; value = Long.valueOf(4711l); break; //$NON-NLS-1$
+        case "float32": type = Float.class; value = Float.valueOf(47.11f); break; //$NON-NLS-1$
+        case "float64": type = Double.class; value = Double.valueOf(47.11); break; //$NON-NLS-1$
+        default: type = Blob.class; value = ValueFactory.newBlob(bytes);
+        }
+    }
+
+    @Benchmark
+    public Object toJavaPrimitiveObject() {
+        return operator.toJavaPrimitveObject(type, value);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ibm.streamsx.kafka.operators;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/**
+ * Measures the conversion of a consumer record into the attributes of an output tuple of the KafkaConsumer operator
+ * for different value types and message sizes. The output tuple is a stub, so that the costs of the
+ * Streams runtime for tuple creation and submission are not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TupleConversionBenchmark {
+
+    /** the type of the message value as returned by the deserializer */
+    @Param({"rstring", "blob", "int64"})
+    public String valueType;
+
+    /** size of the message value in bytes; ignored for int64 */
+    @Param({"10", "100", "1000"})
+    public int messageSize;
+
+    /** when true, the output schema contains all optional attributes: key, topic, partition, offset, and timestamp */
+    @Param({"false", "true"})
+    public boolean allAttributes;
+
+    private KafkaConsumerOperator operator;
+    private OutputTuple tuple;
+    private ConsumerRecord<String, Object> record;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        operator = new KafkaConsumerOperator();
+        operator.setOutputAttributes(allAttributes?
+                Stubs.streamSchema("message", "key", "topic", "partition", "offset", "messageTimestamp"): //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                    Stubs.streamSchema("message")); //$NON-NLS-1$
+        tuple = Stubs.outputTuple();
+        final byte[] bytes = new byte[messageSize];
+        Arrays.fill(bytes, (byte) 'x');
+        final Object value;
+        switch (valueType) {
+        case "rstring": value = new String(bytes, StandardCharsets.UTF_8); break; //$NON-NLS-1$
+        case "blob": value = bytes; break; //$NON-NLS-1$
+        default: value = Long.valueOf(4711l);
+        }
+        record = new ConsumerRecord<>("benchmark", 0, 1000l, "key-1000", value); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Benchmark
+    public OutputTuple populateTuple() throws Exception {
+        operator.populateTuple(tuple, record);
+        return tuple;
+    }
+}
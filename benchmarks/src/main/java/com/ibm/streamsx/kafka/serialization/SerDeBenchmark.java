@@ -0,0 +1,121 @@
+package com.ibm.streamsx.kafka.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streamsx.kafka.clients.AbstractKafkaClient;
+
+/**
+ * Measures the serializers and deserializers, which the clients select for the SPL types of key and message.
+ * The classes are determined in the same way as in the clients, so that for example the
+ * {@link StringDeserializerExt} is measured for rstring.
+ * <p>
+ * Run with the GC profiler to get the allocated bytes per operation:
+ * <pre>
+ * ./gradlew :benchmarks:jmh -PjmhArgs='SerDeBenchmark -prof gc'
+ * </pre>
+ * <tt>deserializeMalformed</tt> deserializes data, which does not have the size of the numeric type.
+ * The deserializers of the toolkit log the failure at ERROR level for every record. The log4j logger of the
+ * deserializers writes to a {@link NullAppender}, so that the creation of the exception and of the log event
+ * are measured, but not the I/O of an appender. Invalid UTF-8 data for rstring is replaced by the decoder without failure,
+ * and a blob cannot be malformed.
+ * The types uint32 and uint64 use the same serializers as int32 and int64.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerDeBenchmark {
+
+    private static final String TOPIC = "benchmark"; //$NON-NLS-1$
+
+    /** the SPL type of the attribute */
+    @Param({"rstring", "int32", "int64", "float32", "float64", "blob"})
+    public String splType;
+
+    /** size of the payload in bytes; ignored for the serialization of numeric types */
+    @Param({"16", "1024", "65536", "1048576"})
+    public int payloadSize;
+
+    private Serializer<Object> serializer;
+    private Deserializer<?> deserializer;
+    private Object value;
+    private byte[] data;
+    private byte[] malformedData;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() throws Exception {
+        final Class<?> type;
+        switch (splType) {
+        case "rstring": type = RString.class; break; //$NON-NLS-1$
+        case "int32": type = Integer.class; break; //$NON-NLS-1$
+        case "int64": type = Long.class; break; //$NON-NLS-1$
+        case "float32": type = Float.class; break; //$NON-NLS-1$
+        case "float64": type = Double.class; break; //$NON-NLS-1$
+        default: type = Blob.class;
+        }
+        final AbstractKafkaClient client = new AbstractKafkaClient() {};
+        serializer = (Serializer<Object>) Class.forName(client.getSerializer(type)).newInstance();
+        deserializer = (Deserializer<?>) Class.forName(client.getDeserializer(type)).newInstance();
+
+        // the values as they are passed to the serializer by the KafkaProducer operator
+        final byte[] bytes = new byte[payloadSize];
+        Arrays.fill(bytes, (byte) 'x');
+        switch (splType) {
+        case "rstring": value = new String(bytes, StandardCharsets.UTF_8); break; //$NON-NLS-1$
+        case "int32": value = Integer.valueOf(4711); break; //$NON-NLS-1$
+        case "int64": value = Long.valueOf(4711l); break; //$NON-NLS-1$
+        case "float32": value = Float.valueOf(47.11f); break; //$NON-NLS-1$
+        case "float64": value = Double.valueOf(47.11); break; //$NON-NLS-1$
+        default: value = bytes;
+        }
+        data = serializer.serialize(TOPIC, value);
+        // none of the payload sizes is a valid size of a numeric type; 0xFF is never valid in UTF-8
+        malformedData = new byte[payloadSize];
+        Arrays.fill(malformedData, (byte) 0xFF);
+
+        final Logger deserializerLogger = Logger.getLogger(StringDeserializerExt.class.getPackage().getName());
+        deserializerLogger.removeAllAppenders();
+        deserializerLogger.addAppender(new NullAppender());
+        deserializerLogger.setAdditivity(false);
+        deserializerLogger.setLevel(Level.ERROR);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return deserializer.deserialize(TOPIC, data);
+    }
+
+    @Benchmark
+    public Object deserializeMalformed() {
+        return deserializer.deserialize(TOPIC, malformedData);
+    }
+}
@@ -2,9 +2,14 @@ package com.ibm.streamsx.kafka.clients;
 
 import java.io.Serializable;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.SerializationUtils;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.DoubleSerializer;
@@ -14,8 +19,10 @@ import org.apache.kafka.common.serialization.LongSerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.apache.log4j.Logger;
 
+import com.ibm.streams.operator.metrics.OperatorMetrics;
 import com.ibm.streams.operator.types.Blob;
 import com.ibm.streams.operator.types.RString;
+import com.ibm.streamsx.kafka.metrics.ClientMetricsBridge;
 import com.ibm.streamsx.kafka.serialization.DoubleDeserializerExt;
 import com.ibm.streamsx.kafka.serialization.FloatDeserializerExt;
 import com.ibm.streamsx.kafka.serialization.IntegerDeserializerExt;
@@ -26,6 +33,53 @@ public abstract class AbstractKafkaClient {
 
     private static final Logger logger = Logger.getLogger(AbstractKafkaClient.class);
 
+    // copies metrics of the Kafka client into operator metrics; null when disabled
+    private ClientMetricsBridge clientMetricsBridge = null;
+    protected long clientMetricsPeriodMs = 0l;
+    private long nextClientMetricsUpdate = 0l;
+
+    /**
+     * Selects the metrics of the Kafka client, which are copied into custom metrics of the operator.
+     * @param operatorMetrics the metrics of the operator
+     * @param names           the names of the Kafka metrics, see {@link ClientMetricsBridge}
+     * @param periodMs        the update period in milliseconds; 0 disables the copying
+     */
+    public void setClientMetrics(OperatorMetrics operatorMetrics, Collection<String> names, long periodMs) {
+        if (periodMs <= 0l || names == null || names.isEmpty()) {
+            clientMetricsBridge = null;
+            return;
+        }
+        logger.info("Copying Kafka client metrics " + names + " every " + periodMs + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        clientMetricsBridge = new ClientMetricsBridge(operatorMetrics, names);
+        clientMetricsPeriodMs = periodMs;
+    }
+
+    /**
+     * Copies the selected client metrics into the operator metrics, when the update period has elapsed.
+     * The Kafka consumer is not thread-safe, so that this method must be called by the thread that uses the Kafka client
+     * when the client is not thread-safe. The metrics are only obtained from the supplier when an update is due.
+     * @param clientMetrics supplies the metrics of the Kafka client
+     */
+    protected void updateClientMetrics(Supplier<Map<MetricName, ? extends Metric>> clientMetrics) {
+        if (clientMetricsBridge == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (now < nextClientMetricsUpdate) {
+            return;
+        }
+        nextClientMetricsUpdate = now + clientMetricsPeriodMs;
+        clientMetricsBridge.update(clientMetrics.get());
+    }
+
+    /**
+     * Tests whether client metrics are copied into operator metrics.
+     * @return true, if client metrics are selected, false otherwise
+     */
+    protected boolean hasClientMetrics() {
+        return clientMetricsBridge != null;
+    }
+
     public <T> String getSerializer(Class<T> clazz) throws Exception {
         if (clazz.equals(String.class) || clazz.equals(RString.class)) {
             return StringSerializer.class.getCanonicalName();
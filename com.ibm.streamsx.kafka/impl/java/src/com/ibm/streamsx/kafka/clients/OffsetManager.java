@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.log4j.Logger;
 /**
@@ -20,16 +20,16 @@ public class OffsetManager implements Serializable {
     private static final Logger logger = Logger.getLogger(OffsetManager.class);
 
     private Map<String /* topic */, TopicManager> managerMap;
-    private transient KafkaConsumer<?, ?> offsetConsumer;
+    private transient Consumer<?, ?> offsetConsumer;
 
-    public <K, V> OffsetManager(KafkaConsumer<K, V> offsetConsumer) {
+    public <K, V> OffsetManager(Consumer<K, V> offsetConsumer) {
         this.managerMap = Collections.synchronizedMap(new HashMap<String, TopicManager>());
         this.offsetConsumer = offsetConsumer;
     }
 
     /**
      * Does not work. Member variable 'offsetConsumer' is not serialized and is null after deserialization.
-     * After Deserialization {@link #setOffsetConsumer(KafkaConsumer)} must be called.
+     * After Deserialization {@link #setOffsetConsumer(Consumer)} must be called.
      * @return `this`
      * @throws ObjectStreamException
      */
@@ -43,7 +43,7 @@ public class OffsetManager implements Serializable {
      * Sets a consumer to the Manager. This is required for {@link #savePositionFromCluster()}.
      * @param offsetConsumer A kafka consumer instance.
      */
-    public void setOffsetConsumer(KafkaConsumer<?, ?> offsetConsumer) {
+    public void setOffsetConsumer(Consumer<?, ?> offsetConsumer) {
         this.offsetConsumer = offsetConsumer;
         managerMap.values().forEach(tm -> tm.setOffsetConsumer(offsetConsumer));
     }
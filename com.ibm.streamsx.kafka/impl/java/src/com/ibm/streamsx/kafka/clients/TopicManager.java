@@ -5,7 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.log4j.Logger;
 
@@ -18,7 +18,7 @@ public class TopicManager implements Serializable {
     private static final Logger logger = Logger.getLogger(TopicManager.class);
 
     private String topic;
-    private transient KafkaConsumer<?, ?> offsetConsumer;
+    private transient Consumer<?, ?> offsetConsumer;
     private Map<Integer /* partition */, Long /* offset */> offsetMap;
 	private List<TopicPartition> topicPartitions;
 
@@ -28,7 +28,7 @@ public class TopicManager implements Serializable {
 	 * @param topicPartitions the topic partitions. They must be partitions of the given topic. 
 	 * @param offsetConsumer A consumer to retrieve the offsets of next record to consume from the broker
 	 */
-    public <K, V> TopicManager(String topic, List<TopicPartition> topicPartitions, KafkaConsumer<K, V> offsetConsumer) {
+    public <K, V> TopicManager(String topic, List<TopicPartition> topicPartitions, Consumer<K, V> offsetConsumer) {
         this.topic = topic;
         this.topicPartitions = topicPartitions;
         this.offsetConsumer = offsetConsumer;
@@ -39,7 +39,7 @@ public class TopicManager implements Serializable {
      * Sets a consumer to the Manager. This is required for {@link #savePositionFromCluster()}.
      * @param offsetConsumer A kafka consumer instance.
      */
-    public <K, V> void setOffsetConsumer(KafkaConsumer<K, V> offsetConsumer) {
+    public <K, V> void setOffsetConsumer(Consumer<K, V> offsetConsumer) {
         this.offsetConsumer = offsetConsumer;
     }
 
@@ -62,7 +62,7 @@ public class TopicManager implements Serializable {
     }
     
     /**
-     * Saves for the partitions given in {@link #TopicManager(String, List, KafkaConsumer)} the offsets of 
+     * Saves for the partitions given in {@link #TopicManager(String, List, Consumer)} the offsets of 
      * the next record that will be fetched (if a record with that offset exists).
      * @throws org.apache.kafka.clients.consumer.InvalidOffsetException - if no offset is currently defined for a partition.
      *         TODO: in this case no mapping should be created. -- must check this with {@link KafkaConsumerClient#refreshFromCluster()}
@@ -81,7 +81,7 @@ public class TopicManager implements Serializable {
     /**
      * Create a mapping from partition number to offset.
      * The mapping is also created if the partition number is not contained in the `topicPartitions`
-     * argument of the constructor {@link #TopicManager(String, List, KafkaConsumer)}.
+     * argument of the constructor {@link #TopicManager(String, List, Consumer)}.
      * @param partition the partition number
      * @param offset the offset
      */
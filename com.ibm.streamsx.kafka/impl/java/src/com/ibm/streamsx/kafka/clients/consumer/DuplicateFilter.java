@@ -0,0 +1,150 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+import com.ibm.streamsx.kafka.clients.OffsetManager;
+
+/**
+ * Detects records that have already been submitted.
+ * <p>
+ * The filter keeps the highest submitted offset for every topic partition. Records at or below this high-water mark
+ * are duplicates, which are read again after a partition has been re-assigned.
+ * The high-water marks are kept in memory only, so that they do not survive a restart of the PE.
+ * <p>
+ * On reset of a consistent region, the high-water marks must be lowered to the restored offsets with
+ * {@link #reset(OffsetManager)}. The operators of the region restore their state from the checkpoint, so that
+ * the records after the checkpoint must be submitted again. Otherwise they would be lost. Suppressing the replay
+ * after a reset is deliberately not supported.
+ * <p>
+ * Optionally, the filter detects records with the same topic, key, and value within a window of recently submitted records,
+ * for example records that have been written twice by a retrying producer. This detection uses two rotating Bloom filters,
+ * which bound the memory and can give false positives at the configured rate.
+ * <p>
+ * This class is not thread-safe. Only {@link #getFalsePositiveProbability()} can be invoked by another thread.
+ */
+public class DuplicateFilter {
+
+    private static final Logger logger = Logger.getLogger(DuplicateFilter.class);
+
+    private final Map<TopicPartition, Long> highWaterMarks = new HashMap<>();
+    private final int windowSize;
+    private final double falsePositiveRate;
+    // volatile, because the false positive probability is estimated by another thread
+    private volatile BloomFilter<ConsumerRecord<?, ?>> currentWindow = null;
+    private volatile BloomFilter<ConsumerRecord<?, ?>> previousWindow = null;
+    private long nInCurrentWindow = 0l;
+
+    /**
+     * Funnels topic, key, and value of a record into the Bloom filter.
+     */
+    private static final Funnel<ConsumerRecord<?, ?>> RECORD_FUNNEL = (record, into) -> {
+        into.putString(record.topic(), StandardCharsets.UTF_8);
+        putObject(record.key(), into);
+        putObject(record.value(), into);
+    };
+
+    private static void putObject(Object o, PrimitiveSink into) {
+        if (o == null) into.putByte((byte) 0);
+        else if (o instanceof byte[]) into.putBytes((byte[]) o);
+        else if (o instanceof String) into.putString((String) o, StandardCharsets.UTF_8);
+        else if (o instanceof Long) into.putLong((Long) o);
+        else if (o instanceof Integer) into.putInt((Integer) o);
+        else if (o instanceof Double) into.putDouble((Double) o);
+        else if (o instanceof Float) into.putFloat((Float) o);
+        else into.putInt(o.hashCode());
+    }
+
+    /**
+     * Creates a new filter.
+     * @param windowSize        the number of recently submitted records, in which records with same content are detected.
+     *                          0 disables the detection by content.
+     * @param falsePositiveRate the false positive rate of the content detection when a window is full
+     */
+    public DuplicateFilter(int windowSize, double falsePositiveRate) {
+        this.windowSize = windowSize;
+        this.falsePositiveRate = falsePositiveRate;
+        if (windowSize > 0) {
+            currentWindow = BloomFilter.create(RECORD_FUNNEL, windowSize, falsePositiveRate);
+        }
+    }
+
+    /**
+     * Tests whether a record is a duplicate. When it is not, the record is remembered as submitted.
+     * @param record the record
+     * @return true, if the record is a duplicate and must not be submitted
+     */
+    public boolean isDuplicate(ConsumerRecord<?, ?> record) {
+        final TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        final Long highWaterMark = highWaterMarks.get(tp);
+        if (highWaterMark != null && record.offset() <= highWaterMark) {
+            if (logger.isTraceEnabled()) logger.trace("replayed record " + tp + "[" + record.offset() + "] suppressed"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return true;
+        }
+        highWaterMarks.put(tp, record.offset());
+        if (currentWindow == null) {
+            return false;
+        }
+        if (currentWindow.mightContain(record) || (previousWindow != null && previousWindow.mightContain(record))) {
+            if (logger.isTraceEnabled()) logger.trace("record " + tp + "[" + record.offset() + "] with same content suppressed"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            return true;
+        }
+        if (nInCurrentWindow >= windowSize) {
+            previousWindow = currentWindow;
+            currentWindow = BloomFilter.create(RECORD_FUNNEL, windowSize, falsePositiveRate);
+            nInCurrentWindow = 0l;
+        }
+        currentWindow.put(record);
+        ++nInCurrentWindow;
+        return false;
+    }
+
+    /**
+     * Lowers the high-water marks to the offsets, which have been restored on reset of a consistent region,
+     * so that the records after the checkpoint are submitted again. Partitions without restored offset are forgotten.
+     * The content windows are cleared, because they contain records after the checkpoint.
+     * @param offsetManager the offsets of the next records to submit
+     */
+    public void reset(OffsetManager offsetManager) {
+        final Iterator<Map.Entry<TopicPartition, Long>> it = highWaterMarks.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<TopicPartition, Long> entry = it.next();
+            final TopicPartition tp = entry.getKey();
+            final long offset = offsetManager.hasTopic(tp.topic())? offsetManager.getOffset(tp.topic(), tp.partition()): -1l;
+            if (offset < 0l) {
+                it.remove();
+            } else if (offset -1l < entry.getValue()) {
+                entry.setValue(offset -1l);
+            }
+        }
+        if (currentWindow != null) {
+            currentWindow = BloomFilter.create(RECORD_FUNNEL, windowSize, falsePositiveRate);
+            previousWindow = null;
+            nInCurrentWindow = 0l;
+        }
+        logger.debug("high-water marks after reset: " + highWaterMarks); //$NON-NLS-1$
+    }
+
+    /**
+     * Estimates the current probability, that a record is wrongly detected as duplicate by its content.
+     * This method can be invoked by another thread than {@link #isDuplicate(ConsumerRecord)}. The estimation can be slightly outdated.
+     * @return the probability between 0.0 and 1.0
+     */
+    public double getFalsePositiveProbability() {
+        final BloomFilter<ConsumerRecord<?, ?>> current = currentWindow;
+        final BloomFilter<ConsumerRecord<?, ?>> previous = previousWindow;
+        if (current == null) return 0.0;
+        final double pCurrent = current.expectedFpp();
+        final double pPrevious = previous == null? 0.0: previous.expectedFpp();
+        return 1.0 - (1.0 - pCurrent) * (1.0 - pPrevious);
+    }
+}
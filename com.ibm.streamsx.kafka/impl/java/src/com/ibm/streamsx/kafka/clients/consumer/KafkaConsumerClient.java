@@ -1,11 +1,13 @@
 package com.ibm.streamsx.kafka.clients.consumer;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -17,17 +19,22 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.OperatorContext;
@@ -39,6 +46,8 @@ import com.ibm.streams.operator.state.ConsistentRegionContext;
 import com.ibm.streamsx.kafka.clients.AbstractKafkaClient;
 import com.ibm.streamsx.kafka.clients.OffsetManager;
 import com.ibm.streamsx.kafka.clients.consumer.Event.EventType;
+import com.ibm.streamsx.kafka.metrics.PartitionMetrics;
+import com.ibm.streamsx.kafka.metrics.PhaseTimeMetrics;
 import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
 
 public class KafkaConsumerClient extends AbstractKafkaClient implements ConsumerRebalanceListener {
@@ -51,8 +60,18 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     private static final long DEFAULT_MAX_POLL_INTERVAL_MS_CONFIG = 300000;
     private static final String GENERATED_GROUPID_PREFIX = "group-"; //$NON-NLS-1$
     private static final String GENERATED_CLIENTID_PREFIX = "client-"; //$NON-NLS-1$
+    private static final String RECORDS_LAG_METRIC = "records-lag"; //$NON-NLS-1$
+    // phases of the polling thread
+    private static final int FETCH_PHASE = 0;
+    private static final int DESERIALIZE_PHASE = 1;
+    private static final int QUEUE_FULL_PHASE = 2;
 
-    private KafkaConsumer<?, ?> consumer;
+    /**
+     * Queued by the polling thread after the last record of the bootstrap. See {@link #beginBootstrap()}.
+     */
+    public static final ConsumerRecord<?, ?> BOOTSTRAP_COMPLETE = new ConsumerRecord<Object, Object>("", -1, -1l, null, null); //$NON-NLS-1$
+
+    private Consumer<?, ?> consumer;
     private OffsetManager offsetManager;
 
     private KafkaOperatorProperties kafkaProperties;
@@ -78,10 +97,30 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     private long maxPollIntervalMs;
     private boolean autoCommitEnabled = false;
     private Thread eventThread;
+    private boolean conflateByKey = false;
+    // when a record filter is used, the Kafka consumer returns byte arrays, which are deserialized after filtering
+    private RecordFilter recordFilter = null;
+    private Deserializer<?> keyDeserializer = null;
+    private Deserializer<?> valueDeserializer = null;
+    // every n-th queued record is sampled for the latency metrics; 0 disables the sampling
+    private int latencySampleInterval = 0;
+    private int nSinceLastSample = 0;
+    // metrics per assigned partition; null when disabled
+    private PartitionMetrics partitionMetrics = null;
+    private long partitionMetricsPeriodMs = 0l;
+    private long nextPartitionMetricsUpdate = 0l;
+    // time accounting of the polling thread; null when disabled
+    private PhaseTimeMetrics pollThreadTimes = null;
+    // end offsets of the partitions that must be read for the bootstrap; null when no bootstrap is tracked
+    private Map<TopicPartition, Long> bootstrapEndOffsets = null;
+    // the partitions whose position is below the bootstrap end offset; null when the bootstrap marker has been queued
+    private Set<TopicPartition> unreadBootstrapPartitions = null;
 
     private final Metric nPendingMessages;
     private final Metric nLowMemoryPause;
     private final Metric nQueueFullPause;
+    private final Metric nConflatedMessages;
+    private final Metric nFilteredMessages;
     
     /**
      * Callback to notify that topic partitions have been assigned by the group coordinator to the consumer.
@@ -95,6 +134,7 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     @Override
     public void onPartitionsAssigned (Collection<TopicPartition> partitions) {
         logger.info("onPartitionsAssigned: " + partitions);
+        if (partitionMetrics != null) partitionMetrics.setAssignment(consumer.assignment());
     }
 
     /**
@@ -109,13 +149,19 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     @Override
     public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
         logger.info("onPartitionsRevoked: " + partitions);
+        if (partitionMetrics != null) partitionMetrics.revoke(partitions);
     }
     
 
     private <K, V> KafkaConsumerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
-            KafkaOperatorProperties kafkaProperties)
+            KafkaOperatorProperties kafkaProperties, boolean conflateByKey, RecordFilter recordFilter,
+            int latencySampleInterval, long partitionMetricsPeriodMs, List<String> clientMetrics, long clientMetricsPeriodMs,
+            boolean phaseTimeMetrics, Function<KafkaOperatorProperties, Consumer<?, ?>> consumerFactory)
                     throws Exception {
         this.kafkaProperties = kafkaProperties;
+        this.conflateByKey = conflateByKey;
+        this.recordFilter = recordFilter;
+        this.latencySampleInterval = latencySampleInterval;
         if (!this.kafkaProperties.containsKey(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG)) {
             this.kafkaProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, getDeserializer(keyClass));
         }
@@ -143,6 +189,14 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
         }
         autoCommitEnabled = this.kafkaProperties.getProperty (ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG).equalsIgnoreCase ("true");
 
+        if (recordFilter != null) {
+            logger.info ("Filtering records with " + recordFilter); //$NON-NLS-1$
+            keyDeserializer = createDeserializer (ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, true);
+            valueDeserializer = createDeserializer (ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, false);
+            this.kafkaProperties.put (ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+            this.kafkaProperties.put (ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getCanonicalName());
+        }
+
         maxPollRecords = getMaxPollRecords();
         maxPollIntervalMs = getMaxPollIntervalMs();
         messageQueue = new LinkedBlockingQueue<ConsumerRecord<?, ?>>(getMessageQueueSize());
@@ -155,6 +209,19 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
         this.nPendingMessages = operatorContext.getMetrics().getCustomMetric("nPendingMessages");
         this.nLowMemoryPause = operatorContext.getMetrics().getCustomMetric("nLowMemoryPause");
         this.nQueueFullPause = operatorContext.getMetrics().getCustomMetric("nQueueFullPause");
+        this.nConflatedMessages = operatorContext.getMetrics().getCustomMetric("nConflatedMessages");
+        this.nFilteredMessages = operatorContext.getMetrics().getCustomMetric("nFilteredMessages");
+        if (partitionMetricsPeriodMs > 0l) {
+            this.partitionMetrics = new PartitionMetrics(operatorContext.getMetrics());
+            this.partitionMetricsPeriodMs = partitionMetricsPeriodMs;
+        }
+        setClientMetrics(operatorContext.getMetrics(), clientMetrics, clientMetricsPeriodMs);
+        if (phaseTimeMetrics) {
+            this.pollThreadTimes = new PhaseTimeMetrics(
+                    operatorContext.getMetrics().getCustomMetric("pollThreadFetchPercent"), //$NON-NLS-1$
+                    operatorContext.getMetrics().getCustomMetric("pollThreadDeserializePercent"), //$NON-NLS-1$
+                    operatorContext.getMetrics().getCustomMetric("pollThreadQueueFullPercent")); //$NON-NLS-1$
+        }
         
         consumerInitLatch = new CountDownLatch(1);
         eventThread = operatorContext.getThreadFactory().newThread(new Runnable() {
@@ -162,7 +229,7 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
             @Override
             public void run() {
                 try {
-                    consumer = new KafkaConsumer<>(kafkaProperties);
+                    consumer = consumerFactory.apply(kafkaProperties);
                     offsetManager = new OffsetManager(consumer);
                     
                     consumerInitLatch.countDown(); // consumer is ready
@@ -180,6 +247,22 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
         consumerInitLatch.await(); // wait for consumer to be created before returning
     }
 
+    /**
+     * Creates and configures the deserializer that is configured in the Kafka properties.
+     * @param configName the property name of the deserializer class
+     * @param isKey      true for the key deserializer, false for the value deserializer
+     * @return the configured deserializer
+     * @throws Exception the deserializer cannot be instantiated
+     */
+    private Deserializer<?> createDeserializer (String configName, boolean isKey) throws Exception {
+        final String className = kafkaProperties.getProperty (configName);
+        final Deserializer<?> deserializer = (Deserializer<?>) Class.forName (className).newInstance();
+        final Map<String, Object> configs = new HashMap<>();
+        kafkaProperties.forEach ((k, v) -> configs.put (k.toString(), v));
+        deserializer.configure (configs, isKey);
+        return deserializer;
+    }
+
     public Exception getInitializationException() {
 		return initializationException;
 	}
@@ -304,6 +387,48 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     	subscribeToTopicsWithOffsets(topicPartitionOffsetMap);
 	}
     
+    /**
+     * Gets the end offsets of the assigned partitions, which have not yet been read up to their end offset.
+     * This method must be called after the client has been assigned to topic partitions, but before polling is started.
+     * @return map from topic partition to end offset. The map is empty when all assigned partitions are read.
+     */
+    public Map<TopicPartition, Long> getEndOffsetsOfUnreadPartitions() {
+        final Set<TopicPartition> assignment = consumer.assignment();
+        final Map<TopicPartition, Long> endOffsets = new HashMap<>(consumer.endOffsets (assignment));
+        endOffsets.entrySet().removeIf (e -> consumer.position (e.getKey()) >= e.getValue());
+        logger.debug ("end offsets of unread partitions: " + endOffsets); //$NON-NLS-1$
+        return endOffsets;
+    }
+
+    /**
+     * Begins to track the bootstrap of a table. The polling thread queues {@link #BOOTSTRAP_COMPLETE} after the polled records,
+     * when the position of the consumer has reached the end offset in all assigned partitions. The position also passes
+     * end offsets that belong to transaction markers, which are never returned as records.
+     * After a reset of the client, the marker is queued again when the partitions have been read up to the end offsets.
+     * This method must be called after the client has been assigned to topic partitions, but before polling is started.
+     * @return the number of partitions that have not yet been read up to their end offset
+     */
+    public int beginBootstrap() {
+        bootstrapEndOffsets = getEndOffsetsOfUnreadPartitions();
+        unreadBootstrapPartitions = new HashSet<>(bootstrapEndOffsets.keySet());
+        return bootstrapEndOffsets.size();
+    }
+
+    /**
+     * Removes the partitions from the unread bootstrap partitions that have been read up to the end offset
+     * or that are not assigned anymore. When all partitions are read, the bootstrap marker is queued.
+     * @throws InterruptedException the thread has been interrupted waiting for space in the message queue
+     */
+    private void checkBootstrapComplete() throws InterruptedException {
+        final Set<TopicPartition> assignment = consumer.assignment();
+        unreadBootstrapPartitions.removeIf (tp -> !assignment.contains (tp) || consumer.position (tp) >= bootstrapEndOffsets.get (tp));
+        if (unreadBootstrapPartitions.isEmpty()) {
+            logger.debug ("all partitions read up to the bootstrap end offsets"); //$NON-NLS-1$
+            unreadBootstrapPartitions = null;
+            messageQueue.put (BOOTSTRAP_COMPLETE);
+        }
+    }
+
     private void saveOffsetManagerToJCP() throws Exception {
         ControlPlaneContext controlPlaneContext = operatorContext
                 .getOptionalContext(ControlPlaneContext.class);
@@ -335,6 +460,7 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     		topicPartitionMap.forEach((topic, tpList) -> offsetManager.addTopic(topic, tpList));
     	
     	consumer.assign(topicPartitions);
+    	if (partitionMetrics != null) partitionMetrics.setAssignment(topicPartitions);
     	isAssignedToTopics = true;
     }
     
@@ -383,6 +509,9 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
         // continue polling for messages until a new event
         // arrives in the event queue
         while (eventQueue.isEmpty()) {
+            if (partitionMetrics != null) updatePartitionMetrics();
+            // the Kafka consumer is not thread-safe; its metrics are read by the polling thread
+            updateClientMetrics(consumer::metrics);
             boolean lowMemory = false;
             boolean space = messageQueue.isEmpty();
             if (!space) {
@@ -409,23 +538,38 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
                         }
                     }
                     if (logger.isTraceEnabled()) logger.trace("Polling for records..."); //$NON-NLS-1$
+                    final long fetchStart = pollThreadTimes != null? System.nanoTime(): 0l;
                     ConsumerRecords<?, ?> records = consumer.poll(timeout);
+                    if (pollThreadTimes != null) pollThreadTimes.add(FETCH_PHASE, System.nanoTime() - fetchStart);
                     int numRecords = records == null? 0: records.count();
                     if (logger.isTraceEnabled() && numRecords == 0) logger.trace("# polled records: " + (records == null? "0 (records == null)": "0"));
                     lastPollTimestamp = System.currentTimeMillis();
                     if (numRecords > 0) {
                         if (logger.isDebugEnabled()) logger.debug("# polled records: " + numRecords);
-                        records.forEach(cr -> {
+                        if (partitionMetrics != null) partitionMetrics.recordsFetched(records);
+                        final long fetchTimeNanos = latencySampleInterval > 0? System.nanoTime(): 0l;
+                        // the Kafka consumer deserializes within poll unless the records are filtered
+                        final boolean timeDeserialization = pollThreadTimes != null && recordFilter != null;
+                        final long deserializeStart = timeDeserialization? System.nanoTime(): 0l;
+                        final Iterable<? extends ConsumerRecord<?, ?>> queuedRecords = (conflateByKey || recordFilter != null)? preprocess (records): records;
+                        if (timeDeserialization) pollThreadTimes.add(DESERIALIZE_PHASE, System.nanoTime() - deserializeStart);
+                        for (ConsumerRecord<?, ?> cr: queuedRecords) {
                             if (logger.isDebugEnabled()) {
                                 logger.debug(cr.topic() + "-" + cr.partition() + " key=" + cr.key() + " - offset=" + cr.offset()); //$NON-NLS-1$
                             }
+                            if (latencySampleInterval > 0 && ++nSinceLastSample >= latencySampleInterval
+                                    && !(cr instanceof RecordFilter.OffsetMarker)) {
+                                nSinceLastSample = 0;
+                                cr = new SampledRecord<>(cr, fetchTimeNanos);
+                            }
                             messageQueue.add(cr);
-                        });
+                        }
                         nPendingMessages.setValue(messageQueue.size());
                         if (!autoCommitEnabled) consumer.commitSync();
                     } else {
                         nPendingMessages.setValue(messageQueue.size());
                     }
+                    if (unreadBootstrapPartitions != null) checkBootstrapComplete();
                 } catch (SerializationException e) {
                     // The default deserializers of the operator do not 
                     // throw SerializationException, but custom deserializers may throw...
@@ -451,18 +595,163 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
                     nQueueFullPause.increment();
                     
                 // prevent busy-wait
+                final long waitStart = pollThreadTimes != null? System.nanoTime(): 0l;
                 try {
                     pausedLock.lock();
                     paused.await(100, TimeUnit.MILLISECONDS);
                 } finally {
                     pausedLock.unlock();
                 }
+                if (pollThreadTimes != null) pollThreadTimes.add(QUEUE_FULL_PHASE, System.nanoTime() - waitStart);
                 nPendingMessages.setValue(messageQueue.size());
             }
         }
         logger.debug("Stop polling, message in event queue: " + eventQueue.peek().getEventType()); //$NON-NLS-1$
     }
 
+    /**
+     * Updates the partition metrics when the update period has elapsed.
+     * The lag is taken from the client metrics of the consumer, which are updated with every fetch response.
+     * Requesting the end offsets from the brokers would block the polling thread up to request.timeout.ms.
+     */
+    private void updatePartitionMetrics() {
+        final long now = System.currentTimeMillis();
+        if (now < nextPartitionMetricsUpdate) {
+            return;
+        }
+        nextPartitionMetricsUpdate = now + partitionMetricsPeriodMs;
+        partitionMetrics.update(getRecordsLag());
+    }
+
+    /**
+     * Gets the lag of the assigned partitions from the per-partition records-lag metrics of the consumer.
+     * The metric is named <tt>topic-partition.records-lag</tt> up to Kafka 1.0, and <tt>records-lag</tt>
+     * with the tags <tt>topic</tt> and <tt>partition</tt> since Kafka 1.1.
+     * Partitions, from which no records have been fetched yet, have no lag.
+     * @return the lag by partition
+     */
+    private Map<TopicPartition, Long> getRecordsLag() {
+        final Map<String, TopicPartition> lagMetricNames = new HashMap<>();
+        for (TopicPartition tp: consumer.assignment()) {
+            lagMetricNames.put(tp + "." + RECORDS_LAG_METRIC, tp); //$NON-NLS-1$
+        }
+        final Map<TopicPartition, Long> lags = new HashMap<>();
+        for (Entry<MetricName, ? extends org.apache.kafka.common.Metric> entry: consumer.metrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            TopicPartition tp = lagMetricNames.get(name.name());
+            if (tp == null && RECORDS_LAG_METRIC.equals(name.name())) {
+                final String topic = name.tags().get("topic"); //$NON-NLS-1$
+                final String partition = name.tags().get("partition"); //$NON-NLS-1$
+                if (topic == null || partition == null) continue;
+                tp = new TopicPartition(topic, Integer.parseInt(partition));
+            }
+            if (tp == null) continue;
+            final Object value = entry.getValue().metricValue();
+            if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+                lags.put(tp, ((Double) value).longValue());
+            }
+        }
+        return lags;
+    }
+
+    /**
+     * Updates the phase time metrics of the polling thread.
+     * This method can be called by any thread. It does nothing when the phase time metrics are disabled.
+     */
+    public void updatePhaseTimeMetrics() {
+        if (pollThreadTimes != null) pollThreadTimes.update();
+    }
+
+    /**
+     * Filters and conflates the records of a poll batch partition by partition.
+     * @param records the polled records
+     * @return the records to be queued
+     */
+    private List<ConsumerRecord<?, ?>> preprocess (ConsumerRecords<?, ?> records) {
+        final List<ConsumerRecord<?, ?>> keptRecords = new ArrayList<>(records.count());
+        for (TopicPartition tp: records.partitions()) {
+            List<? extends ConsumerRecord<?, ?>> partitionRecords = records.records (tp);
+            if (recordFilter != null) {
+                partitionRecords = filter (tp, partitionRecords);
+            }
+            if (conflateByKey) {
+                partitionRecords = conflate (tp, partitionRecords);
+            }
+            keptRecords.addAll (partitionRecords);
+        }
+        return keptRecords;
+    }
+
+    /**
+     * Filters the records of a partition with the record filter and deserializes key and value of the accepted records.
+     * When the last records of the partition are dropped in a consistent region, an {@link RecordFilter.OffsetMarker}
+     * with the offset of the last dropped record is added, so that the offset of the next record to consume,
+     * which is taken from the last submitted record of a partition, advances also past the dropped records.
+     * @param tp      the topic partition
+     * @param records the records of the partition with serialized key and value
+     * @return the accepted records with deserialized key and value
+     */
+    @SuppressWarnings("unchecked")
+    private List<ConsumerRecord<?, ?>> filter (TopicPartition tp, List<? extends ConsumerRecord<?, ?>> records) {
+        final List<ConsumerRecord<?, ?>> accepted = new ArrayList<>(records.size());
+        ConsumerRecord<?, ?> lastDropped = null;
+        for (ConsumerRecord<?, ?> r: records) {
+            final ConsumerRecord<byte[], byte[]> cr = (ConsumerRecord<byte[], byte[]>) r;
+            if (recordFilter.accept (cr)) {
+                accepted.add (new ConsumerRecord<>(cr.topic(), cr.partition(), cr.offset(), cr.timestamp(), cr.timestampType(),
+                        null, cr.serializedKeySize(), cr.serializedValueSize(),
+                        keyDeserializer.deserialize (cr.topic(), cr.key()),
+                        valueDeserializer.deserialize (cr.topic(), cr.value()), cr.headers()));
+                lastDropped = null;
+            }
+            else {
+                lastDropped = cr;
+            }
+        }
+        final int nFiltered = records.size() - accepted.size();
+        if (nFiltered > 0) {
+            nFilteredMessages.incrementValue (nFiltered);
+            if (logger.isTraceEnabled()) logger.trace ("filtered " + nFiltered + " records of " + tp); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (lastDropped != null && isConsistentRegionEnabled()) {
+            accepted.add (new RecordFilter.OffsetMarker (lastDropped.topic(), lastDropped.partition(), lastDropped.offset()));
+        }
+        return accepted;
+    }
+
+    /**
+     * Conflates the records of a partition. Only the newest record of each key is kept.
+     * Records without key are always kept. The order of the kept records is preserved.
+     * As the last record of a partition is always kept, the offset of the next record to consume, which is taken
+     * from the last submitted record of a partition, advances also past the dropped records.
+     * @param tp      the topic partition
+     * @param partitionRecords the records of the partition
+     * @return the kept records
+     */
+    private List<ConsumerRecord<?, ?>> conflate (TopicPartition tp, List<? extends ConsumerRecord<?, ?>> partitionRecords) {
+        final List<ConsumerRecord<?, ?>> keptRecords = new ArrayList<>(partitionRecords.size());
+        final Set<Object> keys = new HashSet<>();
+        final ConsumerRecord<?, ?>[] kept = new ConsumerRecord<?, ?>[partitionRecords.size()];
+        int nKept = 0;
+        // iterate backwards, so that the first occurrence of a key is the newest record
+        for (int i = partitionRecords.size() -1; i >= 0; --i) {
+            final ConsumerRecord<?, ?> cr = partitionRecords.get (i);
+            final Object key = cr.key() instanceof byte[]? ByteBuffer.wrap ((byte[]) cr.key()): cr.key();
+            if (key == null || keys.add (key)) {
+                kept[nKept++] = cr;
+            }
+        }
+        for (int i = nKept -1; i >= 0; --i) {
+            keptRecords.add (kept[i]);
+        }
+        final int nConflated = partitionRecords.size() - nKept;
+        if (nConflated > 0) {
+            nConflatedMessages.incrementValue (nConflated);
+            if (logger.isDebugEnabled()) logger.debug ("conflated " + nConflated + " records of " + tp); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return keptRecords;
+    }
+
     // Lock/condition for when we pause processing due to
     // no space on the queue or low memory.
     private final ReentrantLock pausedLock = new ReentrantLock();
@@ -620,7 +909,56 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
          return record;
     }
 
-    private void refreshFromCluster() {
+    /**
+     * Gets up to {@code maxRecords} records from the message queue.
+     * The method waits up to one second for the first record. Then it collects further records
+     * until either {@code maxRecords} records are collected or {@code batchTimeoutMs} milliseconds
+     * have passed since the first record was received. When {@code batchTimeoutMs} is 0,
+     * only those records are added that are already queued.
+     *
+     * @param records        the list to which the records are added
+     * @param maxRecords     the maximum number of records to add
+     * @param batchTimeoutMs the maximum time in milliseconds to wait for more records after the first one
+     * @return the number of records added to the list
+     * @throws InterruptedException the thread has been interrupted
+     */
+    public int getNextRecords(List<ConsumerRecord<?, ?>> records, int maxRecords, long batchTimeoutMs) throws InterruptedException {
+        final ConsumerRecord<?,?> first = getNextRecord();
+        if (first == null) {
+            return 0;
+        }
+        records.add(first);
+        int n = 1 + messageQueue.drainTo(records, maxRecords - 1);
+        if (batchTimeoutMs > 0) {
+            final long deadline = System.currentTimeMillis() + batchTimeoutMs;
+            long remaining;
+            while (n < maxRecords && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                final ConsumerRecord<?,?> record = messageQueue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (record == null) break;
+                records.add(record);
+                ++n;
+                n += messageQueue.drainTo(records, maxRecords - n);
+            }
+        }
+        if (messageQueue.isEmpty()) {
+            nPendingMessages.setValue(0);
+            // wake up the polling thread, which may wait for free space in the queue
+            try {
+                pausedLock.lock();
+                paused.signalAll();
+            } finally {
+                pausedLock.unlock();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Assigns the consumer to the partitions of the offset manager and seeks to the saved offsets.
+     * This method is package-private for the benchmarks of checkpoint and reset. It must be invoked
+     * by the event thread, or when the event thread does not use the consumer.
+     */
+    void refreshFromCluster() {
         logger.debug("Refreshing from cluster..."); //$NON-NLS-1$
         List<String> topics = offsetManager.getTopics();
         Map<TopicPartition, Long> startOffsetMap = new HashMap<TopicPartition, Long>();
@@ -643,6 +981,7 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
         // assign the consumer to the partitions and seek to the
         // last saved offset
         consumer.assign(startOffsetMap.keySet());
+        if (partitionMetrics != null) partitionMetrics.setAssignment(startOffsetMap.keySet());
         for (Entry<TopicPartition, Long> entry : startOffsetMap.entrySet()) {
             logger.debug("Consumer seeking: TopicPartition=" + entry.getKey() + ", new_offset=" + entry.getValue()); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -693,6 +1032,8 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
             
             // remove records from queue
             messageQueue.clear();
+            // the bootstrap marker may have been removed
+            if (bootstrapEndOffsets != null) unreadBootstrapPartitions = new HashSet<>(bootstrapEndOffsets.keySet());
         } finally {
             resettingLatch.countDown();
         }
@@ -711,6 +1052,8 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
             
             // remove records from queue
             messageQueue.clear();
+            // the bootstrap marker may have been removed
+            if (bootstrapEndOffsets != null) unreadBootstrapPartitions = new HashSet<>(bootstrapEndOffsets.keySet());
         } finally {
             resettingLatch.countDown();
         }
@@ -725,6 +1068,14 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
     	private Class<?> keyClass;
     	private Class<?> valueClass;
         private KafkaOperatorProperties kafkaProperties;
+        private boolean conflateByKey = false;
+        private RecordFilter recordFilter = null;
+        private int latencySampleInterval = 0;
+        private long partitionMetricsPeriodMs = 0l;
+        private List<String> clientMetrics = null;
+        private long clientMetricsPeriodMs = 0l;
+        private boolean phaseTimeMetrics = false;
+        private Function<KafkaOperatorProperties, Consumer<?, ?>> consumerFactory = props -> new KafkaConsumer<>(props);
         
         public KafkaConsumerClientBuilder setKafkaProperties(KafkaOperatorProperties kafkaProperties) {
 			this.kafkaProperties = kafkaProperties;
@@ -746,8 +1097,74 @@ public class KafkaConsumerClient extends AbstractKafkaClient implements Consumer
 			return this;
 		}
         
+        public KafkaConsumerClientBuilder setConflateByKey(boolean conflateByKey) {
+            this.conflateByKey = conflateByKey;
+            return this;
+        }
+        
+        public KafkaConsumerClientBuilder setRecordFilter(RecordFilter recordFilter) {
+            this.recordFilter = recordFilter;
+            return this;
+        }
+        
+        /**
+         * Sets the interval, in which queued records are replaced by a {@link SampledRecord}.
+         * @param latencySampleInterval every n-th record is sampled; 0 disables the sampling
+         * @return this builder
+         */
+        public KafkaConsumerClientBuilder setLatencySampleInterval(int latencySampleInterval) {
+            this.latencySampleInterval = latencySampleInterval;
+            return this;
+        }
+        
+        /**
+         * Sets the period, in which the metrics of the assigned partitions are updated.
+         * @param partitionMetricsPeriodMs the period in milliseconds; 0 disables the partition metrics
+         * @return this builder
+         */
+        public KafkaConsumerClientBuilder setPartitionMetricsPeriodMs(long partitionMetricsPeriodMs) {
+            this.partitionMetricsPeriodMs = partitionMetricsPeriodMs;
+            return this;
+        }
+        
+        /**
+         * Selects the metrics of the Kafka consumer, which are copied into custom metrics of the operator.
+         * @param clientMetrics         the names of the Kafka metrics
+         * @param clientMetricsPeriodMs the update period in milliseconds; 0 disables the copying
+         * @return this builder
+         */
+        public KafkaConsumerClientBuilder setClientMetrics(List<String> clientMetrics, long clientMetricsPeriodMs) {
+            this.clientMetrics = clientMetrics;
+            this.clientMetricsPeriodMs = clientMetricsPeriodMs;
+            return this;
+        }
+        
+        /**
+         * Enables the time accounting of the polling thread. The deserialization is only accounted separately,
+         * when a record filter is set; otherwise the Kafka consumer deserializes the records within the fetch.
+         * @param phaseTimeMetrics true, to enable the phase time metrics
+         * @return this builder
+         */
+        public KafkaConsumerClientBuilder setPhaseTimeMetrics(boolean phaseTimeMetrics) {
+            this.phaseTimeMetrics = phaseTimeMetrics;
+            return this;
+        }
+        
+        /**
+         * Sets the factory that creates the Kafka consumer from the consumer properties.
+         * The default factory creates a {@link KafkaConsumer}. Tests and benchmarks can set a factory
+         * that creates a {@link org.apache.kafka.clients.consumer.MockConsumer}.
+         * @param consumerFactory the consumer factory
+         * @return this builder
+         */
+        public KafkaConsumerClientBuilder setConsumerFactory(Function<KafkaOperatorProperties, Consumer<?, ?>> consumerFactory) {
+            this.consumerFactory = consumerFactory;
+            return this;
+        }
+        
         public KafkaConsumerClient build() throws Exception {
-        	return new KafkaConsumerClient(operatorContext, keyClass, valueClass, kafkaProperties);
+        	return new KafkaConsumerClient(operatorContext, keyClass, valueClass, kafkaProperties, conflateByKey, recordFilter, latencySampleInterval, partitionMetricsPeriodMs,
+        	        clientMetrics, clientMetricsPeriodMs, phaseTimeMetrics, consumerFactory);
         }
     }
 }
@@ -0,0 +1,141 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * A filter for consumer records that is evaluated against the serialized key, the headers,
+ * the timestamp, and the partition of a record before key and value are deserialized.
+ * A record is accepted when it matches all configured criteria. Criteria that are not configured always match.
+ * <p>
+ * Keys and header values are compared with the UTF-8 encoded filter values.
+ */
+public class RecordFilter {
+
+    private Set<ByteBuffer> keys = null;
+    private byte[] keyPrefix = null;
+    // header name -> UTF-8 encoded header value, or null when only the presence of the header is tested
+    private Map<String, byte[]> headers = null;
+    private long minTimestamp = Long.MIN_VALUE;
+    private long maxTimestamp = Long.MAX_VALUE;
+    private Set<Integer> partitions = null;
+
+    /**
+     * A record that replaces the filtered records at the end of a partition batch.
+     * It is not submitted, but carries the offset of the last filtered record, so that
+     * the offset of the next record to consume advances past the filtered records.
+     */
+    public static class OffsetMarker extends ConsumerRecord<Object, Object> {
+        public OffsetMarker(String topic, int partition, long offset) {
+            super(topic, partition, offset, null, null);
+        }
+    }
+
+    /**
+     * Sets the keys. A record is accepted when its key equals one of the keys.
+     * @param keys the keys
+     */
+    public void setKeys(Collection<String> keys) {
+        this.keys = new HashSet<>();
+        for (String key: keys) {
+            this.keys.add(ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Sets the key prefix. A record is accepted when its key begins with the prefix.
+     * @param keyPrefix the key prefix
+     */
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sets the headers. A record is accepted when it has all headers. When a value is given for
+     * a header name, the record must have the header with that value.
+     * @param headers map from header name to header value. The value can be null.
+     */
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = new HashMap<>();
+        headers.forEach((name, value) -> this.headers.put(name, value == null? null: value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Sets the minimum timestamp in milliseconds since epoch (inclusive).
+     * @param minTimestamp the minimum timestamp
+     */
+    public void setMinTimestamp(long minTimestamp) {
+        this.minTimestamp = minTimestamp;
+    }
+
+    /**
+     * Sets the maximum timestamp in milliseconds since epoch (inclusive).
+     * @param maxTimestamp the maximum timestamp
+     */
+    public void setMaxTimestamp(long maxTimestamp) {
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * Sets the partitions. A record is accepted when it is from one of the partitions.
+     * @param partitions the partition numbers
+     */
+    public void setPartitions(Collection<Integer> partitions) {
+        this.partitions = new HashSet<>(partitions);
+    }
+
+    /**
+     * Tests whether a record with serialized key matches all criteria.
+     * @param record the record with serialized key and value
+     * @return true, if the record is accepted, false, if it is to be dropped.
+     */
+    public boolean accept(ConsumerRecord<byte[], byte[]> record) {
+        if (partitions != null && !partitions.contains(record.partition())) return false;
+        final long timestamp = record.timestamp();
+        if (timestamp < minTimestamp || timestamp > maxTimestamp) return false;
+        final byte[] key = record.key();
+        if (keys != null && (key == null || !keys.contains(ByteBuffer.wrap(key)))) return false;
+        if (keyPrefix != null && (key == null || !startsWith(key, keyPrefix))) return false;
+        if (headers != null) {
+            for (Map.Entry<String, byte[]> h: headers.entrySet()) {
+                if (!hasHeader(record, h.getKey(), h.getValue())) return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * compares the bytes in place to avoid a copy of the key for every record
+     */
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; ++i) {
+            if (key[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasHeader(ConsumerRecord<byte[], byte[]> record, String name, byte[] value) {
+        for (Header header: record.headers().headers(name)) {
+            if (value == null || Arrays.equals(value, header.value())) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordFilter [keys=" + (keys == null? null: keys.size()) + ", keyPrefix=" //$NON-NLS-1$ //$NON-NLS-2$
+                + (keyPrefix == null? null: new String(keyPrefix, StandardCharsets.UTF_8))
+                + ", headers=" + (headers == null? null: headers.keySet()) + ", minTimestamp=" + minTimestamp //$NON-NLS-1$ //$NON-NLS-2$
+                + ", maxTimestamp=" + maxTimestamp + ", partitions=" + partitions + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
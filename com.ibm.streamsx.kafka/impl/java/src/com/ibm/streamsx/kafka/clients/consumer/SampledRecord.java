@@ -0,0 +1,32 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * A copy of a fetched record, which is selected for the latency metrics.
+ * It carries the time when the record was returned by the Kafka consumer.
+ */
+public class SampledRecord<K, V> extends ConsumerRecord<K, V> {
+
+    private final long fetchTimeNanos;
+
+    /**
+     * Constructs a new sampled record.
+     * @param record         the fetched record
+     * @param fetchTimeNanos the value of {@link System#nanoTime()} when the record was fetched
+     */
+    public SampledRecord(ConsumerRecord<K, V> record, long fetchTimeNanos) {
+        super(record.topic(), record.partition(), record.offset(), record.timestamp(), record.timestampType(),
+                null, record.serializedKeySize(), record.serializedValueSize(),
+                record.key(), record.value(), record.headers());
+        this.fetchTimeNanos = fetchTimeNanos;
+    }
+
+    /**
+     * Gets the time when the record was fetched.
+     * @return the value of {@link System#nanoTime()} when the record was fetched
+     */
+    public long getFetchTimeNanos() {
+        return fetchTimeNanos;
+    }
+}
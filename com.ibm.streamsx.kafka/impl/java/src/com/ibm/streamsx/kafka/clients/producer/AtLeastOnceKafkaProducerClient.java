@@ -4,12 +4,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.state.Checkpoint;
 import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
 
@@ -21,7 +25,12 @@ public class AtLeastOnceKafkaProducerClient extends KafkaProducerClient {
     
     public <K, V> AtLeastOnceKafkaProducerClient(OperatorContext operatorContext, Class<?> keyType,
             Class<?> messageType, KafkaOperatorProperties props) throws Exception {
-        super(operatorContext, keyType, messageType, props);
+        this(operatorContext, keyType, messageType, props, p -> new KafkaProducer<>(p));
+    }
+
+    public <K, V> AtLeastOnceKafkaProducerClient(OperatorContext operatorContext, Class<?> keyType,
+            Class<?> messageType, KafkaOperatorProperties props, Function<KafkaOperatorProperties, Producer<?, ?>> producerFactory) throws Exception {
+        super(operatorContext, keyType, messageType, props, producerFactory);
         logger.debug("AtLeastOnceKafkaProducerClient starting...");
         
         this.futuresList = Collections.synchronizedList(new ArrayList<Future<RecordMetadata>>());
@@ -29,8 +38,8 @@ public class AtLeastOnceKafkaProducerClient extends KafkaProducerClient {
 
     @SuppressWarnings("rawtypes")
 	@Override
-    public Future<RecordMetadata> send(ProducerRecord record) throws Exception {
-    	Future<RecordMetadata> future = super.send(record);
+    protected Future<RecordMetadata> send(ProducerRecord record, Tuple tuple, int nRetries) throws Exception {
+    	Future<RecordMetadata> future = super.send(record, tuple, nRetries);
         futuresList.add(future);
         return future;
     }
@@ -65,6 +74,7 @@ public class AtLeastOnceKafkaProducerClient extends KafkaProducerClient {
     @Override
     public void tryCancelOutstandingSendRequests (boolean mayInterruptIfRunning) {
         if (logger.isDebugEnabled()) logger.debug("TransactionalKafkaProducerClient -- trying to cancel requests");
+        super.tryCancelOutstandingSendRequests(mayInterruptIfRunning);
         int nCancelled = 0;
         for (Future<RecordMetadata> future : futuresList) {
             if (!future.isDone() && future.cancel (mayInterruptIfRunning)) ++nCancelled;
@@ -80,4 +90,11 @@ public class AtLeastOnceKafkaProducerClient extends KafkaProducerClient {
         }
         setSendException (null);
     }
+
+    @Override
+    public boolean resetToInitialState() throws Exception {
+        if (logger.isDebugEnabled()) logger.debug("AtLeastOnceKafkaProducerClient -- RESET TO INIT"); //$NON-NLS-1$
+        futuresList.clear();
+        return super.resetToInitialState();
+    }
 }
@@ -0,0 +1,22 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * Receives the acknowledgement of the broker for every record that has been sent successfully.
+ * The handler is invoked from the I/O thread of the Kafka producer, so that its implementation should not block.
+ */
+@FunctionalInterface
+public interface DeliveryReportHandler {
+
+    /**
+     * Called when a record has been acknowledged by the broker.
+     * @param record   the record that has been sent
+     * @param tuple    the tuple from which the record has been created. Can be null.
+     * @param metadata the metadata of the record, like partition and offset
+     */
+    void onRecordDelivered(ProducerRecord<?, ?> record, Tuple tuple, RecordMetadata metadata);
+}
@@ -0,0 +1,22 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import com.ibm.streams.operator.Tuple;
+
+/**
+ * Receives the records that could not be delivered to Kafka and that are not re-sent any more.
+ * The handler is invoked from the I/O thread of the Kafka producer or from the thread that re-sends the record,
+ * so that its implementation should not block.
+ */
+@FunctionalInterface
+public interface FailedRecordHandler {
+
+    /**
+     * Called when a record finally failed to be sent.
+     * @param record    the record that failed
+     * @param tuple     the tuple from which the record has been created. Can be null.
+     * @param exception the exception that caused the failure
+     */
+    void onRecordFailed(ProducerRecord<?, ?> record, Tuple tuple, Exception exception);
+}
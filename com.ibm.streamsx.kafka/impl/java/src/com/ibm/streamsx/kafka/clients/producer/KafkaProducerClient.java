@@ -1,15 +1,32 @@
 package com.ibm.streamsx.kafka.clients.producer;
 
+import java.util.Collection;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.ApiException;
+import org.apache.kafka.common.errors.AuthenticationException;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.UnsupportedVersionException;
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
 import com.ibm.streams.operator.state.Checkpoint;
 import com.ibm.streamsx.kafka.clients.AbstractKafkaClient;
 import com.ibm.streamsx.kafka.i18n.Messages;
@@ -18,31 +35,75 @@ import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
 public class KafkaProducerClient extends AbstractKafkaClient {
 
     private static final Logger logger = Logger.getLogger(KafkaProducerClient.class);
-    private static final int CLOSE_TIMEOUT = 5;
-    private static final TimeUnit CLOSE_TIMEOUT_TIMEUNIT = TimeUnit.SECONDS;
+    protected static final int CLOSE_TIMEOUT = 5;
+    protected static final TimeUnit CLOSE_TIMEOUT_TIMEUNIT = TimeUnit.SECONDS;
     private static final String GENERATED_PRODUCERID_PREFIX = "producer-"; //$NON-NLS-1$
+    private static final int MAX_RETRY_BACKOFF_DOUBLINGS = 6;
 
-    protected KafkaProducer<?, ?> producer;
-    protected ProducerCallback callback;
+    protected Producer<?, ?> producer;
+    // creates the Kafka producers; can be replaced to run the client against a MockProducer
+    protected final Function<KafkaOperatorProperties, Producer<?, ?>> producerFactory;
+    // the callback shared by the records that need no own callback; replaced when a new send epoch begins
+    protected volatile ProducerCallback callback;
     protected Exception sendException;
     protected KafkaOperatorProperties kafkaProperties;
     protected Class<?> keyClass;
     protected Class<?> valueClass;
 	protected OperatorContext operatorContext;
-    
+
+    private int maxRecordRetries = 0;
+    private long recordRetryBackoffMs = 0l;
+    private FailedRecordHandler failedRecordHandler = null;
+    private DeliveryReportHandler deliveryReportHandler = null;
+    // number of records that are scheduled for re-send, but not yet handed over to the Kafka producer
+    private final AtomicInteger pendingRetries = new AtomicInteger(0);
+    // incremented when outstanding send requests are cancelled; completions and scheduled re-sends
+    // of records sent in an older epoch are ignored
+    private final AtomicLong sendEpoch = new AtomicLong(0l);
+    private Metric nFailedMessages;
+    private Metric nRetriedMessages;
+    private Metric nDeadLetteredMessages;
+    // tracks the bytes per partition for the LoadAwarePartitioner; null when another partitioner is used
+    private PartitionLoadTracker partitionLoadTracker = null;
+    private ScheduledFuture<?> clientMetricsUpdater = null;
+    // send latency and batching metrics; null when disabled
+    private ProducerMetrics producerMetrics = null;
+    private int latencySampleInterval = 0;
+    // updated by the tuple thread and by the re-sends of the scheduled executor
+    private final AtomicInteger nSinceLastSample = new AtomicInteger(0);
+    private ScheduledFuture<?> producerMetricsUpdater = null;
+
     public <K, V> KafkaProducerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
             KafkaOperatorProperties kafkaProperties) throws Exception {
+        this(operatorContext, keyClass, valueClass, kafkaProperties, props -> new KafkaProducer<>(props));
+    }
+
+    /**
+     * Creates a new producer client, which creates its Kafka producer with the given factory.
+     * @param operatorContext the operator context
+     * @param keyClass        the class of the key
+     * @param valueClass      the class of the value
+     * @param kafkaProperties the producer properties
+     * @param producerFactory the factory for the Kafka producer, which gets the configured producer properties
+     * @throws Exception
+     */
+    public <K, V> KafkaProducerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
+            KafkaOperatorProperties kafkaProperties, Function<KafkaOperatorProperties, Producer<?, ?>> producerFactory) throws Exception {
+        this.producerFactory = producerFactory;
         this.kafkaProperties = kafkaProperties;
         this.operatorContext = operatorContext;
         this.keyClass = keyClass;
         this.valueClass = valueClass;
-        
+        this.nFailedMessages = operatorContext.getMetrics().getCustomMetric("nFailedMessages");
+        this.nRetriedMessages = operatorContext.getMetrics().getCustomMetric("nRetriedMessages");
+        this.nDeadLetteredMessages = operatorContext.getMetrics().getCustomMetric("nDeadLetteredMessages");
+
         configureProperties();
         createProducer();
     }
 
     protected void createProducer() {
-        producer = new KafkaProducer<>(this.kafkaProperties);
+        producer = producerFactory.apply(this.kafkaProperties);
         callback = new ProducerCallback(this);
     }
     
@@ -69,10 +130,124 @@ public class KafkaProducerClient extends AbstractKafkaClient {
         if (!kafkaProperties.containsKey(ProducerConfig.CLIENT_ID_CONFIG)) {
             this.kafkaProperties.put(ProducerConfig.CLIENT_ID_CONFIG, getRandomId(GENERATED_PRODUCERID_PREFIX));
         }
+
+        // The LoadAwarePartitioner needs to know the bytes per partition, which are not yet acknowledged
+        Object partitionerClass = this.kafkaProperties.get(ProducerConfig.PARTITIONER_CLASS_CONFIG);
+        if (partitionerClass != null && (partitionerClass.equals(LoadAwarePartitioner.class) 
+                || partitionerClass.toString().trim().equals(LoadAwarePartitioner.class.getName()))) {
+            partitionLoadTracker = new PartitionLoadTracker();
+            this.kafkaProperties.put(LoadAwarePartitioner.LOAD_TRACKER_CONFIG, partitionLoadTracker);
+        }
     }
     
-    @SuppressWarnings({ "rawtypes", "unchecked" })
+    /**
+     * Sets the number of times a record is re-sent after the Kafka producer reported a retriable failure for it,
+     * and the initial back-off time between the re-sends, which doubles with every retry.
+     * @param maxRecordRetries     the maximum number of re-sends for a single record
+     * @param recordRetryBackoffMs the initial back-off time in milliseconds
+     */
+    public void setRecordRetries(int maxRecordRetries, long recordRetryBackoffMs) {
+        this.maxRecordRetries = maxRecordRetries;
+        this.recordRetryBackoffMs = recordRetryBackoffMs;
+    }
+
+    /**
+     * Selects the metrics of the Kafka producer, which are copied into custom metrics of the operator.
+     * The Kafka producer is thread-safe, so that the metrics are copied by a task of the scheduled executor service of the operator.
+     * @see AbstractKafkaClient#setClientMetrics(OperatorMetrics, Collection, long)
+     */
+    @Override
+    public void setClientMetrics(OperatorMetrics operatorMetrics, Collection<String> names, long periodMs) {
+        super.setClientMetrics(operatorMetrics, names, periodMs);
+        if (clientMetricsUpdater != null) {
+            clientMetricsUpdater.cancel(false);
+            clientMetricsUpdater = null;
+        }
+        if (hasClientMetrics()) {
+            // the producer can be replaced, for example on reset, so that the field is read with every update
+            clientMetricsUpdater = operatorContext.getScheduledExecutorService().scheduleAtFixedRate(
+                    () -> updateClientMetrics(() -> producer.metrics()), clientMetricsPeriodMs, clientMetricsPeriodMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Enables the send latency and batching metrics. The send latency is measured for every n-th record.
+     * The metrics are published by a task of the scheduled executor service of the operator.
+     * @param latencySampleInterval every n-th record is sampled; 0 disables the metrics
+     * @param periodMs              the period in milliseconds, in which the metrics are published
+     * @param perTopic              true, if metrics are also created for every topic
+     */
+    public void setProducerMetrics(int latencySampleInterval, long periodMs, boolean perTopic) {
+        if (producerMetricsUpdater != null) {
+            producerMetricsUpdater.cancel(false);
+            producerMetricsUpdater = null;
+        }
+        this.latencySampleInterval = latencySampleInterval;
+        if (latencySampleInterval <= 0) {
+            producerMetrics = null;
+            return;
+        }
+        producerMetrics = new ProducerMetrics(operatorContext.getMetrics(), perTopic);
+        final ProducerMetrics metrics = producerMetrics;
+        producerMetricsUpdater = operatorContext.getScheduledExecutorService().scheduleAtFixedRate(
+                () -> metrics.update(producer.metrics()), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the time between send and acknowledgement of a sampled record.
+     * @param topic        the topic of the record
+     * @param latencyNanos the latency in nanoseconds
+     */
+    void recordSendLatency(String topic, long latencyNanos) {
+        final ProducerMetrics metrics = producerMetrics;
+        if (metrics != null) {
+            metrics.recordSendLatency(topic, latencyNanos);
+        }
+    }
+
+    /**
+     * Sets the handler for records that finally failed to be sent.
+     * When no handler is set, a failed record causes the next send attempt to throw the exception.
+     * @param failedRecordHandler the handler or null
+     */
+    public void setFailedRecordHandler(FailedRecordHandler failedRecordHandler) {
+        this.failedRecordHandler = failedRecordHandler;
+    }
+
+    /**
+     * Sets the handler that receives the metadata of every record acknowledged by the broker.
+     * @param deliveryReportHandler the handler or null
+     */
+    public void setDeliveryReportHandler(DeliveryReportHandler deliveryReportHandler) {
+        this.deliveryReportHandler = deliveryReportHandler;
+    }
+
+    /**
+     * Returns true, if the send requests need a callback that knows the record. This is the case when failed sends 
+     * of single records are handled by re-sending them or by the {@link FailedRecordHandler}, or when delivery
+     * reports are created.
+     * @return true if every record needs its own callback, false otherwise
+     */
+    protected boolean isRecordCallbackRequired() {
+        return maxRecordRetries > 0 || failedRecordHandler != null || deliveryReportHandler != null
+                || partitionLoadTracker != null;
+    }
+
+    @SuppressWarnings("rawtypes")
     public Future<RecordMetadata> send(ProducerRecord record) throws Exception {
+        return send(record, null, 0);
+    }
+
+    /**
+     * Sends a record. 
+     * @param record   the record to be sent
+     * @param tuple    the tuple from which the record has been created, can be null
+     * @param nRetries the number of times the record has been re-sent before
+     * @return the Future for the send request
+     * @throws Exception a previous send request failed
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected Future<RecordMetadata> send(ProducerRecord record, Tuple tuple, int nRetries) throws Exception {
         if (sendException != null) {
             logger.error(Messages.getString("PREVIOUS_BATCH_FAILED_TO_SEND", sendException.getLocalizedMessage()), //$NON-NLS-1$
                     sendException);
@@ -80,9 +255,140 @@ public class KafkaProducerClient extends AbstractKafkaClient {
         }
 
         //logger.trace("Sending: " + record); //$NON-NLS-1$
-       return producer.send(record, callback);
+        final int interval = latencySampleInterval;
+        final boolean sampled = interval > 0 && nSinceLastSample.updateAndGet(n -> n +1 >= interval? 0: n +1) == 0;
+        if (isRecordCallbackRequired()) {
+            final ProducerCallback recordCallback = new ProducerCallback(this, record, tuple, nRetries);
+            if (sampled) recordCallback.setSendTime(record.topic(), System.nanoTime());
+            if (partitionLoadTracker == null) {
+                return producer.send(record, recordCallback);
+            }
+            // the partitioner assigns the selected partition to the callback
+            partitionLoadTracker.setPendingCallback(recordCallback);
+            try {
+                return producer.send(record, recordCallback);
+            } catch (RuntimeException e) {
+                // the producer invokes the callback only for an ApiException; otherwise the bytes would stay with the partition
+                recordCallback.releaseAssignedPartition();
+                throw e;
+            } finally {
+                partitionLoadTracker.setPendingCallback(null);
+            }
+        }
+        if (sampled) {
+            // the shared callback cannot carry the send time
+            final ProducerCallback sampledCallback = new ProducerCallback(this);
+            sampledCallback.setSendTime(record.topic(), System.nanoTime());
+            return producer.send(record, sampledCallback);
+        }
+        return producer.send(record, callback);
     }
-    
+
+    /**
+     * Handles the failure of a send request. Records that failed with a retriable exception are re-sent
+     * after a back-off time until the maximum number of retries is reached. Records that cannot be
+     * re-sent are passed to the {@link FailedRecordHandler} unless the exception is fatal for the producer.
+     * In all other cases the exception is stored and thrown on the next attempt to send a record.
+     * Failures that are retried are logged at debug level only, so that a transient failure does not flood the log.
+     *  
+     * @param record    the failed record or null, when the record is not known
+     * @param tuple     the tuple from which the record has been created or null
+     * @param nRetries  the number of times the record has been re-sent before
+     * @param exception the exception
+     */
+    void handleSendException(ProducerRecord<?, ?> record, Tuple tuple, int nRetries, Exception exception) {
+        final boolean recoverable = record != null && isRecoverable(exception);
+        if (recoverable && exception instanceof RetriableException && nRetries < maxRecordRetries) {
+            if (logger.isDebugEnabled()) logger.debug("send to topic " + record.topic() + " failed: " + exception); //$NON-NLS-1$ //$NON-NLS-2$
+            scheduleRetry(record, tuple, nRetries);
+            return;
+        }
+        logger.error(exception.getLocalizedMessage(), exception);
+        if (nFailedMessages != null) nFailedMessages.increment();
+        if (recoverable && failedRecordHandler != null) {
+            failedRecordHandler.onRecordFailed(record, tuple, exception);
+            if (nDeadLetteredMessages != null) nDeadLetteredMessages.increment();
+            return;
+        }
+        setSendException(exception);
+    }
+
+    /**
+     * Handles the successful send of a record by passing it to the {@link DeliveryReportHandler}, if there is one.
+     * @param record   the record
+     * @param tuple    the tuple from which the record has been created or null
+     * @param metadata the record metadata
+     */
+    void handleSendSuccess(ProducerRecord<?, ?> record, Tuple tuple, RecordMetadata metadata) {
+        if (deliveryReportHandler != null) {
+            deliveryReportHandler.onRecordDelivered(record, tuple, metadata);
+        }
+    }
+
+    /**
+     * Tests whether an exception affects only a single record, so that the producer can continue to send other records.
+     * @param exception the exception
+     * @return true, if the exception is not fatal for the producer, false otherwise.
+     */
+    protected boolean isRecoverable(Exception exception) {
+        if (!(exception instanceof ApiException)) return false;
+        return !isFatal(exception);
+    }
+
+    /**
+     * Tests whether an exception leaves the Kafka producer in a state, in which it cannot be used any more.
+     * @param exception the exception
+     * @return true, if the producer must be closed, false otherwise.
+     */
+    protected static boolean isFatal(Exception exception) {
+        return exception instanceof ProducerFencedException
+                || exception instanceof OutOfOrderSequenceException
+                || exception instanceof AuthenticationException
+                || exception instanceof AuthorizationException
+                || exception instanceof UnsupportedVersionException;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void scheduleRetry(ProducerRecord record, Tuple tuple, int nRetries) {
+        final long epoch = sendEpoch.get();
+        final long backoffMs = recordRetryBackoffMs << Math.min(nRetries, MAX_RETRY_BACKOFF_DOUBLINGS);
+        if (logger.isDebugEnabled()) logger.debug("re-sending record to topic " + record.topic() + " in " + backoffMs + " ms; retry #" + (nRetries +1)); //$NON-NLS-1$
+        pendingRetries.incrementAndGet();
+        if (nRetriedMessages != null) nRetriedMessages.increment();
+        operatorContext.getScheduledExecutorService().schedule(() -> {
+            try {
+                if (epoch == sendEpoch.get()) {
+                    send(record, tuple, nRetries +1);
+                }
+            } catch (Exception e) {
+                logger.error(e.getLocalizedMessage(), e);
+                setSendException(e);
+            } finally {
+                synchronized (pendingRetries) {
+                    if (pendingRetries.decrementAndGet() == 0) pendingRetries.notifyAll();
+                }
+            }
+        }, backoffMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Begins a new send epoch. Records that are scheduled for re-send are dropped. The completions of 
+     * records sent before are ignored: their failures are not stored for the next send, and they are neither
+     * re-sent, nor passed to the {@link FailedRecordHandler} or {@link DeliveryReportHandler}.
+     */
+    protected void beginNewSendEpoch() {
+        sendEpoch.incrementAndGet();
+        callback = new ProducerCallback(this);
+    }
+
+    /**
+     * Gets the current send epoch, which changes when outstanding send requests are cancelled.
+     * @return the send epoch
+     */
+    long getSendEpoch() {
+        return sendEpoch.get();
+    }
+
     /**
      * Makes all buffered records immediately available to send and blocks until completion of the associated requests.
      * The post-conditioin is, that all Futures are in done state.
@@ -92,10 +398,31 @@ public class KafkaProducerClient extends AbstractKafkaClient {
     public synchronized void flush() {
         logger.trace("Flusing..."); //$NON-NLS-1$
         producer.flush();
+        // records that are scheduled for re-send must also be acknowledged
+        while (pendingRetries.get() > 0) {
+            synchronized (pendingRetries) {
+                while (pendingRetries.get() > 0) {
+                    try {
+                        pendingRetries.wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptException(e);
+                    }
+                }
+            }
+            producer.flush();
+        }
     }
 
     public void close() {
         logger.trace("Closing..."); //$NON-NLS-1$
+        if (clientMetricsUpdater != null) {
+            clientMetricsUpdater.cancel(false);
+        }
+        if (producerMetricsUpdater != null) {
+            producerMetricsUpdater.cancel(false);
+        }
+        // scheduled re-sends must not use the closed producer
+        beginNewSendEpoch();
         producer.close(CLOSE_TIMEOUT, CLOSE_TIMEOUT_TIMEUNIT);
     }
 
@@ -105,18 +432,31 @@ public class KafkaProducerClient extends AbstractKafkaClient {
 
     @SuppressWarnings("rawtypes")
     public boolean processTuple(ProducerRecord producerRecord) throws Exception {
-    	send(producerRecord);
-    	return true;
+    	return processRecord(producerRecord, null);
+    }
+
+    /**
+     * Sends a record that has been created from a tuple.
+     * @param producerRecord the record
+     * @param tuple          the tuple from which the record has been created
+     * @return true
+     * @throws Exception a previous send request failed
+     */
+    @SuppressWarnings("rawtypes")
+    public boolean processRecord(ProducerRecord producerRecord, Tuple tuple) throws Exception {
+        send(producerRecord, tuple, 0);
+        return true;
     }
     
     /**
      * Tries to cancel all send requests that are not yet done. 
-     * The base class has an empty implementation as it does not maintain the futures of send request.
+     * The base class does not maintain the futures of send request. The Kafka producer cannot cancel records that 
+     * have been handed over to it. That's why a new send epoch is begun, in which the completions of these records are ignored.
      * @param mayInterruptIfRunning - true if the thread executing this task send request should be interrupted;
      *                              otherwise, in-progress tasks are allowed to complete
      */
     public void tryCancelOutstandingSendRequests (boolean mayInterruptIfRunning) {
-        // no implementation because this class is instantiated only when operator is not in a Consistent Region
+        beginNewSendEpoch();
     }
 
     public void drain() throws Exception {
@@ -130,4 +470,26 @@ public class KafkaProducerClient extends AbstractKafkaClient {
     public void reset(Checkpoint checkpoint) throws Exception {
         // no implementation because this class is instantiated only when operator is not in a Consistent Region
     }
+
+    /**
+     * Resets the client to its initial state, keeping the Kafka producer with its connections and metadata.
+     * Outstanding send requests should be cancelled before via {@link #tryCancelOutstandingSendRequests(boolean)}.
+     * 
+     * @return true, if the client has been reset, false, if the Kafka producer cannot be used any more. 
+     *         Then the client must be closed and a new client must be created.
+     * @throws Exception the client could not be reset
+     */
+    public boolean resetToInitialState() throws Exception {
+        if (sendException != null && isFatal(sendException)) {
+            logger.debug("producer cannot be reused after " + sendException.getClass().getName()); //$NON-NLS-1$
+            return false;
+        }
+        setSendException(null);
+        return true;
+    }
+
+    /** Gets the tracker for the bytes per partition, which is null when the {@link LoadAwarePartitioner} is not used. */
+    PartitionLoadTracker getPartitionLoadTracker() {
+        return partitionLoadTracker;
+    }
 }
@@ -0,0 +1,129 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.log4j.Logger;
+
+/**
+ * A partitioner that assigns records without key to the partition with the least bytes
+ * queued in the producer or in-flight to the broker. Partitions of a slow broker build up
+ * a queue and receive less records.
+ * <p>
+ * To fill batches with small records, the partitioner sticks to the selected partition until
+ * the records assigned to it since selection have the size given by the <tt>load.aware.partitioner.sticky.bytes</tt>
+ * producer property, which defaults to the <tt>batch.size</tt> producer property.
+ * <p>
+ * Records with key are assigned by the hash of the key like the default partitioner does.
+ * <p>
+ * The queued bytes are tracked by the {@link PartitionLoadTracker}, which is configured by the producer client.
+ * When the partitioner is used without tracker, it assigns records without key sticky in a round-robin fashion.
+ */
+public class LoadAwarePartitioner implements Partitioner {
+
+    /** producer property that configures the sticky bytes */
+    public static final String STICKY_BYTES_CONFIG = "load.aware.partitioner.sticky.bytes"; //$NON-NLS-1$
+    /** producer property that contains the {@link PartitionLoadTracker} object */
+    static final String LOAD_TRACKER_CONFIG = "load.aware.partitioner.tracker"; //$NON-NLS-1$
+    private static final int DEFAULT_BATCH_SIZE = 16384;
+
+    private static final Logger logger = Logger.getLogger(LoadAwarePartitioner.class);
+
+    private static class StickyPartition {
+        int partition = -1;
+        long nBytes = 0l;
+    }
+
+    private PartitionLoadTracker tracker = null;
+    private long stickyBytes = DEFAULT_BATCH_SIZE;
+    private final Map<String, StickyPartition> stickyPartitions = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object trackerConfig = configs.get(LOAD_TRACKER_CONFIG);
+        if (trackerConfig instanceof PartitionLoadTracker) {
+            tracker = (PartitionLoadTracker) trackerConfig;
+        } else {
+            logger.warn("No partition load tracker configured. Records are partitioned round-robin."); //$NON-NLS-1$
+        }
+        Object stickyBytesConfig = configs.containsKey(STICKY_BYTES_CONFIG)?
+                configs.get(STICKY_BYTES_CONFIG): configs.get(ProducerConfig.BATCH_SIZE_CONFIG);
+        if (stickyBytesConfig != null) {
+            stickyBytes = Long.parseLong(stickyBytesConfig.toString().trim());
+        }
+        if (logger.isDebugEnabled()) logger.debug("sticky bytes = " + stickyBytes); //$NON-NLS-1$
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        final long nBytes = (keyBytes == null? 0: keyBytes.length) + (valueBytes == null? 0: valueBytes.length);
+        int partition;
+        if (keyBytes != null) {
+            partition = Utils.toPositive(Utils.murmur2(keyBytes)) % cluster.partitionsForTopic(topic).size();
+        }
+        else {
+            StickyPartition sticky = stickyPartitions.computeIfAbsent(topic, t -> new StickyPartition());
+            synchronized (sticky) {
+                if (sticky.partition < 0 || sticky.nBytes >= stickyBytes || !isAvailable(topic, sticky.partition, cluster)) {
+                    sticky.partition = selectPartition(topic, sticky.partition, cluster);
+                    sticky.nBytes = 0l;
+                }
+                sticky.nBytes += nBytes;
+                partition = sticky.partition;
+            }
+        }
+        if (tracker != null) {
+            tracker.add(topic, partition, nBytes);
+        }
+        return partition;
+    }
+
+    private static boolean isAvailable(String topic, int partition, Cluster cluster) {
+        List<PartitionInfo> available = cluster.availablePartitionsForTopic(topic);
+        if (available.isEmpty()) return true;
+        for (PartitionInfo pi: available) {
+            if (pi.partition() == partition) return true;
+        }
+        return false;
+    }
+
+    /*
+     * selects the available partition with least queued bytes. Partitions with same load are scanned beginning at
+     * a random position, so that not always the same partition is selected. Without tracker, the next partition is selected.
+     */
+    private int selectPartition(String topic, int previousPartition, Cluster cluster) {
+        List<PartitionInfo> partitions = cluster.availablePartitionsForTopic(topic);
+        if (partitions.isEmpty()) {
+            partitions = cluster.partitionsForTopic(topic);
+        }
+        final int n = partitions.size();
+        if (tracker == null) {
+            return partitions.get(Utils.toPositive(previousPartition + 1) % n).partition();
+        }
+        final int start = ThreadLocalRandom.current().nextInt(n);
+        int selected = partitions.get(start).partition();
+        long minBytes = Long.MAX_VALUE;
+        for (int i = 0; i < n; ++i) {
+            final int partition = partitions.get((start + i) % n).partition();
+            final long queued = tracker.getQueuedBytes(new TopicPartition(topic, partition));
+            if (queued < minBytes) {
+                minBytes = queued;
+                selected = partition;
+            }
+        }
+        if (logger.isTraceEnabled()) logger.trace("selected partition " + topic + "-" + selected + " with " + minBytes + " queued bytes"); //$NON-NLS-1$
+        return selected;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,66 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Tracks the number of bytes per partition that have been handed over to the Kafka producer,
+ * but that are not yet acknowledged by the broker or failed. These are the bytes in the record
+ * accumulator of the producer and in the in-flight requests.
+ * <p>
+ * The {@link LoadAwarePartitioner} adds the bytes of a record when it selects its partition.
+ * The partitioner is invoked within <tt>KafkaProducer.send()</tt> before the callback is known to the producer.
+ * That's why the callback of the record is registered for the sending thread before the record is sent,
+ * so that the selected partition can be assigned to the callback, which removes the bytes on completion.
+ */
+public class PartitionLoadTracker {
+
+    private final ConcurrentHashMap<TopicPartition, AtomicLong> queuedBytes = new ConcurrentHashMap<>();
+    private final ThreadLocal<ProducerCallback> pendingCallback = new ThreadLocal<>();
+
+    /**
+     * Registers the callback of the record that is sent next by the current thread.
+     * @param callback the callback or null to unregister the callback
+     */
+    void setPendingCallback(ProducerCallback callback) {
+        if (callback == null) pendingCallback.remove();
+        else pendingCallback.set(callback);
+    }
+
+    /**
+     * Adds the bytes of a record to the selected partition.
+     * @param topic     the topic
+     * @param partition the selected partition
+     * @param nBytes    the serialized size of key and value of the record
+     */
+    void add(String topic, int partition, long nBytes) {
+        final TopicPartition tp = new TopicPartition(topic, partition);
+        queuedBytes.computeIfAbsent(tp, k -> new AtomicLong(0l)).addAndGet(nBytes);
+        ProducerCallback callback = pendingCallback.get();
+        if (callback != null) {
+            callback.setAssignedPartition(tp, nBytes);
+        }
+    }
+
+    /**
+     * Removes the bytes of a completed record from the partition.
+     * @param tp     the topic partition
+     * @param nBytes the bytes added before for the record
+     */
+    void remove(TopicPartition tp, long nBytes) {
+        AtomicLong n = queuedBytes.get(tp);
+        if (n != null) n.addAndGet(-nBytes);
+    }
+
+    /**
+     * Gets the number of bytes queued or in-flight for a partition.
+     * @param tp the topic partition
+     * @return the number of bytes
+     */
+    public long getQueuedBytes(TopicPartition tp) {
+        AtomicLong n = queuedBytes.get(tp);
+        return n == null? 0l: n.get();
+    }
+}
@@ -1,24 +1,102 @@
 package com.ibm.streamsx.kafka.clients.producer;
 
 import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
-import org.apache.log4j.Logger;
+import org.apache.kafka.common.TopicPartition;
+
+import com.ibm.streams.operator.Tuple;
 
 public class ProducerCallback implements Callback {
 
-    private static final Logger logger = Logger.getLogger(ProducerCallback.class);
     private KafkaProducerClient client;
+    private final ProducerRecord<?, ?> record;
+    private final Tuple tuple;
+    private final int nRetries;
+    // the send epoch of the client when the record is sent
+    private final long epoch;
+    // partition and bytes of the record registered with the PartitionLoadTracker; guarded by this
+    private TopicPartition assignedPartition = null;
+    private long assignedBytes = 0l;
+    // topic and send time of a record sampled for the send latency; null when the record is not sampled
+    private String sampledTopic = null;
+    private long sendTimeNanos = 0l;
 
+    /**
+     * Creates a callback that is shared by all records.
+     * A failed send of a record cannot be retried or handed over to a {@link FailedRecordHandler},
+     * and no delivery report can be created.
+     * @param client the producer client
+     */
     public ProducerCallback(KafkaProducerClient client) {
+        this(client, null, null, 0);
+    }
+
+    /**
+     * Creates a callback for a single record.
+     * @param client   the producer client
+     * @param record   the record that is sent
+     * @param tuple    the tuple from which the record has been created, can be null
+     * @param nRetries the number of times the record has already been re-sent after a failure
+     */
+    public ProducerCallback(KafkaProducerClient client, ProducerRecord<?, ?> record, Tuple tuple, int nRetries) {
         this.client = client;
+        this.record = record;
+        this.tuple = tuple;
+        this.nRetries = nRetries;
+        this.epoch = client.getSendEpoch();
+    }
+
+    /**
+     * Sets the partition that the {@link LoadAwarePartitioner} has selected for the record.
+     * @param tp     the partition
+     * @param nBytes the bytes of the record that have been added to the partition
+     */
+    synchronized void setAssignedPartition(TopicPartition tp, long nBytes) {
+        this.assignedBytes = nBytes;
+        this.assignedPartition = tp;
+    }
+
+    /**
+     * Removes the bytes of the record from the partition that the {@link LoadAwarePartitioner} has selected.
+     * The bytes are removed only once, also when this method is called more than once.
+     */
+    synchronized void releaseAssignedPartition() {
+        if (assignedPartition != null) {
+            client.getPartitionLoadTracker().remove(assignedPartition, assignedBytes);
+            assignedPartition = null;
+        }
+    }
+
+    /**
+     * Marks the record as sampled for the send latency metrics.
+     * This method must be called before the record is sent.
+     * @param topic         the topic of the record
+     * @param sendTimeNanos the value of {@link System#nanoTime()} when the record is sent
+     */
+    void setSendTime(String topic, long sendTimeNanos) {
+        this.sampledTopic = topic;
+        this.sendTimeNanos = sendTimeNanos;
     }
 
     @Override
     public void onCompletion(RecordMetadata metadata, Exception exception) {
+        releaseAssignedPartition();
+        if (epoch != client.getSendEpoch()) {
+            // the record has been sent before the client was reset; it is replayed or aborted with its transaction
+            return;
+        }
         if (exception != null) {
-            logger.error(exception.getLocalizedMessage(), exception);
-//            exception.printStackTrace();
+            // the client logs the exception depending on whether the record is re-sent
+            client.handleSendException(record, tuple, nRetries, exception);
+        }
+        else {
+            if (sampledTopic != null) {
+                client.recordSendLatency(sampledTopic, System.nanoTime() - sendTimeNanos);
+            }
+            if (record != null) {
+                client.handleSendSuccess(record, tuple, metadata);
+            }
         }
-        client.setSendException(exception);
     }
 }
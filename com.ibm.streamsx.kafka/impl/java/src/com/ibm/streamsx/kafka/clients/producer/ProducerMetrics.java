@@ -0,0 +1,166 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+import com.ibm.streamsx.kafka.metrics.LatencyHistogram;
+
+/**
+ * The send latency and batching metrics of a producer client.
+ * <p>
+ * The time between the send of a record and its acknowledgement is recorded for sampled records
+ * in a {@link LatencyHistogram}. The batching metrics are derived from the metrics of the Kafka producer.
+ * The records per batch are estimated from the average batch size and the average record size,
+ * because the Kafka producer has no metric for them.
+ * <p>
+ * With per-topic metrics, the metrics <tt>sendLatencyP50Us[topic]</tt>, <tt>sendLatencyP99Us[topic]</tt>,
+ * <tt>sendLatencyMaxUs[topic]</tt>, <tt>messagesPerSec[topic]</tt>, and <tt>bytesPerSec[topic]</tt> are created
+ * when the first record of a topic is acknowledged.
+ */
+class ProducerMetrics {
+
+    private static final Logger logger = Logger.getLogger(ProducerMetrics.class);
+
+    private final OperatorMetrics operatorMetrics;
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final Metric sendLatencyP50Us;
+    private final Metric sendLatencyP90Us;
+    private final Metric sendLatencyP99Us;
+    private final Metric sendLatencyMaxUs;
+    private final Metric recordsPerBatch;
+    private final Metric bytesPerBatch;
+    private final Metric recordsPerRequest;
+    private final Metric bytesPerRequest;
+    // topic -> metrics of the topic; null when per-topic metrics are disabled
+    private final Map<String, TopicMetrics> topics;
+
+    private class TopicMetrics {
+        private final LatencyHistogram sendLatency = new LatencyHistogram();
+        private final Metric sendLatencyP50Us;
+        private final Metric sendLatencyP99Us;
+        private final Metric sendLatencyMaxUs;
+        private final Metric messagesPerSec;
+        private final Metric bytesPerSec;
+
+        TopicMetrics(String topic) {
+            final String suffix = "[" + topic + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+            sendLatencyP50Us = createMetric("sendLatencyP50Us" + suffix, "Median time in microseconds between send and acknowledgement of the sampled messages of the topic."); //$NON-NLS-1$
+            sendLatencyP99Us = createMetric("sendLatencyP99Us" + suffix, "99th percentile of the time in microseconds between send and acknowledgement of the sampled messages of the topic."); //$NON-NLS-1$
+            sendLatencyMaxUs = createMetric("sendLatencyMaxUs" + suffix, "Maximum time in microseconds between send and acknowledgement of the sampled messages of the topic."); //$NON-NLS-1$
+            messagesPerSec = createMetric("messagesPerSec" + suffix, "Number of messages per second sent to the topic."); //$NON-NLS-1$
+            bytesPerSec = createMetric("bytesPerSec" + suffix, "Number of bytes per second sent to the topic."); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param operatorMetrics the metrics of the operator, which must have the custom metrics of the producer operator
+     * @param perTopic        true, if metrics are created for every topic
+     */
+    ProducerMetrics(OperatorMetrics operatorMetrics, boolean perTopic) {
+        this.operatorMetrics = operatorMetrics;
+        this.sendLatencyP50Us = operatorMetrics.getCustomMetric("sendLatencyP50Us"); //$NON-NLS-1$
+        this.sendLatencyP90Us = operatorMetrics.getCustomMetric("sendLatencyP90Us"); //$NON-NLS-1$
+        this.sendLatencyP99Us = operatorMetrics.getCustomMetric("sendLatencyP99Us"); //$NON-NLS-1$
+        this.sendLatencyMaxUs = operatorMetrics.getCustomMetric("sendLatencyMaxUs"); //$NON-NLS-1$
+        this.recordsPerBatch = operatorMetrics.getCustomMetric("recordsPerBatch"); //$NON-NLS-1$
+        this.bytesPerBatch = operatorMetrics.getCustomMetric("bytesPerBatch"); //$NON-NLS-1$
+        this.recordsPerRequest = operatorMetrics.getCustomMetric("recordsPerRequest"); //$NON-NLS-1$
+        this.bytesPerRequest = operatorMetrics.getCustomMetric("bytesPerRequest"); //$NON-NLS-1$
+        this.topics = perTopic? new ConcurrentHashMap<>(): null;
+    }
+
+    private Metric createMetric(String name, String description) {
+        final Metric metric = operatorMetrics.getCustomMetrics().get(name);
+        return metric != null? metric: operatorMetrics.createCustomMetric(name, description, Metric.Kind.GAUGE);
+    }
+
+    /**
+     * Records the send latency of an acknowledged record. This method is called by the I/O thread of the Kafka producer.
+     * @param topic        the topic of the record
+     * @param latencyNanos the time between send and acknowledgement in nanoseconds
+     */
+    void recordSendLatency(String topic, long latencyNanos) {
+        final long latencyUs = latencyNanos / 1000l;
+        sendLatency.record(latencyUs);
+        if (topics != null) {
+            TopicMetrics t = topics.get(topic);
+            if (t == null) {
+                t = topics.computeIfAbsent(topic, TopicMetrics::new);
+            }
+            t.sendLatency.record(latencyUs);
+        }
+    }
+
+    /**
+     * Publishes the send latencies recorded since the last update and the batching metrics.
+     * Latency metrics keep their values when no record has been sampled since the last update.
+     * @param kafkaMetrics the metrics of the Kafka producer
+     */
+    void update(Map<MetricName, ? extends org.apache.kafka.common.Metric> kafkaMetrics) {
+        final LatencyHistogram.Snapshot latency = sendLatency.snapshotAndReset();
+        if (latency.getTotalCount() > 0l) {
+            sendLatencyP50Us.setValue(latency.getValueAtPercentile(50.0));
+            sendLatencyP90Us.setValue(latency.getValueAtPercentile(90.0));
+            sendLatencyP99Us.setValue(latency.getValueAtPercentile(99.0));
+            sendLatencyMaxUs.setValue(latency.getMax());
+        }
+        final double batchSize = getValue(kafkaMetrics, "batch-size-avg", null); //$NON-NLS-1$
+        final double recordSize = getValue(kafkaMetrics, "record-size-avg", null); //$NON-NLS-1$
+        setValue(bytesPerBatch, batchSize);
+        if (recordSize > 0.0) {
+            setValue(recordsPerBatch, batchSize / recordSize);
+        }
+        setValue(recordsPerRequest, getValue(kafkaMetrics, "records-per-request-avg", null)); //$NON-NLS-1$
+        setValue(bytesPerRequest, getValue(kafkaMetrics, "request-size-avg", null)); //$NON-NLS-1$
+        if (topics != null) {
+            for (Map.Entry<String, TopicMetrics> entry: topics.entrySet()) {
+                final TopicMetrics t = entry.getValue();
+                final LatencyHistogram.Snapshot topicLatency = t.sendLatency.snapshotAndReset();
+                if (topicLatency.getTotalCount() > 0l) {
+                    t.sendLatencyP50Us.setValue(topicLatency.getValueAtPercentile(50.0));
+                    t.sendLatencyP99Us.setValue(topicLatency.getValueAtPercentile(99.0));
+                    t.sendLatencyMaxUs.setValue(topicLatency.getMax());
+                }
+                setValue(t.messagesPerSec, getValue(kafkaMetrics, "record-send-rate", entry.getKey())); //$NON-NLS-1$
+                setValue(t.bytesPerSec, getValue(kafkaMetrics, "byte-rate", entry.getKey())); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private static void setValue(Metric metric, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            metric.setValue(Math.round(value));
+        }
+    }
+
+    /**
+     * Gets the value of a Kafka producer metric.
+     * @param kafkaMetrics the metrics of the Kafka producer
+     * @param name         the metric name
+     * @param topic        the topic of a per-topic metric, or null for the metric of the whole producer
+     * @return the value or NaN, if the metric does not exist or has no numeric value
+     */
+    private static double getValue(Map<MetricName, ? extends org.apache.kafka.common.Metric> kafkaMetrics, String name, String topic) {
+        for (Map.Entry<MetricName, ? extends org.apache.kafka.common.Metric> entry: kafkaMetrics.entrySet()) {
+            final MetricName metricName = entry.getKey();
+            if (!metricName.name().equals(name)) continue;
+            // the metrics of the whole producer have only the client-id tag
+            final boolean matches = topic == null? metricName.tags().size() == 1: topic.equals(metricName.tags().get("topic")); //$NON-NLS-1$
+            if (matches) {
+                final Object value = entry.getValue().metricValue();
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                if (logger.isDebugEnabled()) logger.debug("Kafka metric " + metricName + " is not numeric: " + value); //$NON-NLS-1$ //$NON-NLS-2$
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+
+/**
+ * A consumer for the control topic of the transactional producers, which is shared by all
+ * producer clients within a PE that use the same consumer properties, except client ID and group ID.
+ * Instances are reference counted. The Kafka consumer is closed when the last client releases it.
+ * <p>
+ * The Kafka consumer is not thread-safe. All access is serialized on the instance.
+ */
+final class SharedControlTopicConsumer {
+
+    private static final Logger logger = Logger.getLogger(SharedControlTopicConsumer.class);
+    private static final Map<String, SharedControlTopicConsumer> instances = new HashMap<>();
+
+    private final String key;
+    private final Consumer<?, ?> consumer;
+    private int refCount = 0;
+
+    private SharedControlTopicConsumer(String key, Consumer<?, ?> consumer) {
+        this.key = key;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Gets the shared consumer for the given properties and increments its reference count.
+     * The consumer is created when it does not yet exist.
+     * @param consumerProperties the consumer properties
+     * @param consumerFactory    creates the Kafka consumer from the consumer properties
+     * @return the shared consumer
+     */
+    static <P extends Properties> SharedControlTopicConsumer acquire(P consumerProperties, Function<P, Consumer<?, ?>> consumerFactory) {
+        final String key = createKey(consumerProperties);
+        synchronized (instances) {
+            SharedControlTopicConsumer instance = instances.get(key);
+            if (instance == null) {
+                logger.debug("creating shared control topic consumer"); //$NON-NLS-1$
+                instance = new SharedControlTopicConsumer(key, consumerFactory.apply(consumerProperties));
+                instances.put(key, instance);
+            }
+            ++instance.refCount;
+            if (logger.isDebugEnabled()) logger.debug("shared control topic consumer acquired; refCount = " + instance.refCount); //$NON-NLS-1$
+            return instance;
+        }
+    }
+
+    /**
+     * Decrements the reference count and closes the consumer when it is not used any more.
+     */
+    void release() {
+        synchronized (instances) {
+            if (--refCount > 0) return;
+            instances.remove(key);
+        }
+        logger.debug("closing shared control topic consumer"); //$NON-NLS-1$
+        synchronized (this) {
+            consumer.close(1l, TimeUnit.SECONDS);
+        }
+    }
+
+    synchronized List<PartitionInfo> partitionsFor(String topic) {
+        return consumer.partitionsFor(topic);
+    }
+
+    synchronized Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
+        return consumer.endOffsets(partitions);
+    }
+
+    /**
+     * Executes a function with exclusive access to the consumer.
+     * The function must unassign all partitions before it returns.
+     * @param function the function
+     * @return the result of the function
+     */
+    synchronized <T> T execute(Function<Consumer<?, ?>, T> function) {
+        return function.apply(consumer);
+    }
+
+    /*
+     * The client ID and the group ID are generated for every client, so that they are not part of the key.
+     */
+    private static String createKey(Properties consumerProperties) {
+        Map<String, String> keyProps = new TreeMap<>();
+        consumerProperties.forEach((k, v) -> keyProps.put(k.toString(), v.toString()));
+        keyProps.remove(ConsumerConfig.CLIENT_ID_CONFIG);
+        keyProps.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        return keyProps.toString();
+    }
+}
@@ -1,39 +1,55 @@
 package com.ibm.streamsx.kafka.clients.producer;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.utils.Utils;
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.control.ControlPlaneContext;
 import com.ibm.streams.operator.control.variable.ControlVariableAccessor;
 import com.ibm.streams.operator.state.Checkpoint;
 import com.ibm.streamsx.kafka.KafkaConfigurationException;
+import com.ibm.streamsx.kafka.PerformanceLevel;
 import com.ibm.streamsx.kafka.i18n.Messages;
 import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
 
@@ -49,28 +65,193 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
     private List<Future<RecordMetadata>> futuresList;
     private ControlVariableAccessor<String> startOffsetsCV;
     private String transactionalId;
+    private byte[] transactionalIdBytes;
+    // the partition of the control topic, to which the control records of this producer are written
+    private int controlTopicPartition;
+    // consumer for the control topic, shared with the other transactional producers of the PE
+    private SharedControlTopicConsumer controlTopicConsumer;
+    private final Function<KafkaOperatorProperties, Consumer<?, ?>> controlTopicConsumerFactory;
     private final boolean lazyTransactionBegin;
     private long lastSuccessfulSequenceId = 0;                                   // checkpointed
     private HashMap<TopicPartition, Long> controlTopicInitialOffsets;            // checkpointed
     private AtomicBoolean transactionInProgress = new AtomicBoolean (false);
+    private final boolean pipelinedCommits;
+    // the transactional producers; 'producer' refers to the one that sends the records of the current transaction
+    private Producer<?, ?>[] producers;
+    private int activeProducerIndex = 0;
+    // the commit of the previous transaction, which runs in the background when commits are pipelined
+    private Future<RecordMetadata> pendingCommit = null;
+    private long pendingCommitSequenceId = 0;
+    // When commits are pipelined, the checkpoint is complete before its transaction is committed. The records are
+    // retained until the commit is confirmed, so that they can be re-sent when the commit fails. The records of the
+    // transaction are also written into the checkpoint, so that they can be re-sent after a failure of the PE.
+    // records sent by the operator within the current transaction
+    private List<ProducerRecord<?, ?>> transactionRecords = Collections.synchronizedList(new ArrayList<>());
+    // records of failed commits, which have been re-sent within the current transaction
+    private List<RetainedRecords> resentRecords = new ArrayList<>();
+    // records of the transaction, which is committed in the background
+    private List<RetainedRecords> pendingCommitRecords = null;
+    // records of a failed background commit, which must be re-sent
+    private List<RetainedRecords> uncommittedRecords = null;
+
+    /**
+     * The records sent within the checkpoint interval that ended with a checkpoint.
+     * After a reset to this or a later checkpoint, these records are not replayed by the operators upstream.
+     */
+    private static class RetainedRecords {
+        private final long sequenceId;
+        private final List<ProducerRecord<?, ?>> records;
+
+        RetainedRecords(long sequenceId, List<ProducerRecord<?, ?>> records) {
+            this.sequenceId = sequenceId;
+            this.records = records;
+        }
+
+        /**
+         * Writes the records into a checkpoint. Key and value are the Java objects converted from the SPL attributes,
+         * which are serializable.
+         * @param out the output stream of the checkpoint
+         * @throws IOException writing failed
+         */
+        void writeTo(ObjectOutputStream out) throws IOException {
+            synchronized (records) {
+                out.writeLong(sequenceId);
+                out.writeInt(records.size());
+                for (ProducerRecord<?, ?> record: records) {
+                    out.writeUTF(record.topic());
+                    out.writeObject(record.partition());
+                    out.writeObject(record.timestamp());
+                    out.writeObject(record.key());
+                    out.writeObject(record.value());
+                    Header[] headers = record.headers().toArray();
+                    out.writeInt(headers.length);
+                    for (Header h: headers) {
+                        out.writeUTF(h.key());
+                        out.writeObject(h.value());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads records written by {@link #writeTo(ObjectOutputStream)}.
+         * @param in the input stream of the checkpoint
+         * @return the records
+         * @throws IOException reading failed
+         * @throws ClassNotFoundException the class of a key or value is not found
+         */
+        static RetainedRecords readFrom(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            final long sequenceId = in.readLong();
+            final int nRecords = in.readInt();
+            List<ProducerRecord<?, ?>> records = new ArrayList<>(nRecords);
+            for (int i = 0; i < nRecords; ++i) {
+                final String topic = in.readUTF();
+                final Integer partition = (Integer) in.readObject();
+                final Long timestamp = (Long) in.readObject();
+                final Object key = in.readObject();
+                final Object value = in.readObject();
+                final int nHeaders = in.readInt();
+                RecordHeaders headers = new RecordHeaders();
+                for (int h = 0; h < nHeaders; ++h) {
+                    headers.add(in.readUTF(), (byte[]) in.readObject());
+                }
+                records.add(new ProducerRecord<Object, Object>(topic, partition, timestamp, key, value, headers));
+            }
+            return new RetainedRecords(sequenceId, Collections.synchronizedList(records));
+        }
+    }
 
     public <K, V> TransactionalKafkaProducerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
             KafkaOperatorProperties kafkaProperties, boolean lazyTransactionBegin) throws Exception {
-        super(operatorContext, keyClass, valueClass, kafkaProperties);
+        this(operatorContext, keyClass, valueClass, kafkaProperties, lazyTransactionBegin, false);
+    }
+
+    /**
+     * Creates a new transactional producer client.
+     * When commits are pipelined, the client uses two Kafka producers with different transactional IDs.
+     * On checkpoint, the transaction of one producer is committed in the background, and the records
+     * of the next transaction are sent with the other producer. The background commit is awaited 
+     * on next drain, reset, or close.
+     * 
+     * @param operatorContext      the operator context
+     * @param keyClass             the class of the key
+     * @param valueClass           the class of the value
+     * @param kafkaProperties      the producer properties
+     * @param lazyTransactionBegin begin transactions with the first record instead of the end of the checkpoint
+     * @param pipelinedCommits     commit transactions in the background and continue sending with another producer
+     * @throws Exception
+     */
+    public <K, V> TransactionalKafkaProducerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
+            KafkaOperatorProperties kafkaProperties, boolean lazyTransactionBegin, boolean pipelinedCommits) throws Exception {
+        this(operatorContext, keyClass, valueClass, kafkaProperties, lazyTransactionBegin, pipelinedCommits,
+                props -> new KafkaProducer<>(props), props -> new KafkaConsumer<>(props));
+    }
+
+    /**
+     * Creates a new transactional producer client, which creates the Kafka producers and 
+     * the consumer for the control topic with the given factories.
+     * 
+     * @param operatorContext             the operator context
+     * @param keyClass                    the class of the key
+     * @param valueClass                  the class of the value
+     * @param kafkaProperties             the producer properties
+     * @param lazyTransactionBegin        begin transactions with the first record instead of the end of the checkpoint
+     * @param pipelinedCommits            commit transactions in the background and continue sending with another producer
+     * @param producerFactory             the factory for the Kafka producers
+     * @param controlTopicConsumerFactory the factory for the consumer of the control topic. 
+     *                                    The consumer is shared with other clients that use the same consumer properties.
+     * @throws Exception
+     */
+    public <K, V> TransactionalKafkaProducerClient(OperatorContext operatorContext, Class<K> keyClass, Class<V> valueClass,
+            KafkaOperatorProperties kafkaProperties, boolean lazyTransactionBegin, boolean pipelinedCommits,
+            Function<KafkaOperatorProperties, Producer<?, ?>> producerFactory,
+            Function<KafkaOperatorProperties, Consumer<?, ?>> controlTopicConsumerFactory) throws Exception {
+        super(operatorContext, keyClass, valueClass, kafkaProperties, producerFactory);
         logger.debug("ExaxtlyOnceKafkaProducerClient starting...");
+        StopWatch sw = new StopWatch();
+        sw.start();
         this.lazyTransactionBegin = lazyTransactionBegin;
-        // If this variable has not been set before, then set it to the current end offset.
-        // Otherwise, this variable will be overridden with the value is retrieved
-        controlTopicInitialOffsets = getControlTopicEndOffsets();
-        ControlPlaneContext cpContext = operatorContext.getOptionalContext(ControlPlaneContext.class);
-        startOffsetsCV = cpContext.createStringControlVariable("control_topic_start_offsets", false, serializeObject(controlTopicInitialOffsets));
-        controlTopicInitialOffsets = SerializationUtils.deserialize(Base64.getDecoder().decode(startOffsetsCV.sync().getValue()));
-        logger.debug("controlTopicInitialOffsets=" + controlTopicInitialOffsets);
-        this.futuresList = Collections.synchronizedList(new ArrayList<Future<RecordMetadata>>());
-        initTransactions();
-        if (!lazyTransactionBegin) {
-            // begin a new transaction before the operator starts processing tuples
-            checkAndBeginTransaction();
+        this.pipelinedCommits = pipelinedCommits;
+        this.controlTopicConsumerFactory = controlTopicConsumerFactory;
+        try {
+            producers = new Producer<?, ?>[pipelinedCommits? 2: 1];
+            producers[0] = producer;
+            for (int i = 1; i < producers.length; ++i) {
+                producers[i] = createPipelineProducer(i);
+            }
+            // If this variable has not been set before, then set it to the current end offset.
+            // Otherwise, this variable will be overridden with the value is retrieved
+            controlTopicInitialOffsets = getControlTopicEndOffsets();
+            ControlPlaneContext cpContext = operatorContext.getOptionalContext(ControlPlaneContext.class);
+            startOffsetsCV = cpContext.createStringControlVariable("control_topic_start_offsets", false, serializeObject(controlTopicInitialOffsets));
+            controlTopicInitialOffsets = SerializationUtils.deserialize(Base64.getDecoder().decode(startOffsetsCV.sync().getValue()));
+            logger.debug("controlTopicInitialOffsets=" + controlTopicInitialOffsets);
+            this.futuresList = Collections.synchronizedList(new ArrayList<Future<RecordMetadata>>());
+            initTransactions();
+            if (!lazyTransactionBegin) {
+                // begin a new transaction before the operator starts processing tuples
+                checkAndBeginTransaction();
+            }
+        } catch (Exception e) {
+            // a half-built client is never closed by the operator
+            closeAfterFailedInit();
+            throw e;
+        }
+        sw.stop();
+        logger.log(PerformanceLevel.PERF, String.format("TransactionalKafkaProducerClient initialization time: %d ms", sw.getTime(TimeUnit.MILLISECONDS))); //$NON-NLS-1$
+    }
+
+    /**
+     * Releases the shared consumer of the control topic and closes the Kafka producers,
+     * when the construction of the client fails.
+     */
+    private void closeAfterFailedInit() {
+        if (controlTopicConsumer != null) {
+            controlTopicConsumer.release();
+            controlTopicConsumer = null;
+        }
+        for (Producer<?, ?> p: producers) {
+            if (p != null) p.close(CLOSE_TIMEOUT, CLOSE_TIMEOUT_TIMEUNIT);
         }
     }
 
@@ -84,6 +265,7 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
         ControlPlaneContext crContext = operatorContext.getOptionalContext(ControlPlaneContext.class);
         ControlVariableAccessor<String> transactionalIdCV = crContext.createStringControlVariable("transactional_id", false, getRandomId("tid-"));
         transactionalId = transactionalIdCV.sync().getValue();
+        transactionalIdBytes = transactionalId.getBytes(StandardCharsets.UTF_8);
         logger.debug("Transactional ID = " + transactionalId);
 
         // The "enable.idempotence" property is required in order to guarantee idempotence
@@ -97,11 +279,29 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
         return transactionalId;
     }
 
+    /**
+     * Creates an additional transactional producer for pipelined commits. 
+     * Its transactional ID is derived from the transactional ID of the client, so that it persists across operator instances.
+     * The control records of all producers are written with the transactional ID of the client.
+     * @param index the index of the producer, greater than 0
+     * @return the producer
+     */
+    private Producer<?, ?> createPipelineProducer(int index) {
+        KafkaOperatorProperties props = new KafkaOperatorProperties();
+        props.putAll(this.kafkaProperties);
+        props.setProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId + "-" + index);
+        props.setProperty(ProducerConfig.CLIENT_ID_CONFIG, this.kafkaProperties.getProperty(ProducerConfig.CLIENT_ID_CONFIG) + "-" + index);
+        logger.debug("Transactional ID of pipeline producer = " + props.getProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG));
+        return producerFactory.apply(props);
+    }
+
     private void initTransactions() {
         // Initialize the transactions. Previously uncommitted 
         // transactions will be aborted. 
         logger.debug("Initializating transactions...");
-        producer.initTransactions();
+        for (Producer<?, ?> p: producers) {
+            p.initTransactions();
+        }
         logger.debug("Transaction initialization finished.");
     }
 
@@ -116,10 +316,12 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private RecordMetadata commitTransaction(long sequenceId) throws Exception {
-        ProducerRecord controlRecord = new ProducerRecord(EXACTLY_ONCE_STATE_TOPIC, null);
+    private RecordMetadata commitTransaction(Producer<?, ?> producer, long sequenceId) throws Exception {
+        // all control records of this producer go into the same partition, so that 
+        // the lookup of the committed sequence ID needs to read only this partition
+        ProducerRecord controlRecord = new ProducerRecord(EXACTLY_ONCE_STATE_TOPIC, controlTopicPartition, null, null);
         Headers headers = controlRecord.headers();
-        headers.add(TRANSACTION_ID, getTransactionalId().getBytes());
+        headers.add(TRANSACTION_ID, transactionalIdBytes);
         headers.add(COMMITTED_SEQUENCE_ID, String.valueOf(sequenceId).getBytes());
         Future<RecordMetadata> controlRecordFuture = producer.send(controlRecord);
         if (logger.isDebugEnabled()) logger.debug("Sent control record: " + controlRecord);
@@ -132,6 +334,105 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
         return lastCommittedControlRecordMetadata;
     }
 
+    /**
+     * Commits the transaction of the active producer in the background and 
+     * makes the next producer the active one.
+     * @param sequenceId the sequence ID of the checkpoint
+     */
+    private void commitTransactionAsync(final long sequenceId) {
+        final Producer<?, ?> committingProducer = producer;
+        pendingCommitSequenceId = sequenceId;
+        pendingCommitRecords = resentRecords;
+        pendingCommitRecords.add(new RetainedRecords(sequenceId, transactionRecords));
+        resentRecords = new ArrayList<>();
+        transactionRecords = Collections.synchronizedList(new ArrayList<>());
+        pendingCommit = operatorContext.getScheduledExecutorService().submit(() -> {
+            try {
+                return commitTransaction(committingProducer, sequenceId);
+            } catch (Exception e) {
+                // the producer must be able to begin a new transaction when it becomes active again
+                try {
+                    committingProducer.abortTransaction();
+                } catch (Exception ae) {
+                    logger.debug("abortTransaction after failed commit failed: " + ae);
+                }
+                throw e;
+            }
+        });
+        activeProducerIndex = (activeProducerIndex + 1) % producers.length;
+        producer = producers[activeProducerIndex];
+        if (logger.isDebugEnabled()) logger.debug("Committing transaction in background; active producer index = " + activeProducerIndex);
+    }
+
+    /**
+     * Waits for the completion of the transaction commit that runs in the background, if there is one.
+     * When the commit failed and the control topic confirms that the transaction has not been committed,
+     * the records of the transaction are kept in `uncommittedRecords`, and `lastSuccessfulSequenceId` is 
+     * rolled back to the committed sequence ID.
+     * @throws Exception the commit failed with a fatal exception, or the control topic cannot be read
+     */
+    private void awaitPendingCommit() throws Exception {
+        if (pendingCommit == null) return;
+        final List<RetainedRecords> records = pendingCommitRecords;
+        pendingCommitRecords = null;
+        try {
+            RecordMetadata lastCommittedControlRecordMetadata = pendingCommit.get();
+            updateControlTopicOffsets(lastCommittedControlRecordMetadata);
+            if (logger.isDebugEnabled()) logger.debug("Background commit completed for sequenceId=" + pendingCommitSequenceId);
+        } catch (ExecutionException e) {
+            logger.error("Commit of the transaction for checkpoint " + pendingCommitSequenceId + " failed: " + e.getCause());
+            Throwable cause = e.getCause();
+            if (!(cause instanceof Exception)) throw e;
+            if (isFatal((Exception) cause)) {
+                logger.error("The messages of the transaction for checkpoint " + pendingCommitSequenceId + " cannot be re-sent by this producer. "
+                        + "They are re-sent from the checkpoint after the reset.");
+                throw (Exception) cause;
+            }
+            // the outcome of the commit is uncertain; the control topic tells whether the transaction has been committed
+            long committedSequenceId = getCommittedSequenceIdFromCtrlTopic();
+            if (committedSequenceId >= pendingCommitSequenceId) {
+                logger.info("The transaction for checkpoint " + pendingCommitSequenceId + " has been committed.");
+            } else {
+                logger.warn("The transaction for checkpoint " + pendingCommitSequenceId + " has not been committed. Its messages are re-sent.");
+                lastSuccessfulSequenceId = committedSequenceId;
+                uncommittedRecords = records;
+            }
+        } finally {
+            pendingCommit = null;
+        }
+    }
+
+    /**
+     * Re-sends retained records within the current transaction.
+     * @param retained the retained records
+     * @throws Exception sending failed
+     */
+    @SuppressWarnings("rawtypes")
+    private void resend(List<RetainedRecords> retained) throws Exception {
+        checkAndBeginTransaction();
+        int n = 0;
+        for (RetainedRecords r: retained) {
+            synchronized (r.records) {
+                for (ProducerRecord record: r.records) {
+                    futuresList.add(super.send(record, null, 0));
+                    ++n;
+                }
+            }
+            resentRecords.add(r);
+        }
+        logger.info("Re-sent " + n + " messages of uncommitted transactions.");
+    }
+
+    private void updateControlTopicOffsets(RecordMetadata lastCommittedControlRecordMetadata) {
+        TopicPartition tp = new TopicPartition(lastCommittedControlRecordMetadata.topic(), lastCommittedControlRecordMetadata.partition());
+        // all older control records of this producer are before this offset or in other partitions,
+        // so that the lookup of the committed sequence ID can start here
+        controlTopicInitialOffsets.clear();
+        controlTopicInitialOffsets.put(tp, lastCommittedControlRecordMetadata.offset());
+        // The 'controlTopicInitialOffsets' need not be synced back to the JCP. The CV is for reset to initial state.
+//        this.startOffsetsCV.setValue (serializeObject (controlTopicInitialOffsets));
+    }
+
     /**
      * Begins a transaction if no transaction is already in progress.
      * Uses member variable `transactionInProgress`.
@@ -148,30 +449,49 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
 
     @SuppressWarnings("rawtypes")
     @Override
-    public Future<RecordMetadata> send (ProducerRecord record) throws Exception {
-        Future<RecordMetadata> future = super.send(record);
+    protected Future<RecordMetadata> send (ProducerRecord record, Tuple tuple, int nRetries) throws Exception {
+        Future<RecordMetadata> future = super.send(record, tuple, nRetries);
         futuresList.add(future);
+        if (pipelinedCommits) {
+            transactionRecords.add(record);
+        }
         return future;
     }
 
     @SuppressWarnings({"rawtypes"})
     @Override
-    public boolean processTuple(ProducerRecord producerRecord) throws Exception {
+    public boolean processRecord(ProducerRecord producerRecord, Tuple tuple) throws Exception {
         // send always within a transaction
         checkAndBeginTransaction();
-        this.send(producerRecord);
+        this.send(producerRecord, tuple, 0);
         return true;
     }
 
-    private HashMap<TopicPartition, Long> getControlTopicEndOffsets() throws Exception {
-        KafkaConsumer<?, ?> consumer = new KafkaConsumer<>(getConsumerProperties());
-        HashMap<TopicPartition, Long> controlTopicEndOffsets = getControlTopicEndOffsets(consumer);
-        consumer.close(1, TimeUnit.SECONDS);
+    /**
+     * A failed send request lets the commit of the transaction fail. 
+     * That's why no exception is considered recoverable for a single record.
+     * The consistent region is reset instead.
+     */
+    @Override
+    protected boolean isRecoverable(Exception exception) {
+        return false;
+    }
 
-        return controlTopicEndOffsets;
+    private SharedControlTopicConsumer getControlTopicConsumer() throws Exception {
+        if (controlTopicConsumer == null) {
+            controlTopicConsumer = SharedControlTopicConsumer.acquire(getConsumerProperties(), controlTopicConsumerFactory);
+        }
+        return controlTopicConsumer;
     }
 
-    private HashMap<TopicPartition, Long> getControlTopicEndOffsets(KafkaConsumer<?, ?> consumer) throws Exception {
+    /**
+     * Determines the partition of the control topic for the control records of this producer 
+     * and returns its end offset.
+     * @return the end offset of the control topic partition of this producer
+     * @throws Exception
+     */
+    private HashMap<TopicPartition, Long> getControlTopicEndOffsets() throws Exception {
+        SharedControlTopicConsumer consumer = getControlTopicConsumer();
         List<PartitionInfo> partitionInfoList = consumer.partitionsFor(EXACTLY_ONCE_STATE_TOPIC);
         if (partitionInfoList == null) {
             // topic EXACTLY_ONCE_STATE_TOPIC is not present, cannot be auto-created
@@ -179,51 +499,84 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
             logger.error(msg);
             throw new KafkaConfigurationException(msg);
         }
-        List<TopicPartition> partitions = new ArrayList<TopicPartition>();
-        partitionInfoList.forEach(pi -> partitions.add(new TopicPartition(pi.topic(), pi.partition())));
-        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        // same partitioning as the default partitioner uses for keyed records
+        controlTopicPartition = Utils.toPositive(Utils.murmur2(transactionalIdBytes)) % partitionInfoList.size();
+        if (logger.isDebugEnabled()) logger.debug("control topic partition = " + controlTopicPartition);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(Collections.singletonList(new TopicPartition(EXACTLY_ONCE_STATE_TOPIC, controlTopicPartition)));
 
         return new HashMap<>(endOffsets);
     }
 
-    @SuppressWarnings("rawtypes")
+    /**
+     * Reads the highest committed sequence ID of this producer from the control topic.
+     * The control topic is read from the offsets in `controlTopicInitialOffsets`, which contain 
+     * the offset of the last committed control record of this producer. Only the partition of this producer
+     * is read unless the offsets have been checkpointed by a version that wrote the control records to all partitions.
+     * `controlTopicInitialOffsets` is updated with the offset of the found control record.
+     * 
+     * @return the committed sequence ID or 0, if no control record is found
+     * @throws Exception
+     */
     private long getCommittedSequenceIdFromCtrlTopic() throws Exception {
-        KafkaConsumer<?, ?> consumer = new KafkaConsumer<>(getConsumerProperties());
-        HashMap<TopicPartition, Long> endOffsets = getControlTopicEndOffsets(consumer);
+        return getControlTopicConsumer().execute(this::readCommittedSequenceId);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private long readCommittedSequenceId(Consumer<?, ?> consumer) {
+        TopicPartition producerPartition = new TopicPartition(EXACTLY_ONCE_STATE_TOPIC, controlTopicPartition);
+        Set<TopicPartition> partitions = new HashSet<>(controlTopicInitialOffsets.keySet());
+        partitions.add(producerPartition);
 
         // move the consumer to initial offset to begin consuming from
-        consumer.assign(controlTopicInitialOffsets.keySet());
+        consumer.assign(partitions);
         controlTopicInitialOffsets.forEach((tp, offset) -> {
             consumer.seek(tp, offset);
         });
+        if (!controlTopicInitialOffsets.containsKey(producerPartition)) {
+            // the number of partitions of the control topic has changed
+            consumer.seekToBeginning(Collections.singletonList(producerPartition));
+        }
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
 
         long committedSeqId = 0;
-        boolean consumerAtEnd = false;
+        TopicPartition committedTp = null;
+        long committedOffset = -1l;
+        boolean consumerAtEnd = isConsumerAtEnd(consumer, endOffsets);
         while(!consumerAtEnd) {
             ConsumerRecords<?, ?> records = consumer.poll(1000);
-            if (logger.isDebugEnabled()) logger.debug("ConsumerRecords: " + records);
+            if (logger.isDebugEnabled()) logger.debug("# ConsumerRecords: " + records.count());
             Iterator<?> it = records.iterator();
             // Records from different partitions can be scrambled. So we cannot assume that the last record returned by the iterator contains the last committed sequence-ID.
             while(it.hasNext()) {
                 ConsumerRecord record = (ConsumerRecord)it.next();
                 Headers headers = record.headers();
-                if (logger.isDebugEnabled()) logger.debug("Headers: " + headers);
-                String tid = new String(headers.lastHeader(TRANSACTION_ID).value(), StandardCharsets.UTF_8);
-                if (logger.isDebugEnabled()) logger.debug("Checking tid=" + tid + " (currentTid=" + getTransactionalId() + "); from " + record.topic() + "-" + record.partition());
-                if(tid.equals(getTransactionalId())) {
+                Header tidHeader = headers.lastHeader(TRANSACTION_ID);
+                // compare the raw bytes to avoid decoding the headers of other producers
+                if(tidHeader != null && Arrays.equals(tidHeader.value(), transactionalIdBytes)) {
                     long decodedSeqId = Long.valueOf(new String(headers.lastHeader(COMMITTED_SEQUENCE_ID).value(), StandardCharsets.UTF_8));
-                    if (decodedSeqId > committedSeqId) committedSeqId = decodedSeqId;
+                    if (logger.isDebugEnabled()) logger.debug("found seqId=" + decodedSeqId + " in " + record.topic() + "-" + record.partition() + "[" + record.offset() + "]");
+                    if (decodedSeqId > committedSeqId) {
+                        committedSeqId = decodedSeqId;
+                        committedTp = new TopicPartition(record.topic(), record.partition());
+                        committedOffset = record.offset();
+                    }
                 }
             }
 
             consumerAtEnd = isConsumerAtEnd(consumer, endOffsets);
             if (logger.isDebugEnabled()) logger.debug("consumerAtEnd=" + consumerAtEnd);
-        }        
-        consumer.close(1l, TimeUnit.SECONDS);
+        }
+        consumer.unsubscribe();
+        if (committedTp != null) {
+            // next lookup can start at the found control record; newer control records of this producer
+            // can only be in the partition of this producer
+            controlTopicInitialOffsets.clear();
+            controlTopicInitialOffsets.put(committedTp, committedOffset);
+        }
         return committedSeqId;
     }
 
-    private boolean isConsumerAtEnd(KafkaConsumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+    private boolean isConsumerAtEnd(Consumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
         for(Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
             long currentOffset = consumer.position(entry.getKey());
             long endOffset = entry.getValue();
@@ -280,6 +633,13 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
     @Override
     public void drain() throws Exception {
         if (logger.isDebugEnabled()) logger.debug("TransactionalKafkaProducerClient -- DRAIN");
+        // the previous transaction must be committed before the next one can be committed
+        awaitPendingCommit();
+        if (uncommittedRecords != null) {
+            // no reset: the records of the failed transaction are not replayed, so that they go into the current transaction
+            resend(uncommittedRecords);
+            uncommittedRecords = null;
+        }
         flush();
     }
 
@@ -310,19 +670,23 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
                 // been processed before and is a duplicate.
                 // Discard this transaction.
                 abortTransaction();
+                transactionRecords.clear();
+                resentRecords.clear();
                 doCommit = false;
                 lastSuccessfulSequenceId = committedSequenceId;
             }
         }
         if (logger.isDebugEnabled()) logger.debug("doCommit = " + doCommit);
         if(doCommit) {
-            RecordMetadata lastCommittedControlRecordMetadata = commitTransaction(currentSequenceId);
+            if (pipelinedCommits) {
+                // the control topic offsets are updated when the commit is awaited; the checkpoint contains
+                // the offsets of the previous commit, from where the control topic is scanned on reset
+                commitTransactionAsync(currentSequenceId);
+            } else {
+                RecordMetadata lastCommittedControlRecordMetadata = commitTransaction(producer, currentSequenceId);
+                updateControlTopicOffsets(lastCommittedControlRecordMetadata);
+            }
             lastSuccessfulSequenceId = currentSequenceId;
-
-            TopicPartition tp = new TopicPartition(lastCommittedControlRecordMetadata.topic(), lastCommittedControlRecordMetadata.partition());
-            controlTopicInitialOffsets.put(tp, lastCommittedControlRecordMetadata.offset());
-            // The 'controlTopicInitialOffsets' need not be synced back to the JCP. The CV is for reset to initial state.
-//            this.startOffsetsCV.setValue (serializeObject (controlTopicInitialOffsets));
         }
         transactionInProgress.set (false);
         // save the last successful seq ID
@@ -333,6 +697,16 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
         if (logger.isDebugEnabled()) logger.debug("Checkpointing control topic offsets: " + controlTopicInitialOffsets);
         checkpoint.getOutputStream().writeObject(controlTopicInitialOffsets);
 
+        if (pipelinedCommits) {
+            // save the records of the transaction that is being committed; they are re-sent on reset when the
+            // control topic shows that the transaction has not been committed
+            final List<RetainedRecords> retained = doCommit? pendingCommitRecords: Collections.<RetainedRecords>emptyList();
+            checkpoint.getOutputStream().writeInt(retained.size());
+            for (RetainedRecords r: retained) {
+                r.writeTo(checkpoint.getOutputStream());
+            }
+        }
+
         if (!lazyTransactionBegin) {
             // start a new transaction
             checkAndBeginTransaction();
@@ -345,6 +719,7 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
     @Override
     public void tryCancelOutstandingSendRequests (boolean mayInterruptIfRunning) {
         if (logger.isDebugEnabled()) logger.debug("TransactionalKafkaProducerClient -- trying to cancel requests");
+        super.tryCancelOutstandingSendRequests(mayInterruptIfRunning);
         int nCancelled = 0;
         for (Future<RecordMetadata> future : futuresList) {
             if (!future.isDone() && future.cancel (mayInterruptIfRunning)) ++nCancelled;
@@ -363,6 +738,39 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
         controlTopicInitialOffsets = (HashMap<TopicPartition, Long>)checkpoint.getInputStream().readObject();
         if (logger.isDebugEnabled()) logger.debug("Reset controlTopicInitialOffsets: " + controlTopicInitialOffsets);
 
+        List<RetainedRecords> toResend = new ArrayList<>();
+        if (pipelinedCommits) {
+            // the records of the transaction that was being committed when the checkpoint was taken
+            List<RetainedRecords> checkpointedRecords = new ArrayList<>();
+            final int nRetained = checkpoint.getInputStream().readInt();
+            for (int i = 0; i < nRetained; ++i) {
+                checkpointedRecords.add(RetainedRecords.readFrom(checkpoint.getInputStream()));
+            }
+            try {
+                awaitPendingCommit();
+            } catch (Exception e) {
+                logger.warn("Exception waiting for the background commit: " + e);
+            }
+            // The records retained in memory belong to later checkpoint intervals, which are replayed,
+            // or to the transaction of the checkpoint, whose records are re-sent from the checkpoint.
+            uncommittedRecords = null;
+            resentRecords = new ArrayList<>();
+            transactionRecords.clear();
+            if (!checkpointedRecords.isEmpty()) {
+                // The checkpoint has been taken before its transaction has been committed. The records of an
+                // uncommitted transaction are not replayed and must be re-sent, also when the PE has been restarted.
+                long committedSequenceId = getCommittedSequenceIdFromCtrlTopic();
+                for (RetainedRecords r: checkpointedRecords) {
+                    if (r.sequenceId > committedSequenceId) toResend.add(r);
+                }
+                if (committedSequenceId < lastSuccessfulSequenceId) {
+                    logger.warn("The transaction for checkpoint " + lastSuccessfulSequenceId + " has not been committed. "
+                            + "Last committed checkpoint is " + committedSequenceId + ". Its messages are re-sent.");
+                    lastSuccessfulSequenceId = committedSequenceId;
+                }
+            }
+        }
+
         // check 'transactionInProgress' for true and set atomically to false
         if (transactionInProgress.compareAndSet (true, false)) {
             // abort the current transaction
@@ -373,5 +781,66 @@ public class TransactionalKafkaProducerClient extends KafkaProducerClient {
             checkAndBeginTransaction();
         }
         setSendException(null);
+        if (!toResend.isEmpty()) {
+            resend(toResend);
+        }
+    }
+
+    /**
+     * Aborts the open transaction and resets the sequence ID and the control topic offsets
+     * to the state after creation of the client. The producers are not re-initialized.
+     * @return false, if a producer is fenced or broken, true otherwise
+     */
+    @Override
+    public boolean resetToInitialState() throws Exception {
+        if (logger.isDebugEnabled()) logger.debug("TransactionalKafkaProducerClient -- RESET TO INIT");
+        try {
+            awaitPendingCommit();
+        } catch (Exception e) {
+            logger.warn("Exception waiting for the background commit: " + e);
+            if (isFatal(e)) return false;
+        }
+        if (sendException != null && isFatal(sendException)) {
+            return false;
+        }
+        if (transactionInProgress.compareAndSet (true, false)) {
+            try {
+                abortTransaction();
+            } catch (Exception e) {
+                // ProducerFencedException or the producer is in an error state, which cannot be left by abort
+                logger.warn("Aborting the transaction failed: " + e);
+                return false;
+            }
+        }
+        futuresList.clear();
+        // the operators upstream replay all records
+        transactionRecords.clear();
+        resentRecords.clear();
+        uncommittedRecords = null;
+        lastSuccessfulSequenceId = 0;
+        controlTopicInitialOffsets = SerializationUtils.deserialize(Base64.getDecoder().decode(startOffsetsCV.getValue()));
+        if (logger.isDebugEnabled()) logger.debug("controlTopicInitialOffsets=" + controlTopicInitialOffsets);
+        setSendException(null);
+        if (!lazyTransactionBegin) {
+            checkAndBeginTransaction();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            awaitPendingCommit();
+        } catch (Exception e) {
+            logger.warn("Exception waiting for the background commit: " + e);
+        }
+        if (controlTopicConsumer != null) {
+            controlTopicConsumer.release();
+            controlTopicConsumer = null;
+        }
+        super.close();
+        for (Producer<?, ?> p: producers) {
+            if (p != producer) p.close(CLOSE_TIMEOUT, CLOSE_TIMEOUT_TIMEUNIT);
+        }
     }
 }
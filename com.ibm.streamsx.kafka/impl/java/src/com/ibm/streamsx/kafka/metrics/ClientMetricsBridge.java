@@ -0,0 +1,99 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+
+/**
+ * Copies selected metrics of a Kafka producer or consumer into custom metrics of the operator.
+ * A metric is selected by its Kafka metric name, for example <tt>fetch-latency-avg</tt>, and is published
+ * under the same name. Streams metrics are integers, so that the values are rounded. For metrics with small values,
+ * like ratios, a factor can be appended, for example <tt>compression-rate-avg*1000</tt>. The metric is then
+ * published with the multiplied value under the name including the factor.
+ * <p>
+ * When the Kafka client has several metrics with the same name, for example a metric for the whole client and metrics
+ * per topic or per broker node, the metric with the fewest tags is copied, which is the metric for the whole client.
+ * Metrics that are not yet created by the client and metrics without a valid value, like the average of no samples,
+ * are not updated.
+ */
+public class ClientMetricsBridge {
+
+    private static final Logger logger = Logger.getLogger(ClientMetricsBridge.class);
+
+    private final List<BridgedMetric> bridgedMetrics = new ArrayList<>();
+
+    private static class BridgedMetric {
+        private final String kafkaName;
+        private final double factor;
+        private final Metric metric;
+
+        BridgedMetric(String kafkaName, double factor, Metric metric) {
+            this.kafkaName = kafkaName;
+            this.factor = factor;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * Constructs a new bridge and creates the custom metrics.
+     * @param operatorMetrics the metrics of the operator
+     * @param names           the Kafka metric names, optionally followed by <tt>*factor</tt>
+     * @throws IllegalArgumentException a factor is not a number
+     */
+    public ClientMetricsBridge(OperatorMetrics operatorMetrics, Collection<String> names) {
+        for (String name: names) {
+            final String spec = name.trim();
+            final int idx = spec.lastIndexOf('*');
+            final String kafkaName = idx < 0? spec: spec.substring(0, idx).trim();
+            final double factor = idx < 0? 1.0: Double.parseDouble(spec.substring(idx +1).trim());
+            Metric metric = operatorMetrics.getCustomMetrics().get(spec);
+            if (metric == null) {
+                final String description = "Kafka client metric " + kafkaName + (idx < 0? "": " multiplied by " + spec.substring(idx +1).trim()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                metric = operatorMetrics.createCustomMetric(spec, description, Metric.Kind.GAUGE);
+            }
+            bridgedMetrics.add(new BridgedMetric(kafkaName, factor, metric));
+        }
+    }
+
+    /**
+     * Copies the values of the selected Kafka metrics into the custom metrics.
+     * @param clientMetrics the metrics of the Kafka client as returned by <tt>metrics()</tt>
+     */
+    public void update(Map<MetricName, ? extends org.apache.kafka.common.Metric> clientMetrics) {
+        // the metric with the fewest tags for every name
+        final Map<String, org.apache.kafka.common.Metric> byName = new HashMap<>();
+        final Map<String, Integer> nTags = new HashMap<>();
+        for (Map.Entry<MetricName, ? extends org.apache.kafka.common.Metric> entry: clientMetrics.entrySet()) {
+            final String name = entry.getKey().name();
+            final int n = entry.getKey().tags().size();
+            final Integer current = nTags.get(name);
+            if (current == null || n < current) {
+                byName.put(name, entry.getValue());
+                nTags.put(name, n);
+            }
+        }
+        for (BridgedMetric m: bridgedMetrics) {
+            final org.apache.kafka.common.Metric kafkaMetric = byName.get(m.kafkaName);
+            if (kafkaMetric == null) {
+                continue;
+            }
+            final Object value = kafkaMetric.metricValue();
+            if (value instanceof Number) {
+                final double d = ((Number) value).doubleValue() * m.factor;
+                if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                    m.metric.setValue(Math.round(d));
+                }
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Kafka metric " + m.kafkaName + " is not numeric: " + value); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with log-linear buckets, similar to the HdrHistogram.
+ * Every power of two is divided into {@value #SUB_BUCKET_COUNT} linear buckets, so that a value
+ * is resolved with a relative error of less than 1/{@value #SUB_BUCKET_COUNT}. Values below
+ * 2 * {@value #SUB_BUCKET_COUNT} are counted exactly.
+ * <p>
+ * Recording a value does not allocate memory and does not lock. Values can be recorded by one thread
+ * while another thread takes a {@link #snapshotAndReset() snapshot}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // the highest value, Long.MAX_VALUE, has its most significant bit at position 62
+    private static final int BUCKET_COUNT = (62 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong(0l);
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * @param value the value
+     */
+    public void record(long value) {
+        if (value < 0l) value = 0l;
+        counts.incrementAndGet(bucketIndex(value));
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the values recorded since the last snapshot and resets the histogram.
+     * Values that are recorded concurrently go either into this or into the next snapshot.
+     * @return the snapshot
+     */
+    public Snapshot snapshotAndReset() {
+        final long[] snapshotCounts = new long[BUCKET_COUNT];
+        long totalCount = 0l;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            snapshotCounts[i] = counts.getAndSet(i, 0l);
+            totalCount += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, totalCount, max.getAndSet(0l));
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    static long highestValueInBucket(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long lowestValue = ((long) (index - shift * SUB_BUCKET_COUNT)) << shift;
+        return lowestValue + (1l << shift) - 1l;
+    }
+
+    /**
+     * The values of a histogram recorded between two calls of {@link LatencyHistogram#snapshotAndReset()}.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+        private final long max;
+
+        private Snapshot(long[] counts, long totalCount, long max) {
+            this.counts = counts;
+            this.totalCount = totalCount;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         * @return the number of values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Gets the highest recorded value.
+         * @return the highest value or 0, if no value has been recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the value, at or below which the given percentage of the recorded values lies.
+         * The value is the highest value of the bucket, but not higher than the highest recorded value.
+         * @param percentile the percentile between 0.0 and 100.0
+         * @return the value at the percentile or 0, if no value has been recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (totalCount == 0l) {
+                return 0l;
+            }
+            final long countAtPercentile = Math.max(1l, (long) Math.ceil(percentile / 100.0 * totalCount));
+            long count = 0l;
+            for (int i = 0; i < counts.length; ++i) {
+                count += counts[i];
+                if (count >= countAtPercentile) {
+                    return Math.min(highestValueInBucket(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
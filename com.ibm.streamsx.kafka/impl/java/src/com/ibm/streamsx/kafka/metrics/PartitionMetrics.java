@@ -0,0 +1,160 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+
+/**
+ * Custom metrics for every assigned topic partition of a consumer, which are created when a partition is assigned.
+ * The metrics of a partition are named <tt>offset[topic-partition]</tt>, <tt>endOffset[topic-partition]</tt>,
+ * <tt>lag[topic-partition]</tt>, <tt>messagesPerSec[topic-partition]</tt>, and <tt>bytesPerSec[topic-partition]</tt>.
+ * <p>
+ * Custom metrics cannot be removed from an operator. When a partition is revoked, its lag and rates are set to 0,
+ * and its metrics are not updated anymore until the partition is assigned again.
+ * <p>
+ * This class is not thread-safe. All methods must be called by the thread that uses the Kafka consumer.
+ */
+public class PartitionMetrics {
+
+    private static final Logger logger = Logger.getLogger(PartitionMetrics.class);
+
+    private final OperatorMetrics operatorMetrics;
+    private final Map<TopicPartition, Partition> partitions = new HashMap<>();
+    private long lastUpdateTimeMs = System.currentTimeMillis();
+
+    /**
+     * The metrics and the fetch statistics of a single partition.
+     */
+    private class Partition {
+        private final Metric offset;
+        private final Metric endOffset;
+        private final Metric lag;
+        private final Metric messagesPerSec;
+        private final Metric bytesPerSec;
+        // offset of the next record to fetch, -1 when no record has been fetched yet
+        private long nextOffset = -1l;
+        private long nMessages = 0l;
+        private long nBytes = 0l;
+
+        Partition(TopicPartition tp) {
+            final String suffix = "[" + tp + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+            offset = getOrCreateMetric("offset" + suffix, "Offset of the next message to fetch from the partition."); //$NON-NLS-1$
+            endOffset = getOrCreateMetric("endOffset" + suffix, "End offset of the partition."); //$NON-NLS-1$
+            lag = getOrCreateMetric("lag" + suffix, "Number of messages in the partition, which have not yet been fetched."); //$NON-NLS-1$
+            messagesPerSec = getOrCreateMetric("messagesPerSec" + suffix, "Number of messages per second fetched from the partition."); //$NON-NLS-1$
+            bytesPerSec = getOrCreateMetric("bytesPerSec" + suffix, "Number of key and value bytes per second fetched from the partition."); //$NON-NLS-1$
+        }
+
+        void retire() {
+            lag.setValue(0l);
+            messagesPerSec.setValue(0l);
+            bytesPerSec.setValue(0l);
+        }
+    }
+
+    /**
+     * Constructs a new instance without any partition.
+     * @param operatorMetrics the metrics of the operator
+     */
+    public PartitionMetrics(OperatorMetrics operatorMetrics) {
+        this.operatorMetrics = operatorMetrics;
+    }
+
+    private Metric getOrCreateMetric(String name, String description) {
+        final Metric metric = operatorMetrics.getCustomMetrics().get(name);
+        if (metric != null) {
+            return metric;
+        }
+        return operatorMetrics.createCustomMetric(name, description, Metric.Kind.GAUGE);
+    }
+
+    /**
+     * Sets the assigned partitions. Metrics are created for new partitions; the metrics of partitions,
+     * which are not assigned anymore, are retired.
+     * @param assignment the assigned partitions
+     */
+    public void setAssignment(Collection<TopicPartition> assignment) {
+        final Set<TopicPartition> assigned = new HashSet<>(assignment);
+        final Iterator<Map.Entry<TopicPartition, Partition>> it = partitions.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<TopicPartition, Partition> entry = it.next();
+            if (!assigned.remove(entry.getKey())) {
+                entry.getValue().retire();
+                it.remove();
+            }
+        }
+        for (TopicPartition tp: assigned) {
+            partitions.put(tp, new Partition(tp));
+        }
+        if (logger.isDebugEnabled()) logger.debug("partition metrics for " + partitions.keySet()); //$NON-NLS-1$
+    }
+
+    /**
+     * Retires the metrics of revoked partitions.
+     * @param revoked the revoked partitions
+     */
+    public void revoke(Collection<TopicPartition> revoked) {
+        for (TopicPartition tp: revoked) {
+            final Partition p = partitions.remove(tp);
+            if (p != null) p.retire();
+        }
+    }
+
+    /**
+     * Counts the records and bytes of a poll result by partition.
+     * @param records the polled records
+     */
+    public void recordsFetched(ConsumerRecords<?, ?> records) {
+        for (TopicPartition tp: records.partitions()) {
+            final Partition p = partitions.get(tp);
+            if (p == null) continue;
+            final List<? extends ConsumerRecord<?, ?>> partitionRecords = records.records(tp);
+            long nBytes = 0l;
+            for (ConsumerRecord<?, ?> r: partitionRecords) {
+                nBytes += Math.max(0, r.serializedKeySize()) + Math.max(0, r.serializedValueSize());
+            }
+            p.nMessages += partitionRecords.size();
+            p.nBytes += nBytes;
+            p.nextOffset = partitionRecords.get(partitionRecords.size() -1).offset() +1l;
+        }
+    }
+
+    /**
+     * Updates the metrics of all assigned partitions with the fetch statistics since the last update.
+     * The end offset is derived from the lag and the offset of the next record to fetch.
+     * @param lags the lag of the partitions, as reported by the consumer with the last fetch response;
+     *             partitions without lag keep their end offset and lag
+     */
+    public void update(Map<TopicPartition, Long> lags) {
+        final long now = System.currentTimeMillis();
+        final long elapsedMs = Math.max(1l, now - lastUpdateTimeMs);
+        lastUpdateTimeMs = now;
+        for (Map.Entry<TopicPartition, Partition> entry: partitions.entrySet()) {
+            final Partition p = entry.getValue();
+            p.messagesPerSec.setValue(p.nMessages * 1000l / elapsedMs);
+            p.bytesPerSec.setValue(p.nBytes * 1000l / elapsedMs);
+            p.nMessages = 0l;
+            p.nBytes = 0l;
+            if (p.nextOffset >= 0l) {
+                p.offset.setValue(p.nextOffset);
+            }
+            final Long lag = lags.get(entry.getKey());
+            if (lag != null && p.nextOffset >= 0l) {
+                p.lag.setValue(Math.max(0l, lag));
+                p.endOffset.setValue(p.nextOffset + Math.max(0l, lag));
+            }
+        }
+    }
+}
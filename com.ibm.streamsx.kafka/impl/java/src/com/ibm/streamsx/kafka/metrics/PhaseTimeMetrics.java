@@ -0,0 +1,58 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.ibm.streams.operator.metrics.Metric;
+
+/**
+ * Accounts the time, which a single thread spends in the phases of its work, in cumulative nanosecond counters.
+ * The counters are published as the percentage of the wall time, which elapsed since the last update.
+ * The time, which is not accounted to a phase, is spent in other work of the thread.
+ * <p>
+ * The times of a phase must be added by one thread only. The metrics can be updated by another thread.
+ * Adding a time does not allocate memory and does not lock.
+ */
+public class PhaseTimeMetrics {
+
+    private final Metric[] percentMetrics;
+    private final AtomicLongArray nanos;
+    private final long[] lastNanos;
+    private long lastUpdateNanos = System.nanoTime();
+
+    /**
+     * Constructs a new instance.
+     * @param percentMetrics the metrics for the percentage of wall time of every phase; the phase is the index of its metric
+     */
+    public PhaseTimeMetrics(Metric... percentMetrics) {
+        this.percentMetrics = percentMetrics;
+        this.nanos = new AtomicLongArray(percentMetrics.length);
+        this.lastNanos = new long[percentMetrics.length];
+    }
+
+    /**
+     * Adds the time spent in a phase. This method must always be called by the same thread.
+     * @param phase         the index of the phase
+     * @param durationNanos the time in nanoseconds
+     */
+    public void add(int phase, long durationNanos) {
+        // single writer: no read-modify-write race, and publishing the value needs no full fence
+        nanos.lazySet(phase, nanos.get(phase) + durationNanos);
+    }
+
+    /**
+     * Publishes the percentage of the wall time, which has been spent in every phase since the last update.
+     * The time of a phase is accounted when the phase ends, so that a phase, which started before the last update,
+     * can exceed the elapsed time. The percentage is limited to 100.
+     */
+    public synchronized void update() {
+        final long now = System.nanoTime();
+        final long elapsedNanos = Math.max(1l, now - lastUpdateNanos);
+        lastUpdateNanos = now;
+        for (int i = 0; i < percentMetrics.length; ++i) {
+            final long n = nanos.get(i);
+            final long delta = n - lastNanos[i];
+            lastNanos[i] = n;
+            percentMetrics[i].setValue(Math.min(100l, Math.round(delta * 100.0 / elapsedNanos)));
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.ibm.streamsx.kafka.operators;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -25,11 +28,14 @@ import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingInput;
 import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Tuple;
+import com.ibm.streams.operator.Type;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.meta.CollectionType;
 import com.ibm.streams.operator.metrics.Metric;
 import com.ibm.streams.operator.model.CustomMetric;
 import com.ibm.streams.operator.model.Parameter;
@@ -37,12 +43,18 @@ import com.ibm.streams.operator.state.Checkpoint;
 import com.ibm.streams.operator.state.ConsistentRegionContext;
 import com.ibm.streams.operator.types.RString;
 import com.ibm.streams.operator.types.ValueFactory;
+import com.ibm.streamsx.kafka.clients.consumer.DuplicateFilter;
 import com.ibm.streamsx.kafka.clients.consumer.KafkaConsumerClient;
+import com.ibm.streamsx.kafka.clients.consumer.RecordFilter;
+import com.ibm.streamsx.kafka.clients.consumer.SampledRecord;
 import com.ibm.streamsx.kafka.clients.consumer.StartPosition;
 import com.ibm.streamsx.kafka.clients.consumer.TopicPartitionUpdate;
 import com.ibm.streamsx.kafka.clients.consumer.TopicPartitionUpdateAction;
 import com.ibm.streamsx.kafka.i18n.Messages;
+import com.ibm.streamsx.kafka.metrics.LatencyHistogram;
+import com.ibm.streamsx.kafka.metrics.PhaseTimeMetrics;
 import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.table.KafkaTable;
 
 public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperator {	
 	
@@ -69,6 +81,34 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     private static final String START_TIME_PARAM = "startTime"; //$NON-NLS-1$
     private static final String TRIGGER_COUNT_PARAM = "triggerCount"; //$NON-NLS-1$
     private static final String START_OFFSET_PARAM = "startOffset"; //$NON-NLS-1$
+    private static final String BATCH_SIZE_PARAM = "batchSize"; //$NON-NLS-1$
+    private static final String BATCH_TIMEOUT_PARAM = "batchTimeout"; //$NON-NLS-1$
+    private static final String CONFLATE_BY_KEY_PARAM = "conflateByKey"; //$NON-NLS-1$
+    private static final String FILTER_KEYS_PARAM = "filterKeys"; //$NON-NLS-1$
+    private static final String FILTER_KEY_PREFIX_PARAM = "filterKeyPrefix"; //$NON-NLS-1$
+    private static final String FILTER_HEADERS_PARAM = "filterHeaders"; //$NON-NLS-1$
+    private static final String FILTER_MIN_TIMESTAMP_PARAM = "filterMinTimestamp"; //$NON-NLS-1$
+    private static final String FILTER_MAX_TIMESTAMP_PARAM = "filterMaxTimestamp"; //$NON-NLS-1$
+    private static final String FILTER_PARTITIONS_PARAM = "filterPartitions"; //$NON-NLS-1$
+    private static final String TABLE_NAME_PARAM = "tableName"; //$NON-NLS-1$
+    private static final String DEDUPLICATE_REPLAYS_PARAM = "deduplicateReplays"; //$NON-NLS-1$
+    private static final String DEDUPLICATION_WINDOW_SIZE_PARAM = "deduplicationWindowSize"; //$NON-NLS-1$
+    private static final String DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM = "deduplicationFalsePositiveRate"; //$NON-NLS-1$
+    private static final String LATENCY_SAMPLE_INTERVAL_PARAM = "latencySampleInterval"; //$NON-NLS-1$
+    private static final String LATENCY_METRICS_PERIOD_PARAM = "latencyMetricsPeriod"; //$NON-NLS-1$
+    private static final String PARTITION_METRICS_PERIOD_PARAM = "partitionMetricsPeriod"; //$NON-NLS-1$
+    private static final String PHASE_TIME_METRICS_PERIOD_PARAM = "phaseTimeMetricsPeriod"; //$NON-NLS-1$
+    private static final double DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE = 0.001;
+    private static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 100;
+    private static final double DEFAULT_LATENCY_METRICS_PERIOD = 10.0;
+    private static final double DEFAULT_PARTITION_METRICS_PERIOD = 10.0;
+    // phases of the tuple processing thread
+    private static final int QUEUE_WAIT_PHASE = 0;
+    private static final int SUBMIT_PHASE = 1;
+    // metrics of the Kafka consumer copied into custom metrics when the clientMetrics parameter is not specified
+    static final List<String> DEFAULT_CLIENT_METRICS = Arrays.asList("fetch-latency-avg", "fetch-latency-max", //$NON-NLS-1$ //$NON-NLS-2$
+            "records-lag-max", "fetch-size-avg", "fetch-rate", "records-per-request-avg"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    private static final int DEFAULT_BATCH_SIZE = 500;
     
     private Thread processThread;
     private KafkaConsumerClient consumer;
@@ -89,6 +129,23 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     private int triggerCount;
     private String groupId = null;
     private Long startTime;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private double batchTimeout = 0.0;
+    private boolean conflateByKey = false;
+    private List<String> filterKeys = null;
+    private String filterKeyPrefix = null;
+    private List<String> filterHeaders = null;
+    private Long filterMinTimestamp = null;
+    private Long filterMaxTimestamp = null;
+    private List<Integer> filterPartitions = null;
+    private String tableName = null;
+    private boolean deduplicateReplays = false;
+    private int deduplicationWindowSize = 0;
+    private double deduplicationFalsePositiveRate = DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE;
+    private int latencySampleInterval = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+    private double latencyMetricsPeriod = DEFAULT_LATENCY_METRICS_PERIOD;
+    private double partitionMetricsPeriod = DEFAULT_PARTITION_METRICS_PERIOD;
+    private double phaseTimeMetricsPeriod = 0.0;
 
     private Long consumerPollTimeout = DEFAULT_CONSUMER_TIMEOUT;
     private CountDownLatch resettingLatch;
@@ -97,6 +154,24 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
 	private boolean hasOutputOffset;
 	private boolean hasOutputPartition;
 	private boolean hasOutputTimetamp;
+	// batch mode: the output message attribute is a list, every tuple contains a batch of records
+	private boolean isBatchMode;
+	private Type keyElementType;
+	// table mode: the latest value per key is kept in a table that is registered in the PE
+	private KafkaTable table = null;
+	// true until the consumer client has read all partitions up to the end offsets at operator start
+	private boolean bootstrapping = false;
+	private ScheduledFuture<?> tableMetricsUpdater = null;
+	// detects replayed records; null when de-duplication is disabled
+	private DuplicateFilter duplicateFilter = null;
+	private ScheduledFuture<?> deduplicationMetricsUpdater = null;
+	// latencies of the sampled records: age of the record in milliseconds, time from fetch to submission in microseconds
+	private final LatencyHistogram recordAgeHistogram = new LatencyHistogram();
+	private final LatencyHistogram fetchToSubmitHistogram = new LatencyHistogram();
+	private ScheduledFuture<?> latencyMetricsUpdater = null;
+	// time accounting of the tuple processing thread; null when disabled
+	private PhaseTimeMetrics processThreadTimes = null;
+	private ScheduledFuture<?> phaseTimeMetricsUpdater = null;
 
     // The number of messages in which the value was malformed and could not be deserialized
     private Metric nMalformedMessages;
@@ -126,6 +201,131 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         this.nQueueFullPause = nQueueFullPause;
     }
 
+    private Metric nConflatedMessages;
+    private Metric nFilteredMessages;
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of messages dropped by the message filter.")
+    public void setnFilteredMessages(Metric nFilteredMessages) {
+        this.nFilteredMessages = nFilteredMessages;
+    }
+
+    private Metric nDuplicateMessages;
+    private Metric deduplicationFalsePositivePpm;
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of messages suppressed by the de-duplication.")
+    public void setnDuplicateMessages(Metric nDuplicateMessages) {
+        this.nDuplicateMessages = nDuplicateMessages;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, description = "Estimated probability in parts per million, that a message is wrongly suppressed as duplicate by its content.")
+    public void setDeduplicationFalsePositivePpm(Metric deduplicationFalsePositivePpm) {
+        this.deduplicationFalsePositivePpm = deduplicationFalsePositivePpm;
+    }
+
+    private Metric nTableEntries;
+    private Metric nTableLookups;
+    private Metric nTableHits;
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, description = "Number of keys in the table when the operator runs in table mode.")
+    public void setnTableEntries(Metric nTableEntries) {
+        this.nTableEntries = nTableEntries;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of table lookups by other operators when the operator runs in table mode.")
+    public void setnTableLookups(Metric nTableLookups) {
+        this.nTableLookups = nTableLookups;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of table lookups that found a value when the operator runs in table mode.")
+    public void setnTableHits(Metric nTableHits) {
+        this.nTableHits = nTableHits;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of messages dropped because a newer message with the same key was fetched in the same batch.")
+    public void setnConflatedMessages(Metric nConflatedMessages) {
+        this.nConflatedMessages = nConflatedMessages;
+    }
+
+    private Metric recordAgeP50Ms;
+    private Metric recordAgeP90Ms;
+    private Metric recordAgeP99Ms;
+    private Metric recordAgeMaxMs;
+    private Metric fetchToSubmitP50Us;
+    private Metric fetchToSubmitP90Us;
+    private Metric fetchToSubmitP99Us;
+    private Metric fetchToSubmitMaxUs;
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordAgeP50Ms", description = "Median time in milliseconds between the timestamp of the sampled messages and their submission.")
+    public void setRecordAgeP50Ms(Metric recordAgeP50Ms) {
+        this.recordAgeP50Ms = recordAgeP50Ms;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordAgeP90Ms", description = "90th percentile of the time in milliseconds between the timestamp of the sampled messages and their submission.")
+    public void setRecordAgeP90Ms(Metric recordAgeP90Ms) {
+        this.recordAgeP90Ms = recordAgeP90Ms;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordAgeP99Ms", description = "99th percentile of the time in milliseconds between the timestamp of the sampled messages and their submission.")
+    public void setRecordAgeP99Ms(Metric recordAgeP99Ms) {
+        this.recordAgeP99Ms = recordAgeP99Ms;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordAgeMaxMs", description = "Maximum time in milliseconds between the timestamp of the sampled messages and their submission.")
+    public void setRecordAgeMaxMs(Metric recordAgeMaxMs) {
+        this.recordAgeMaxMs = recordAgeMaxMs;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "fetchToSubmitP50Us", description = "Median time in microseconds between the fetch of the sampled messages and their submission.")
+    public void setFetchToSubmitP50Us(Metric fetchToSubmitP50Us) {
+        this.fetchToSubmitP50Us = fetchToSubmitP50Us;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "fetchToSubmitP90Us", description = "90th percentile of the time in microseconds between the fetch of the sampled messages and their submission.")
+    public void setFetchToSubmitP90Us(Metric fetchToSubmitP90Us) {
+        this.fetchToSubmitP90Us = fetchToSubmitP90Us;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "fetchToSubmitP99Us", description = "99th percentile of the time in microseconds between the fetch of the sampled messages and their submission.")
+    public void setFetchToSubmitP99Us(Metric fetchToSubmitP99Us) {
+        this.fetchToSubmitP99Us = fetchToSubmitP99Us;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "fetchToSubmitMaxUs", description = "Maximum time in microseconds between the fetch of the sampled messages and their submission.")
+    public void setFetchToSubmitMaxUs(Metric fetchToSubmitMaxUs) {
+        this.fetchToSubmitMaxUs = fetchToSubmitMaxUs;
+    }
+
+    private Metric pollThreadFetchPercent;
+    private Metric pollThreadDeserializePercent;
+    private Metric pollThreadQueueFullPercent;
+    private Metric processThreadQueueWaitPercent;
+    private Metric processThreadSubmitPercent;
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "pollThreadFetchPercent", description = "Percentage of time the polling thread spends fetching messages from the brokers.")
+    public void setPollThreadFetchPercent(Metric pollThreadFetchPercent) {
+        this.pollThreadFetchPercent = pollThreadFetchPercent;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "pollThreadDeserializePercent", description = "Percentage of time the polling thread spends filtering and deserializing the fetched messages. Only measured when the messages are filtered by key; otherwise the Kafka consumer deserializes the messages while fetching.")
+    public void setPollThreadDeserializePercent(Metric pollThreadDeserializePercent) {
+        this.pollThreadDeserializePercent = pollThreadDeserializePercent;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "pollThreadQueueFullPercent", description = "Percentage of time the polling thread is paused due to full queue or low memory.")
+    public void setPollThreadQueueFullPercent(Metric pollThreadQueueFullPercent) {
+        this.pollThreadQueueFullPercent = pollThreadQueueFullPercent;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "processThreadQueueWaitPercent", description = "Percentage of time the tuple processing thread waits for messages in the queue.")
+    public void setProcessThreadQueueWaitPercent(Metric processThreadQueueWaitPercent) {
+        this.processThreadQueueWaitPercent = processThreadQueueWaitPercent;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "processThreadSubmitPercent", description = "Percentage of time the tuple processing thread spends creating and submitting tuples.")
+    public void setProcessThreadSubmitPercent(Metric processThreadSubmitPercent) {
+        this.processThreadSubmitPercent = processThreadSubmitPercent;
+    }
+
 
     @Parameter(optional = true, name=OUTPUT_TIMESTAMP_ATTRIBUTE_NAME_PARAM,
     		description="Specifies the output attribute name that should contain the record's timestamp. "
@@ -296,6 +496,203 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         this.triggerCount = triggerCount;
     }
 
+    @Parameter(optional = true, name=BATCH_SIZE_PARAM,
+            description="Specifies the maximum number of messages that are submitted in a single tuple "
+                    + "when the operator runs in batch mode. The operator runs in batch mode when the output "
+                    + "message attribute is of a list type, for example `list<rstring>`. In batch mode, "
+                    + "the key, topic, offset, partition, and timestamp output attributes, if present, must also be lists. "
+                    + "The elements at the same index in these lists belong to the same message. "
+                    + "This parameter is ignored when the operator does not run in batch mode. "
+                    + "When the operator is the start of an *operator driven* consistent region, "
+                    + "the **triggerCount** parameter counts the submitted tuples, not the messages. "
+                    + "The default value is " + DEFAULT_BATCH_SIZE + ".")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Parameter(optional = true, name=BATCH_TIMEOUT_PARAM,
+            description="Specifies the maximum time in seconds the operator waits for more messages "
+                    + "to fill a batch after the first message of the batch has been received. "
+                    + "When the value is 0.0, a batch contains only the messages that have already been fetched "
+                    + "from Kafka, so that batching adds no latency. "
+                    + "This parameter is ignored when the operator does not run in batch mode. "
+                    + "The default value is 0.0.")
+    public void setBatchTimeout(double batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    @Parameter(optional = true, name=CONFLATE_BY_KEY_PARAM,
+            description="When set to `true`, the operator keeps only the newest message per key from the messages "
+                    + "that are fetched from a partition with one poll of the Kafka consumer. Up to the value of the "
+                    + "**max.poll.records** consumer property (default 500) messages are fetched with one poll. "
+                    + "This is useful for a consumer that catches up on a compacted state topic, where downstream "
+                    + "operators need only the latest value per key. Messages without key are never dropped. "
+                    + "The order of the remaining messages is preserved. In a consistent region, the committed offsets "
+                    + "advance also past the dropped messages. The **nConflatedMessages** metric counts the dropped messages. "
+                    + "The default value is `false`.")
+    public void setConflateByKey(boolean conflateByKey) {
+        this.conflateByKey = conflateByKey;
+    }
+
+    @Parameter(optional = true, name=FILTER_KEYS_PARAM,
+            description="Specifies a set of keys. Only messages with one of these keys are submitted. "
+                    + "Like all message filters, this filter is evaluated before the message is deserialized. "
+                    + "The filter values are compared with the UTF-8 encoded key bytes, so that it is applicable "
+                    + "to keys of type `rstring` or `blob`. Numeric key types are rejected.")
+    public void setFilterKeys(List<String> filterKeys) {
+        this.filterKeys = filterKeys;
+    }
+
+    @Parameter(optional = true, name=FILTER_KEY_PREFIX_PARAM,
+            description="Specifies a key prefix. Only messages with a key that begins with this prefix are submitted. "
+                    + "The prefix is compared with the UTF-8 encoded key bytes, so that it is applicable "
+                    + "to keys of type `rstring` or `blob`. Numeric key types are rejected.")
+    public void setFilterKeyPrefix(String filterKeyPrefix) {
+        this.filterKeyPrefix = filterKeyPrefix;
+    }
+
+    @Parameter(optional = true, name=FILTER_HEADERS_PARAM,
+            description="Specifies message headers in the form `name` or `name=value`. Only messages that have all "
+                    + "these headers are submitted. When a value is given, the header must have the UTF-8 encoded value.")
+    public void setFilterHeaders(List<String> filterHeaders) {
+        this.filterHeaders = filterHeaders;
+    }
+
+    @Parameter(optional = true, name=FILTER_MIN_TIMESTAMP_PARAM,
+            description="Specifies the minimum timestamp in milliseconds since Unix epoch. "
+                    + "Only messages with a timestamp greater or equal to this value are submitted.")
+    public void setFilterMinTimestamp(long filterMinTimestamp) {
+        this.filterMinTimestamp = filterMinTimestamp;
+    }
+
+    @Parameter(optional = true, name=FILTER_MAX_TIMESTAMP_PARAM,
+            description="Specifies the maximum timestamp in milliseconds since Unix epoch. "
+                    + "Only messages with a timestamp less or equal to this value are submitted.")
+    public void setFilterMaxTimestamp(long filterMaxTimestamp) {
+        this.filterMaxTimestamp = filterMaxTimestamp;
+    }
+
+    @Parameter(optional = true, name=FILTER_PARTITIONS_PARAM,
+            description="Specifies partition numbers. Only messages from these partitions are submitted. "
+                    + "Other than the **" + PARTITION_PARAM + "** parameter, this parameter does not change the "
+                    + "partition assignment of the consumer.")
+    public void setFilterPartitions(List<Integer> filterPartitions) {
+        this.filterPartitions = filterPartitions;
+    }
+
+    @Parameter(optional = true, name=TABLE_NAME_PARAM,
+            description="Specifies the name of the table when the operator runs in table mode. In table mode, "
+                    + "the operator keeps the latest value for every key in a table, which can be looked up by other "
+                    + "Java operators in the same PE. This parameter requires that the **startPosition** "
+                    + "parameter is set to `Beginning`. The table name must be unique within the PE. "
+                    + "See the operator description for details.")
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    @Parameter(optional = true, name=DEDUPLICATE_REPLAYS_PARAM,
+            description="When set to `true`, the operator does not submit messages again, which are read again "
+                    + "after a partition has been re-assigned, for example after a rebalance of the consumer group, when the committed "
+                    + "offsets lag behind the submitted messages. For this purpose, the operator keeps the highest submitted offset "
+                    + "for every partition in memory and suppresses messages at or below this offset. "
+                    + "On reset of a consistent region, the offsets are lowered to the offsets of the checkpoint, "
+                    + "so that the messages after the checkpoint are submitted again. The operators of the region restore their state "
+                    + "from the checkpoint and would lose these messages otherwise. Hence, the replay after a reset of a consistent region "
+                    + "is deliberately not de-duplicated; operators outside the region, which have already received these messages, "
+                    + "must tolerate them. The offsets are not kept when the PE restarts. "
+                    + "The **nDuplicateMessages** metric counts the suppressed messages. The default value is `false`.")
+    public void setDeduplicateReplays(boolean deduplicateReplays) {
+        this.deduplicateReplays = deduplicateReplays;
+    }
+
+    @Parameter(optional = true, name=DEDUPLICATION_WINDOW_SIZE_PARAM,
+            description="Specifies the number of recently submitted messages, within which a message with the same topic, key, "
+                    + "and value is suppressed as duplicate, for example when it has been written twice by a retrying producer. "
+                    + "The messages are remembered in two rotating Bloom filters, so that memory is bounded by the window size and the "
+                    + "**" + DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM + "** parameter. A message can wrongly be suppressed with this probability. "
+                    + "This parameter is ignored when **" + DEDUPLICATE_REPLAYS_PARAM + "** is not `true`. "
+                    + "The default value is `0`, which disables the detection of duplicates by content.")
+    public void setDeduplicationWindowSize(int deduplicationWindowSize) {
+        this.deduplicationWindowSize = deduplicationWindowSize;
+    }
+
+    @Parameter(optional = true, name=DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM,
+            description="Specifies the false positive rate of the Bloom filters used for the detection of duplicates by content. "
+                    + "A lower rate needs more memory. The **deduplicationFalsePositivePpm** metric gives the current estimation "
+                    + "in parts per million. The value must be greater than 0.0 and less than 1.0. "
+                    + "The default value is `" + DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE + "`.")
+    public void setDeduplicationFalsePositiveRate(double deduplicationFalsePositiveRate) {
+        this.deduplicationFalsePositiveRate = deduplicationFalsePositiveRate;
+    }
+
+    @Parameter(optional = true, name=LATENCY_SAMPLE_INTERVAL_PARAM,
+            description="Specifies, that every n-th fetched message is sampled for the latency metrics. For the sampled messages, "
+                    + "the operator measures the time between the message timestamp and the submission, and the time between the fetch "
+                    + "from Kafka and the submission. The percentiles of these times are published in the **recordAge*** and "
+                    + "**fetchToSubmit*** metrics. A higher value reduces the overhead at high message rates. "
+                    + "The value `0` disables the latency metrics. The default value is `" + DEFAULT_LATENCY_SAMPLE_INTERVAL + "`.")
+    public void setLatencySampleInterval(int latencySampleInterval) {
+        this.latencySampleInterval = latencySampleInterval;
+    }
+
+    @Parameter(optional = true, name=LATENCY_METRICS_PERIOD_PARAM,
+            description="Specifies the period in seconds, in which the latency metrics are updated. The metrics are calculated from "
+                    + "the messages sampled within the last period. When no message has been sampled within a period, the metrics "
+                    + "keep their values. The value must be greater than 0.0. The default value is `" + DEFAULT_LATENCY_METRICS_PERIOD + "`.")
+    public void setLatencyMetricsPeriod(double latencyMetricsPeriod) {
+        this.latencyMetricsPeriod = latencyMetricsPeriod;
+    }
+
+    @Parameter(optional = true, name=PARTITION_METRICS_PERIOD_PARAM,
+            description="Specifies the period in seconds, in which the metrics of the assigned partitions are updated. "
+                    + "For every assigned partition, the operator creates the metrics **offset[topic-partition]**, "
+                    + "**endOffset[topic-partition]**, **lag[topic-partition]**, **messagesPerSec[topic-partition]**, and "
+                    + "**bytesPerSec[topic-partition]**. The lag is taken from the fetch responses, which the consumer receives "
+                    + "anyway, so that the metrics do not send additional requests to the brokers. "
+                    + "The value `0.0` disables the partition metrics, which can be useful for consumers of many partitions. "
+                    + "The value must not be negative. The default value is `" + DEFAULT_PARTITION_METRICS_PERIOD + "`.")
+    public void setPartitionMetricsPeriod(double partitionMetricsPeriod) {
+        this.partitionMetricsPeriod = partitionMetricsPeriod;
+    }
+
+    @Parameter(optional = true, name=PHASE_TIME_METRICS_PERIOD_PARAM,
+            description="Specifies the period in seconds, in which the phase time metrics are updated. The phase time metrics "
+                    + "show the percentage of time, which the polling thread spends fetching and waiting for space "
+                    + "in the queue, and which the tuple processing thread spends waiting for messages and submitting tuples. "
+                    + "The Kafka consumer deserializes the messages while fetching. Only when the messages are filtered by key, "
+                    + "they are deserialized after fetching, and the time for filtering and deserialization is shown separately. "
+                    + "The value must not be negative. The default value `0.0` disables the phase time metrics.")
+    public void setPhaseTimeMetricsPeriod(double phaseTimeMetricsPeriod) {
+        this.phaseTimeMetricsPeriod = phaseTimeMetricsPeriod;
+    }
+
+    /**
+     * Creates the record filter from the filter parameters.
+     * @return the record filter or null, if no filter parameter is specified.
+     */
+    private RecordFilter createRecordFilter() {
+        if (filterKeys == null && filterKeyPrefix == null && filterHeaders == null
+                && filterMinTimestamp == null && filterMaxTimestamp == null && filterPartitions == null) {
+            return null;
+        }
+        RecordFilter filter = new RecordFilter();
+        if (filterKeys != null) filter.setKeys(filterKeys);
+        if (filterKeyPrefix != null) filter.setKeyPrefix(filterKeyPrefix);
+        if (filterHeaders != null) {
+            Map<String, String> headers = new HashMap<>();
+            for (String header: filterHeaders) {
+                final int idx = header.indexOf('=');
+                if (idx < 0) headers.put(header.trim(), null);
+                else headers.put(header.substring(0, idx).trim(), header.substring(idx +1));
+            }
+            filter.setHeaders(headers);
+        }
+        if (filterMinTimestamp != null) filter.setMinTimestamp(filterMinTimestamp);
+        if (filterMaxTimestamp != null) filter.setMaxTimestamp(filterMaxTimestamp);
+        if (filterPartitions != null) filter.setPartitions(filterPartitions);
+        return filter;
+    }
+
     @ContextCheck(compile = false, runtime = true)
     public static void checkParams(OperatorContextChecker checker) {
         StreamSchema streamSchema = checker.getOperatorContext().getStreamingOutputs().get(0).getStreamSchema();
@@ -307,13 +704,15 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
 
         // set invalid context if message attribute name does not exist
         Attribute messageAttr = streamSchema.getAttribute(messageAttrName);
+        boolean batchMode = false;
         if (messageAttr == null) {
             checker.setInvalidContext(Messages.getString("OUTPUT_MESSAGE_ATTRIBUTE_MISSING"), new Object[0]); //$NON-NLS-1$
         } else {
             // validate the attribute type
-            checker.checkAttributeType(messageAttr, SUPPORTED_ATTR_TYPES);
+            batchMode = isListType(messageAttr.getType());
+            checkOutputAttributeType(checker, messageAttr, batchMode, SUPPORTED_ATTR_TYPES);
         }
-        
+
         // check that user-specified key attr name exists
         Attribute keyAttr;
         if (paramNames.contains(OUTPUT_KEY_ATTRIBUTE_NAME_PARAM)) {
@@ -327,21 +726,91 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         }
 
         // validate the attribute type
-        if (keyAttr != null)
-            checker.checkAttributeType(keyAttr, SUPPORTED_ATTR_TYPES);
+        if (keyAttr != null) {
+            checkOutputAttributeType(checker, keyAttr, batchMode, SUPPORTED_ATTR_TYPES);
+            // the key filters compare UTF-8 encoded strings with the serialized key, which does not work for numeric keys
+            checkKeyFilterAttributeType(checker, keyAttr, batchMode, FILTER_KEYS_PARAM);
+            checkKeyFilterAttributeType(checker, keyAttr, batchMode, FILTER_KEY_PREFIX_PARAM);
+        }
 
         // check that the user-specified topic attr name exists
         checkUserSpecifiedAttributeNameExists(checker, OUTPUT_TOPIC_ATTRIBUTE_NAME_PARAM);
-        
+
         // check that the user-specified timestamp attr name exists
         checkUserSpecifiedAttributeNameExists(checker, OUTPUT_TIMESTAMP_ATTRIBUTE_NAME_PARAM);
-        
+
         // check that the user-specified offset attr name exists
         checkUserSpecifiedAttributeNameExists(checker, OUTPUT_OFFSET_ATTRIBUTE_NAME_PARAM);
-        
+
         // check that the user-specified partition attr name exists
         checkUserSpecifiedAttributeNameExists(checker, OUTPUT_PARTITION_ATTRIBUTE_NAME_PARAM);
-                
+
+        if (batchMode) {
+            // in batch mode all other output attributes must be lists
+            checkBatchAttributeType(checker, OUTPUT_TOPIC_ATTRIBUTE_NAME_PARAM, DEFAULT_OUTPUT_TOPIC_ATTR_NAME, MetaType.RSTRING);
+            checkBatchAttributeType(checker, OUTPUT_TIMESTAMP_ATTRIBUTE_NAME_PARAM, DEFAULT_OUTPUT_TIMESTAMP_ATTR_NAME, MetaType.INT64, MetaType.UINT64);
+            checkBatchAttributeType(checker, OUTPUT_OFFSET_ATTRIBUTE_NAME_PARAM, DEFAULT_OUTPUT_OFFSET_ATTR_NAME, MetaType.INT64, MetaType.UINT64);
+            checkBatchAttributeType(checker, OUTPUT_PARTITION_ATTRIBUTE_NAME_PARAM, DEFAULT_OUTPUT_PARTITION_ATTR_NAME, MetaType.INT32, MetaType.UINT32);
+        }
+        if (paramNames.contains(BATCH_SIZE_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(BATCH_SIZE_PARAM).get(0);
+            if (Integer.valueOf(value) <= 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GT", BATCH_SIZE_PARAM, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(BATCH_TIMEOUT_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(BATCH_TIMEOUT_PARAM).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", BATCH_TIMEOUT_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+
+
+        if (paramNames.contains(DEDUPLICATION_WINDOW_SIZE_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(DEDUPLICATION_WINDOW_SIZE_PARAM).get(0);
+            if (Integer.valueOf(value) < 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", DEDUPLICATION_WINDOW_SIZE_PARAM, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM).get(0);
+            if (Double.valueOf(value) <= 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GT", DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            } else if (Double.valueOf(value) >= 1.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_LT", DEDUPLICATION_FALSE_POSITIVE_RATE_PARAM, value, "1.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(LATENCY_SAMPLE_INTERVAL_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(LATENCY_SAMPLE_INTERVAL_PARAM).get(0);
+            if (Integer.valueOf(value) < 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", LATENCY_SAMPLE_INTERVAL_PARAM, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(LATENCY_METRICS_PERIOD_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(LATENCY_METRICS_PERIOD_PARAM).get(0);
+            if (Double.valueOf(value) <= 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GT", LATENCY_METRICS_PERIOD_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(PARTITION_METRICS_PERIOD_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(PARTITION_METRICS_PERIOD_PARAM).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", PARTITION_METRICS_PERIOD_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(PHASE_TIME_METRICS_PERIOD_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(PHASE_TIME_METRICS_PERIOD_PARAM).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", PHASE_TIME_METRICS_PERIOD_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+
+        if (paramNames.contains(TABLE_NAME_PARAM)) {
+            if (!paramNames.contains(START_POSITION_PARAM)
+                    || !checker.getOperatorContext().getParameterValues(START_POSITION_PARAM).get(0).equals(StartPosition.Beginning.name())) {
+                checker.setInvalidContext(Messages.getString("TABLE_MODE_REQUIRES_START_POSITION_BEGINNING", TABLE_NAME_PARAM), new Object[0]); //$NON-NLS-1$
+            }
+        }
 
         if(paramNames.contains(START_POSITION_PARAM)) {
         	String startPositionValue = checker.getOperatorContext().getParameterValues(START_POSITION_PARAM).get(0);
@@ -386,7 +855,55 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
             }
         }
     }
-    
+
+    /*
+     * Checks that the key attribute, or its element type in batch mode, is rstring or blob when the key filter parameter is present.
+     */
+    private static void checkKeyFilterAttributeType(OperatorContextChecker checker, Attribute keyAttr, boolean batchMode, String paramName) {
+        if (!checker.getOperatorContext().getParameterNames().contains(paramName)) {
+            return;
+        }
+        Type keyType = keyAttr.getType();
+        if (batchMode && isListType(keyType)) {
+            keyType = ((CollectionType) keyType).getElementType();
+        }
+        if (keyType.getMetaType() != MetaType.RSTRING && keyType.getMetaType() != MetaType.BLOB) {
+            checker.setInvalidContext(Messages.getString("KEY_FILTER_REQUIRES_STRING_KEY", paramName, keyAttr.getName(), keyType.getLanguageType()), new Object[0]); //$NON-NLS-1$
+        }
+    }
+
+    private static boolean isListType(Type type) {
+        return type.getMetaType() == MetaType.LIST || type.getMetaType() == MetaType.BLIST;
+    }
+
+    /*
+     * Checks the type of an output attribute. In batch mode the attribute must be a list
+     * and the element type is checked, otherwise the attribute type is checked.
+     */
+    private static void checkOutputAttributeType(OperatorContextChecker checker, Attribute attr, boolean batchMode, MetaType... types) {
+        if (!batchMode) {
+            checker.checkAttributeType(attr, types);
+            return;
+        }
+        if (!isListType(attr.getType())) {
+            checker.setInvalidContext(Messages.getString("OUTPUT_ATTRIBUTE_NOT_A_LIST", attr.getName()), new Object[0]); //$NON-NLS-1$
+            return;
+        }
+        Type elementType = ((CollectionType) attr.getType()).getElementType();
+        if (!Arrays.asList(types).contains(elementType.getMetaType())) {
+            checker.setInvalidContext(Messages.getString("UNSUPPORTED_LIST_ELEMENT_TYPE", attr.getName(), elementType.getLanguageType()), new Object[0]); //$NON-NLS-1$
+        }
+    }
+
+    private static void checkBatchAttributeType(OperatorContextChecker checker, String paramName, String defaultAttrName, MetaType... types) {
+        StreamSchema streamSchema = checker.getOperatorContext().getStreamingOutputs().get(0).getStreamSchema();
+        String attrName = checker.getOperatorContext().getParameterNames().contains(paramName) ?
+                checker.getOperatorContext().getParameterValues(paramName).get(0) : defaultAttrName;
+        Attribute attr = streamSchema.getAttribute(attrName);
+        if (attr != null)
+            checkOutputAttributeType(checker, attr, true, types);
+    }
+
     @ContextCheck(compile = true)
     public static void checkTriggerCount(OperatorContextChecker checker) {
         ConsistentRegionContext crContext = checker.getOperatorContext()
@@ -433,6 +950,10 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     			System.err.println(Messages.getString("PARAMS_IGNORED_WITH_INPUT_PORT")); //$NON-NLS-1$
     		}
     		
+    		if (paramNames.contains(TABLE_NAME_PARAM)) {
+    			checker.setInvalidContext(Messages.getString("TABLE_MODE_WITH_INPUT_PORT", TABLE_NAME_PARAM), new Object[0]); //$NON-NLS-1$
+    		}
+    		
     		StreamingInput<Tuple> inputPort = inputPorts.get(0);
     		checker.checkAttributeType(inputPort.getStreamSchema().getAttribute(0), MetaType.RSTRING);
     	}
@@ -446,6 +967,19 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     	}
     }
     
+    /**
+     * Determines which of the optional output attributes are present in the output schema.
+     * This method is package-private for the benchmarks of the consumer hot path.
+     * @param outputSchema the schema of the output port
+     */
+    void setOutputAttributes(StreamSchema outputSchema) {
+        hasOutputKey = outputSchema.getAttribute(outputKeyAttrName) != null;
+        hasOutputTopic = outputSchema.getAttribute(outputTopicAttrName) != null;
+        hasOutputTimetamp = outputSchema.getAttribute(outputMessageTimestampAttrName) != null;
+        hasOutputPartition = outputSchema.getAttribute(outputPartitionAttrName) != null;
+        hasOutputOffset = outputSchema.getAttribute(outputOffsetAttrName) != null;
+    }
+
     @Override
     public synchronized void initialize(OperatorContext context) throws Exception {
         // Must call super.initialize(context) to correctly setup an operator.
@@ -456,16 +990,28 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         gson = new Gson();
 
         StreamSchema outputSchema = context.getStreamingOutputs().get(0).getStreamSchema();
-        hasOutputKey = outputSchema.getAttribute(outputKeyAttrName) != null;
-        hasOutputTopic = outputSchema.getAttribute(outputTopicAttrName) != null;
-        hasOutputTimetamp = outputSchema.getAttribute(outputMessageTimestampAttrName) != null;
-        hasOutputPartition = outputSchema.getAttribute(outputPartitionAttrName) != null;
-        hasOutputOffset = outputSchema.getAttribute(outputOffsetAttrName) != null;
+        setOutputAttributes(outputSchema);
         
         
-        Class<?> keyClass = hasOutputKey ? getAttributeType(context.getStreamingOutputs().get(0), outputKeyAttrName)
-                : String.class; // default to String.class for key type
-        Class<?> valueClass = getAttributeType(context.getStreamingOutputs().get(0), outputMessageAttrName);
+        Class<?> keyClass;
+        Class<?> valueClass;
+        Type messageAttrType = outputSchema.getAttribute(outputMessageAttrName).getType();
+        isBatchMode = messageAttrType.getMetaType() == MetaType.LIST || messageAttrType.getMetaType() == MetaType.BLIST;
+        if (isBatchMode) {
+            // the (de)serializers are determined by the element types of the lists
+            valueClass = ((CollectionType) messageAttrType).getElementType().getObjectType();
+            if (hasOutputKey) {
+                keyElementType = ((CollectionType) outputSchema.getAttribute(outputKeyAttrName).getType()).getElementType();
+                keyClass = keyElementType.getObjectType();
+            } else {
+                keyClass = String.class;
+            }
+            logger.info("Operator runs in batch mode with batchSize = " + batchSize + ", batchTimeout = " + batchTimeout); //$NON-NLS-1$ //$NON-NLS-2$
+        } else {
+            keyClass = hasOutputKey ? getAttributeType(context.getStreamingOutputs().get(0), outputKeyAttrName)
+                    : String.class; // default to String.class for key type
+            valueClass = getAttributeType(context.getStreamingOutputs().get(0), outputMessageAttrName);
+        }
         KafkaOperatorProperties kafkaProperties = getKafkaProperties();
 
         // set the group ID property if the groupId parameter is specified
@@ -477,6 +1023,12 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         			.setKeyClass(keyClass)
         			.setValueClass(valueClass)
         			.setOperatorContext(context)
+        			.setConflateByKey(conflateByKey)
+        			.setRecordFilter(createRecordFilter())
+        			.setLatencySampleInterval(latencySampleInterval)
+        			.setPartitionMetricsPeriodMs((long) (partitionMetricsPeriod * 1000.0))
+        			.setClientMetrics(getClientMetrics(DEFAULT_CLIENT_METRICS), getClientMetricsPeriodMs())
+        			.setPhaseTimeMetrics(phaseTimeMetricsPeriod > 0.0)
         			.build();
         
         // If an exception occurred during init, throw it!
@@ -501,6 +1053,44 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
                 }
             }	
         }
+
+        if (deduplicateReplays) {
+            duplicateFilter = new DuplicateFilter(deduplicationWindowSize, deduplicationFalsePositiveRate);
+            logger.info("De-duplication enabled with window size " + deduplicationWindowSize); //$NON-NLS-1$
+            if (deduplicationWindowSize > 0) {
+                // the estimation is read by the scheduler thread; the filter publishes its Bloom filters in volatile fields
+                deduplicationMetricsUpdater = context.getScheduledExecutorService().scheduleAtFixedRate(() -> {
+                    deduplicationFalsePositivePpm.setValue((long) (duplicateFilter.getFalsePositiveProbability() * 1000000.0));
+                }, 1l, 1l, TimeUnit.SECONDS);
+            }
+        }
+
+        if (tableName != null) {
+            table = KafkaTable.create(tableName);
+            bootstrapping = true;
+            final int nBootstrapPartitions = consumer.beginBootstrap();
+            logger.info("Operator runs in table mode with table '" + tableName + "'. Bootstrapping from " + nBootstrapPartitions + " partitions."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            tableMetricsUpdater = context.getScheduledExecutorService().scheduleAtFixedRate(() -> {
+                nTableEntries.setValue(table.size());
+                nTableLookups.setValue(table.getNumLookups());
+                nTableHits.setValue(table.getNumHits());
+            }, 1l, 1l, TimeUnit.SECONDS);
+        }
+
+        if (latencySampleInterval > 0) {
+            final long periodMs = (long) (latencyMetricsPeriod * 1000.0);
+            latencyMetricsUpdater = context.getScheduledExecutorService().scheduleAtFixedRate(this::updateLatencyMetrics,
+                    periodMs, periodMs, TimeUnit.MILLISECONDS);
+        }
+
+        if (phaseTimeMetricsPeriod > 0.0) {
+            processThreadTimes = new PhaseTimeMetrics(processThreadQueueWaitPercent, processThreadSubmitPercent);
+            final long periodMs = (long) (phaseTimeMetricsPeriod * 1000.0);
+            phaseTimeMetricsUpdater = context.getScheduledExecutorService().scheduleAtFixedRate(() -> {
+                consumer.updatePhaseTimeMetrics();
+                processThreadTimes.update();
+            }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        }
         
         crContext = context.getOptionalContext(ConsistentRegionContext.class);
         if (crContext != null && context.getPE().getRelaunchCount() > 0) {
@@ -538,6 +1128,8 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     private void produceTuples() throws Exception {
 
         int nTuplesForOpDrivenCR = 0;
+        final List<ConsumerRecord<?, ?>> batch = isBatchMode? new ArrayList<>(batchSize): null;
+        final long batchTimeoutMs = (long) (batchTimeout * 1000.0);
         if (crContext != null && resettingLatch != null) {
             logger.debug("Operator is in the middle of resetting. No tuples will be submitted until reset completes."); //$NON-NLS-1$
             try {
@@ -573,14 +1165,68 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
             try {
                 // Any exceptions except InterruptedException thrown here are propagated to the caller
                 //logger.trace("Polling for messages, timeout=" + consumerPollTimeout); //$NON-NLS-1$
+                if (isBatchMode) {
+                    batch.clear();
+                    final long waitStart = processThreadTimes != null? System.nanoTime(): 0l;
+                    final int nRecords = consumer.getNextRecords(batch, batchSize, batchTimeoutMs);
+                    if (processThreadTimes != null) processThreadTimes.add(QUEUE_WAIT_PHASE, System.nanoTime() - waitStart);
+                    // the bootstrap marker is queued after the last record of the bootstrap
+                    final boolean bootstrapComplete = nRecords > 0 && table != null && batch.remove(KafkaConsumerClient.BOOTSTRAP_COMPLETE);
+                    if (!batch.isEmpty()) {
+                        if (table != null) {
+                            for (ConsumerRecord<?, ?> record: batch) updateTable(record);
+                        }
+                        final long submitStart = processThreadTimes != null? System.nanoTime(): 0l;
+                        submitBatch(batch);
+                        if (processThreadTimes != null) processThreadTimes.add(SUBMIT_PHASE, System.nanoTime() - submitStart);
+
+                        if (crContext != null) {
+                            // save offset for *next* record for every {topic, partition} of the batch.
+                            // The records of a partition are ordered, so that the last one has the highest offset.
+                            Map<TopicPartition, Long> nextOffsets = new HashMap<>();
+                            for (ConsumerRecord<?, ?> record: batch) {
+                                nextOffsets.put(new TopicPartition(record.topic(), record.partition()), record.offset()+1l);
+                            }
+                            for (Map.Entry<TopicPartition, Long> entry: nextOffsets.entrySet()) {
+                                consumer.getOffsetManager().savePosition(entry.getKey().topic(), entry.getKey().partition(), entry.getValue());
+                            }
+                            if (crContext.isTriggerOperator() && ++nTuplesForOpDrivenCR >= triggerCount) {
+                                logger.debug("Making region consistent..."); //$NON-NLS-1$
+                                // makeConsistent blocks until all operators in the CR have drained and checkpointed
+                                boolean isSuccess = crContext.makeConsistent();
+                                nTuplesForOpDrivenCR = 0;
+                                logger.debug("Completed call to makeConsistent: isSuccess=" + isSuccess); //$NON-NLS-1$
+                            }
+                        }
+                    }
+                    if (bootstrapComplete && bootstrapping) {
+                        completeBootstrap();
+                    }
+                    continue;
+                }
+                final long waitStart = processThreadTimes != null? System.nanoTime(): 0l;
                 ConsumerRecord<?, ?> record = consumer.getNextRecord();
+                if (processThreadTimes != null) processThreadTimes.add(QUEUE_WAIT_PHASE, System.nanoTime() - waitStart);
+                if (record == KafkaConsumerClient.BOOTSTRAP_COMPLETE) {
+                    if (bootstrapping) completeBootstrap();
+                    continue;
+                }
+                if (record != null && table != null) {
+                    updateTable(record);
+                }
                 if(record != null) {
-                	submitRecord(record);
+                    // an offset marker replaces filtered records; it is not submitted, but advances the offset
+                    final boolean isOffsetMarker = record instanceof RecordFilter.OffsetMarker;
+                    if (!isOffsetMarker && !isDuplicate(record)) {
+                        final long submitStart = processThreadTimes != null? System.nanoTime(): 0l;
+                        submitRecord(record);
+                        if (processThreadTimes != null) processThreadTimes.add(SUBMIT_PHASE, System.nanoTime() - submitStart);
+                    }
 
                     if (crContext != null) {
                         // save offset for *next* record for {topic, partition} 
                         consumer.getOffsetManager().savePosition(record.topic(), record.partition(), record.offset()+1l);
-                        if (crContext.isTriggerOperator() && ++nTuplesForOpDrivenCR >= triggerCount) {
+                        if (!isOffsetMarker && crContext.isTriggerOperator() && ++nTuplesForOpDrivenCR >= triggerCount) {
                             logger.debug("Making region consistent..."); //$NON-NLS-1$
                             // makeConsistent blocks until all operators in the CR have drained and checkpointed
                             boolean isSuccess = crContext.makeConsistent();
@@ -610,12 +1256,65 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         }
     }
 
+    /**
+     * Tests whether a record has already been submitted, when de-duplication is enabled.
+     * @param record the record
+     * @return true, if the record must not be submitted again
+     */
+    private boolean isDuplicate(ConsumerRecord<?, ?> record) {
+        if (duplicateFilter == null || !duplicateFilter.isDuplicate(record)) {
+            return false;
+        }
+        nDuplicateMessages.increment();
+        return true;
+    }
+
+    /**
+     * Tests whether a record is a tombstone, which deletes the key in a compacted topic.
+     * The value of a tombstone is null. Malformed values are also null after deserialization, but the serialized size of their value is not negative.
+     * @param record the record
+     * @return true, if the record is a tombstone
+     */
+    private static boolean isTombstone(ConsumerRecord<?, ?> record) {
+        return record.value() == null && record.serializedValueSize() < 0;
+    }
+
+    /**
+     * Applies a record to the table in table mode.
+     * @param record the record
+     */
+    private void updateTable(ConsumerRecord<?, ?> record) throws Exception {
+        if (!(record instanceof RecordFilter.OffsetMarker) && record.key() != null) {
+            if (isTombstone(record)) {
+                table.put(record.key(), null);
+            } else if (record.value() != null) {
+                table.put(record.key(), record.value());
+            }
+        }
+    }
+
+    /**
+     * Marks the table as complete and submits a window punctuation.
+     * This method is invoked when the bootstrap marker of the consumer client is received.
+     * A marker that is queued again after a reset of the consumer client is ignored.
+     */
+    private void completeBootstrap() throws Exception {
+        bootstrapping = false;
+        table.setBootstrapComplete();
+        logger.info("Bootstrap of table '" + tableName + "' complete with " + table.size() + " entries."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        getOutput(0).punctuate(Punctuation.WINDOW_MARKER);
+    }
+
     private void submitRecord(ConsumerRecord<?, ?> record) throws Exception {
         if (logger.isTraceEnabled())
     	     logger.trace("Preparing to submit record: " + record.topic() + "-" + record.partition() + "[" + record.offset() + "]"); //$NON-NLS-1$
         // issue #65 (https://github.com/IBMStreams/streamsx.kafka/issues/65):
         // in case of deserialization errors we return 'null', otherwise a vaild object.
         // In these cases we drop the record and increment the metric 'nMalformedMessages'.
+        if (table != null && isTombstone(record)) {
+            // tombstones only delete the key from the table
+            return;
+        }
         if (record.value() == null) {
             logger.warn("dropping message with malformed value from topic = "
                     + record.topic() + ", partition = " + record.partition() + ", offset = " + record.offset());
@@ -624,6 +1323,53 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         }
         final StreamingOutput<OutputTuple> out = getOutput(0);
         OutputTuple tuple = out.newTuple();
+        populateTuple(tuple, record);
+        out.submit(tuple);
+        if (record instanceof SampledRecord) {
+            recordLatencies((SampledRecord<?, ?>) record);
+        }
+    }
+
+    /**
+     * Records the latencies of a sampled record after its submission.
+     * Records without timestamp are not included in the record age.
+     * @param record the sampled record
+     */
+    private void recordLatencies(SampledRecord<?, ?> record) {
+        if (record.timestamp() >= 0l) {
+            recordAgeHistogram.record(System.currentTimeMillis() - record.timestamp());
+        }
+        fetchToSubmitHistogram.record((System.nanoTime() - record.getFetchTimeNanos()) / 1000l);
+    }
+
+    /**
+     * Publishes the percentiles of the latencies recorded since the last update in the metrics.
+     */
+    private void updateLatencyMetrics() {
+        final LatencyHistogram.Snapshot recordAge = recordAgeHistogram.snapshotAndReset();
+        if (recordAge.getTotalCount() > 0l) {
+            recordAgeP50Ms.setValue(recordAge.getValueAtPercentile(50.0));
+            recordAgeP90Ms.setValue(recordAge.getValueAtPercentile(90.0));
+            recordAgeP99Ms.setValue(recordAge.getValueAtPercentile(99.0));
+            recordAgeMaxMs.setValue(recordAge.getMax());
+        }
+        final LatencyHistogram.Snapshot fetchToSubmit = fetchToSubmitHistogram.snapshotAndReset();
+        if (fetchToSubmit.getTotalCount() > 0l) {
+            fetchToSubmitP50Us.setValue(fetchToSubmit.getValueAtPercentile(50.0));
+            fetchToSubmitP90Us.setValue(fetchToSubmit.getValueAtPercentile(90.0));
+            fetchToSubmitP99Us.setValue(fetchToSubmit.getValueAtPercentile(99.0));
+            fetchToSubmitMaxUs.setValue(fetchToSubmit.getMax());
+        }
+    }
+
+    /**
+     * Sets the output attributes of a tuple from a record.
+     * This method is package-private for the benchmarks of the consumer hot path.
+     * @param tuple  the output tuple
+     * @param record the record
+     * @throws Exception the type of key or value is not supported
+     */
+    void populateTuple(OutputTuple tuple, ConsumerRecord<?, ?> record) throws Exception {
         setTuple(tuple, outputMessageAttrName, record.value());
 
         if (hasOutputKey) {
@@ -659,7 +1405,85 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
         if(hasOutputTimetamp) {
         	tuple.setLong(outputMessageTimestampAttrName, record.timestamp());
         }            
+    }
+
+    /**
+     * Submits a batch of records as a single tuple with list attributes.
+     * Records with malformed value are dropped, so that the index of the elements
+     * in all lists always refers to the same record.
+     * @param records the records
+     * @throws Exception
+     */
+    private void submitBatch(List<ConsumerRecord<?, ?>> records) throws Exception {
+        final int n = records.size();
+        List<Object> messages = new ArrayList<>(n);
+        List<Object> keys = hasOutputKey? new ArrayList<>(n): null;
+        List<RString> topics = hasOutputTopic? new ArrayList<>(n): null;
+        List<Long> offsets = hasOutputOffset? new ArrayList<>(n): null;
+        List<Integer> partitions = hasOutputPartition? new ArrayList<>(n): null;
+        List<Long> timestamps = hasOutputTimetamp? new ArrayList<>(n): null;
+        List<SampledRecord<?, ?>> sampledRecords = null;
+
+        for (ConsumerRecord<?, ?> record: records) {
+            if (record instanceof RecordFilter.OffsetMarker || isDuplicate(record)) {
+                continue;
+            }
+            if (table != null && isTombstone(record)) {
+                continue;
+            }
+            // issue #65: drop records with malformed value
+            if (record.value() == null) {
+                logger.warn("dropping message with malformed value from topic = "
+                        + record.topic() + ", partition = " + record.partition() + ", offset = " + record.offset());
+                nMalformedMessages.increment();
+                continue;
+            }
+            messages.add(toListElement(record.value(), outputMessageAttrName));
+            if (hasOutputKey) {
+                // unkeyed messages get the default value of the key type, like in non-batch mode
+                keys.add(record.key() == null? keyElementType.getDefaultValue(): toListElement(record.key(), outputKeyAttrName));
+            }
+            if (hasOutputTopic) topics.add(new RString(record.topic()));
+            if (hasOutputOffset) offsets.add(record.offset());
+            if (hasOutputPartition) partitions.add(record.partition());
+            if (hasOutputTimetamp) timestamps.add(record.timestamp());
+            if (record instanceof SampledRecord) {
+                if (sampledRecords == null) sampledRecords = new ArrayList<>();
+                sampledRecords.add((SampledRecord<?, ?>) record);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (logger.isTraceEnabled())
+            logger.trace("Preparing to submit batch of " + messages.size() + " records"); //$NON-NLS-1$
+        final StreamingOutput<OutputTuple> out = getOutput(0);
+        OutputTuple tuple = out.newTuple();
+        tuple.setList(outputMessageAttrName, messages);
+        if (hasOutputKey) tuple.setList(outputKeyAttrName, keys);
+        if (hasOutputTopic) tuple.setList(outputTopicAttrName, topics);
+        if (hasOutputOffset) tuple.setList(outputOffsetAttrName, offsets);
+        if (hasOutputPartition) tuple.setList(outputPartitionAttrName, partitions);
+        if (hasOutputTimetamp) tuple.setList(outputMessageTimestampAttrName, timestamps);
         out.submit(tuple);
+        if (sampledRecords != null) {
+            for (SampledRecord<?, ?> record: sampledRecords) recordLatencies(record);
+        }
+    }
+
+    /*
+     * converts a deserialized key or value into the object type of SPL list elements
+     */
+    private Object toListElement(Object value, String attrName) throws Exception {
+        if (value instanceof String)
+            return new RString((String) value);
+        else if (value instanceof byte[])
+            return ValueFactory.newBlob((byte[]) value);
+        else if (value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Byte)
+            return value;
+        else
+            throw new Exception(Messages.getString("UNSUPPORTED_TYPE_EXCEPTION", (value.getClass().getTypeName()), attrName)); //$NON-NLS-1$
     }
 
     private void setTuple(OutputTuple tuple, String attrName, Object attrValue) throws Exception {
@@ -753,6 +1577,19 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     public synchronized void shutdown() throws Exception {
         shutdown.set(true);
         consumer.sendShutdownEvent(SHUTDOWN_TIMEOUT, SHUTDOWN_TIMEOUT_TIMEUNIT);
+        if (table != null) {
+            tableMetricsUpdater.cancel(false);
+            table.unregister();
+        }
+        if (latencyMetricsUpdater != null) {
+            latencyMetricsUpdater.cancel(false);
+        }
+        if (phaseTimeMetricsUpdater != null) {
+            phaseTimeMetricsUpdater.cancel(false);
+        }
+        if (deduplicationMetricsUpdater != null) {
+            deduplicationMetricsUpdater.cancel(false);
+        }
 //        if (processThread != null && processThread.isAlive()) {
 //            processThread.interrupt();
 //        }
@@ -788,6 +1625,10 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     public void reset(Checkpoint checkpoint) throws Exception {
         logger.debug(">>> RESET (ckpt id=" + checkpoint.getSequenceId() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         consumer.sendResetEvent(checkpoint); // blocks until reset completes
+        if (duplicateFilter != null) {
+            // the region replays the messages after the checkpoint
+            duplicateFilter.reset(consumer.getOffsetManager());
+        }
         consumer.sendStartPollingEvent(consumerPollTimeout); // done resetting,start polling for records
 
         // latch will be null if the reset was caused
@@ -800,6 +1641,9 @@ public abstract class AbstractKafkaConsumerOperator extends AbstractKafkaOperato
     public void resetToInitialState() throws Exception {
         logger.debug(">>> RESET TO INIT..."); //$NON-NLS-1$
         consumer.sendResetToInitEvent(); // blocks until resetToInit completes
+        if (duplicateFilter != null) {
+            duplicateFilter.reset(consumer.getOffsetManager());
+        }
         consumer.sendStartPollingEvent(consumerPollTimeout); // done resettings, start polling for records
 
         // latch will be null if the reset was caused
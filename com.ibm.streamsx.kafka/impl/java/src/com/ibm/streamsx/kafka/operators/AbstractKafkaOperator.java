@@ -16,8 +16,10 @@ import org.apache.log4j.Logger;
 import com.google.common.io.Files;
 import com.ibm.streams.operator.AbstractOperator;
 import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.OperatorContext.ContextCheck;
 import com.ibm.streams.operator.StreamingData;
 import com.ibm.streams.operator.Type.MetaType;
+import com.ibm.streams.operator.compile.OperatorContextChecker;
 import com.ibm.streams.operator.model.Libraries;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.state.ConsistentRegionContext;
@@ -35,6 +37,9 @@ public abstract class AbstractKafkaOperator extends AbstractOperator implements
     private static final Logger logger = Logger.getLogger(AbstractKafkaOperator.class);
 
     private static final String DEFAULT_USER_LIB_DIR = "/etc/libs/*"; //$NON-NLS-1$
+    private static final String CLIENT_METRICS_PARAM = "clientMetrics"; //$NON-NLS-1$
+    private static final String CLIENT_METRICS_PERIOD_PARAM = "clientMetricsPeriod"; //$NON-NLS-1$
+    private static final double DEFAULT_CLIENT_METRICS_PERIOD = 10.0;
     protected static final MetaType[] SUPPORTED_ATTR_TYPES = { 
     		MetaType.RSTRING, MetaType.INT32, 
     		MetaType.INT64, MetaType.UINT32, MetaType.UINT64,
@@ -45,6 +50,8 @@ public abstract class AbstractKafkaOperator extends AbstractOperator implements
     protected String appConfigName;
     protected String[] userLib;
     protected String clientId = null;
+    private List<String> clientMetrics = null;
+    private double clientMetricsPeriod = DEFAULT_CLIENT_METRICS_PERIOD;
 
     protected Class<?> messageType;
     protected Class<?> keyType;
@@ -89,6 +96,52 @@ public abstract class AbstractKafkaOperator extends AbstractOperator implements
         this.clientId = clientId;
     }
 
+    @Parameter(optional = true, name=CLIENT_METRICS_PARAM,
+            description="Specifies the metrics of the Kafka client, which are copied into custom metrics of the operator, "
+                    + "for example `fetch-latency-avg` or `record-queue-time-max`. The custom metrics have the same names as the "
+                    + "Kafka metrics. The values are rounded to integers. A factor can be appended to a name for metrics with small values, "
+                    + "for example `compression-rate-avg*1000`. When the Kafka client has a metric for the whole client and metrics per "
+                    + "topic or broker with the same name, the metric for the whole client is copied. The default metrics are given "
+                    + "in the operator description.")
+    public void setClientMetrics(List<String> clientMetrics) {
+        this.clientMetrics = clientMetrics;
+    }
+
+    @Parameter(optional = true, name=CLIENT_METRICS_PERIOD_PARAM,
+            description="Specifies the period in seconds, in which the metrics of the Kafka client given by the **" + CLIENT_METRICS_PARAM + "** "
+                    + "parameter are copied into the custom metrics. The value `0.0` disables the copying. The value must not be negative. "
+                    + "The default value is `" + DEFAULT_CLIENT_METRICS_PERIOD + "`.")
+    public void setClientMetricsPeriod(double clientMetricsPeriod) {
+        this.clientMetricsPeriod = clientMetricsPeriod;
+    }
+
+    @ContextCheck(compile = false, runtime = true)
+    public static void checkClientMetricsPeriod(OperatorContextChecker checker) {
+        if (checker.getOperatorContext().getParameterNames().contains(CLIENT_METRICS_PERIOD_PARAM)) {
+            String value = checker.getOperatorContext().getParameterValues(CLIENT_METRICS_PERIOD_PARAM).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", CLIENT_METRICS_PERIOD_PARAM, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * Gets the metrics of the Kafka client, which are copied into custom metrics.
+     * @param defaultClientMetrics the metrics used when the {@value #CLIENT_METRICS_PARAM} parameter is not specified
+     * @return the names of the Kafka metrics
+     */
+    protected List<String> getClientMetrics(List<String> defaultClientMetrics) {
+        return clientMetrics != null? clientMetrics: defaultClientMetrics;
+    }
+
+    /**
+     * Gets the period, in which the metrics of the Kafka client are copied.
+     * @return the period in milliseconds; 0 when the metrics are not copied
+     */
+    protected long getClientMetricsPeriodMs() {
+        return (long) (clientMetricsPeriod * 1000.0);
+    }
+
     @Override
     public synchronized void initialize(OperatorContext context) throws Exception {
         super.initialize(context);
@@ -1,23 +1,37 @@
 package com.ibm.streamsx.kafka.operators;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.log4j.Logger;
 
 import com.ibm.streams.operator.Attribute;
 import com.ibm.streams.operator.OperatorContext;
 import com.ibm.streams.operator.OperatorContext.ContextCheck;
+import com.ibm.streams.operator.OutputTuple;
 import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.StreamingData.Punctuation;
 import com.ibm.streams.operator.StreamingInput;
+import com.ibm.streams.operator.StreamingOutput;
 import com.ibm.streams.operator.Tuple;
 import com.ibm.streams.operator.TupleAttribute;
+import com.ibm.streams.operator.Type;
 import com.ibm.streams.operator.Type.MetaType;
 import com.ibm.streams.operator.compile.OperatorContextChecker;
+import com.ibm.streams.operator.meta.CollectionType;
+import com.ibm.streams.operator.meta.TupleType;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.model.CustomMetric;
 import com.ibm.streams.operator.model.DefaultAttribute;
 import com.ibm.streams.operator.model.Parameter;
 import com.ibm.streams.operator.state.Checkpoint;
@@ -43,8 +57,36 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
     protected static final String PARTITIONATTR_PARAM_NAME = "partitionAttribute"; //$NON-NLS-1$
     protected static final String TIMESTAMPATTR_PARAM_NAME = "timestampAttribute"; //$NON-NLS-1$
     protected static final String CONSISTENT_REGION_POLICY_PARAM_NAME = "consistentRegionPolicy";
+    protected static final String MAX_RECORD_RETRIES_PARAM_NAME = "maxRecordRetries"; //$NON-NLS-1$
+    protected static final String RECORD_RETRY_BACKOFF_PARAM_NAME = "recordRetryBackoff"; //$NON-NLS-1$
+    protected static final String FLUSH_ON_PUNCTUATION_PARAM_NAME = "flushOnPunctuation"; //$NON-NLS-1$
+    protected static final String FLUSH_ATTR_PARAM_NAME = "flushAttribute"; //$NON-NLS-1$
+    protected static final String PIPELINED_COMMITS_PARAM_NAME = "pipelinedCommits"; //$NON-NLS-1$
+    protected static final String CONFLATION_WINDOW_PARAM_NAME = "conflationWindow"; //$NON-NLS-1$
+    protected static final String CONFLATION_MAX_SIZE_PARAM_NAME = "conflationMaxSize"; //$NON-NLS-1$
+    protected static final int DEFAULT_CONFLATION_MAX_SIZE = 10000;
+    // number of queued output tuples, at which the operator stops sending messages
+    private static final int REPORT_QUEUE_CAPACITY = 10000;
+    private static final long REPORT_SUBMITTER_STOP_TIMEOUT_MS = 5000l;
+    protected static final String LATENCY_SAMPLE_INTERVAL_PARAM_NAME = "latencySampleInterval"; //$NON-NLS-1$
+    protected static final String LATENCY_METRICS_PERIOD_PARAM_NAME = "latencyMetricsPeriod"; //$NON-NLS-1$
+    protected static final String PER_TOPIC_METRICS_PARAM_NAME = "perTopicMetrics"; //$NON-NLS-1$
+    protected static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 100;
+    protected static final double DEFAULT_LATENCY_METRICS_PERIOD = 10.0;
+
+    protected static final String ERROR_PORT_TOPIC_ATTR_NAME = "topic"; //$NON-NLS-1$
+    protected static final String ERROR_PORT_ERROR_CLASS_ATTR_NAME = "errorClass"; //$NON-NLS-1$
+    protected static final String ERROR_PORT_ERROR_MESSAGE_ATTR_NAME = "errorMessage"; //$NON-NLS-1$
+    protected static final String REPORT_PORT_TOPIC_ATTR_NAME = "topic"; //$NON-NLS-1$
+    protected static final String REPORT_PORT_PARTITION_ATTR_NAME = "partition"; //$NON-NLS-1$
+    protected static final String REPORT_PORT_OFFSET_ATTR_NAME = "offset"; //$NON-NLS-1$
+    protected static final String REPORT_PORT_TIMESTAMP_ATTR_NAME = "messageTimestamp"; //$NON-NLS-1$
     
     private static final Logger logger = Logger.getLogger(KafkaProducerOperator.class);
+    // metrics of the Kafka producer copied into custom metrics when the clientMetrics parameter is not specified
+    static final List<String> DEFAULT_CLIENT_METRICS = Arrays.asList("request-latency-avg", "request-latency-max", //$NON-NLS-1$ //$NON-NLS-2$
+            "batch-size-avg", "compression-rate-avg*1000", "buffer-available-bytes", "record-queue-time-avg", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            "record-queue-time-max"); //$NON-NLS-1$
 
     public static enum ConsistentRegionPolicy {
         AtLeastOnce,
@@ -57,15 +99,122 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
     protected TupleAttribute<Tuple, String> topicAttr;
     protected TupleAttribute<Tuple, Integer> partitionAttr;
     protected TupleAttribute<Tuple, Long> timestampAttr;
+    protected TupleAttribute<Tuple, Boolean> flushAttr;
     protected List<String> topics;
 
-    private KafkaProducerClient producer;
+    // replaced on reset to initial state; used also by the conflation timer
+    private volatile KafkaProducerClient producer;
     private AtomicBoolean isResetting;
     private String keyAttributeName = null;
     private String partitionAttributeName = null;
     private String timestampAttributeName = null;
+    // true, when the message attribute is a list; every list element is sent as a separate message
+    private boolean isMessageList = false;
+    // true, when the message attribute is a list of tuples
+    private boolean isMessageTupleList = false;
+    // true, when the tuple type of the list elements contains a key attribute 
+    private boolean hasListElementKey = false;
     // AtLeastOnce as default in order to support also Kafka 0.10 out of the box in Consistent Region.
     private ConsistentRegionPolicy consistentRegionPolicy = ConsistentRegionPolicy.AtLeastOnce;
+    private int maxRecordRetries = 0;
+    private double recordRetryBackoff = 1.0;
+    private boolean flushOnPunctuation = false;
+    private boolean pipelinedCommits = false;
+    private double conflationWindow = 0.0;
+    private int conflationMaxSize = DEFAULT_CONFLATION_MAX_SIZE;
+    private int latencySampleInterval = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+    private double latencyMetricsPeriod = DEFAULT_LATENCY_METRICS_PERIOD;
+    private boolean perTopicMetrics = false;
+    // records with key waiting to be sent, by topic, partition, and key; null when conflation is disabled.
+    // Its monitor serializes all sends and flushes, because the conflation timer sends with another thread.
+    private LinkedHashMap<List<Object>, ConflatedRecord> conflationMap = null;
+    private ScheduledFuture<?> conflationTimer = null;
+    private StreamingOutput<OutputTuple> errorPort = null;
+    private StreamingOutput<OutputTuple> deliveryReportPort = null;
+    // submits the tuples of the error and delivery report ports; null when the operator has no output port
+    private AsyncTupleSubmitter reportSubmitter = null;
+
+    // metrics are updated by the producer client
+    private Metric nFailedMessages;
+    private Metric nRetriedMessages;
+    private Metric nDeadLetteredMessages;
+    private Metric nConflatedMessages;
+
+    /**
+     * A record that waits in the conflation window together with the tuple from which it has been created.
+     */
+    private static class ConflatedRecord {
+        @SuppressWarnings("rawtypes")
+        final ProducerRecord record;
+        final Tuple tuple;
+
+        @SuppressWarnings("rawtypes")
+        ConflatedRecord(ProducerRecord record, Tuple tuple) {
+            this.record = record;
+            this.tuple = tuple;
+        }
+    }
+
+    // Initialize the metrics
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of messages that finally failed to be sent.")
+    public void setnFailedMessages (Metric nFailedMessages) {
+        this.nFailedMessages = nFailedMessages;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of times a message has been re-sent after a failure.")
+    public void setnRetriedMessages (Metric nRetriedMessages) {
+        this.nRetriedMessages = nRetriedMessages;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of failed messages that have been submitted to the error output port.")
+    public void setnDeadLetteredMessages (Metric nDeadLetteredMessages) {
+        this.nDeadLetteredMessages = nDeadLetteredMessages;
+    }
+
+    @CustomMetric (kind = Metric.Kind.COUNTER, description = "Number of messages that have been replaced by a later message with the same key within the conflation window.")
+    public void setnConflatedMessages (Metric nConflatedMessages) {
+        this.nConflatedMessages = nConflatedMessages;
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "sendLatencyP50Us", description = "Median time in microseconds between send and acknowledgement of the sampled messages.")
+    public void setSendLatencyP50Us (Metric sendLatencyP50Us) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "sendLatencyP90Us", description = "90th percentile of the time in microseconds between send and acknowledgement of the sampled messages.")
+    public void setSendLatencyP90Us (Metric sendLatencyP90Us) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "sendLatencyP99Us", description = "99th percentile of the time in microseconds between send and acknowledgement of the sampled messages.")
+    public void setSendLatencyP99Us (Metric sendLatencyP99Us) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "sendLatencyMaxUs", description = "Maximum time in microseconds between send and acknowledgement of the sampled messages.")
+    public void setSendLatencyMaxUs (Metric sendLatencyMaxUs) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordsPerBatch", description = "Estimated average number of messages per batch sent to a partition.")
+    public void setRecordsPerBatch (Metric recordsPerBatch) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "bytesPerBatch", description = "Average number of bytes per batch sent to a partition.")
+    public void setBytesPerBatch (Metric bytesPerBatch) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "recordsPerRequest", description = "Average number of messages per produce request.")
+    public void setRecordsPerRequest (Metric recordsPerRequest) {
+        // updated by the producer client
+    }
+
+    @CustomMetric (kind = Metric.Kind.GAUGE, name = "bytesPerRequest", description = "Average number of bytes per request sent to the brokers.")
+    public void setBytesPerRequest (Metric bytesPerRequest) {
+        // updated by the producer client
+    }
     
     @Parameter(optional = true, name=CONSISTENT_REGION_POLICY_PARAM_NAME,
     		description="Specifies the policy to use when in a consistent region. If `AtLeastOnce` "
@@ -85,6 +234,115 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
 		this.consistentRegionPolicy = consistentRegionPolicy;
 	}
 
+    @Parameter(optional = true, name=PIPELINED_COMMITS_PARAM_NAME,
+            description="When set to `true` and the **" + CONSISTENT_REGION_POLICY_PARAM_NAME + "** parameter is `Transactional`, "
+                    + "the operator uses two Kafka producers with different transactional IDs. On checkpoint, "
+                    + "the transaction of one producer is committed in the background, and the operator continues to "
+                    + "write tuples within a new transaction of the other producer. The checkpoint does not wait for the "
+                    + "commit round trip to the transaction coordinator; the operator waits for the completion of the commit "
+                    + "on next drain.\\n"
+                    + "\\n"
+                    + "**Note:** The checkpoint is complete before its transaction is committed, so that the messages of "
+                    + "the checkpoint interval are not replayed after a failed commit. The operator therefore keeps the messages "
+                    + "of a transaction in memory until its commit is confirmed, which requires memory for the messages of up to "
+                    + "two checkpoint intervals, and writes them also into the checkpoint, which grows by the messages of one "
+                    + "checkpoint interval. When the commit fails, the messages are re-sent within the next transaction. "
+                    + "When the consistent region is reset to the checkpoint of the transaction, for example after the PE "
+                    + "failed while the transaction was being committed, the operator reads the control topic, and re-sends "
+                    + "the messages from the checkpoint when the transaction has not been committed. "
+                    + "This parameter is ignored when the operator is not part of a consistent region or when the "
+                    + "consistent region policy is `AtLeastOnce`. The default value is `false`.")
+    public void setPipelinedCommits(boolean pipelinedCommits) {
+        this.pipelinedCommits = pipelinedCommits;
+    }
+
+    @Parameter(optional = true, name=CONFLATION_WINDOW_PARAM_NAME,
+            description="Specifies the time in seconds for which messages with key are held back before they are sent. "
+                    + "Within this time, only the last message for a key, topic, and partition is kept, so that "
+                    + "earlier messages with the same key are never written. This is intended for compacted topics, "
+                    + "where only the latest value per key matters, and reduces the written data for frequently updated keys. "
+                    + "Messages without key are sent immediately. The held back messages are also sent when the number "
+                    + "of different keys reaches the **" + CONFLATION_MAX_SIZE_PARAM_NAME + "** parameter value, "
+                    + "when the operator flushes the producer, on drain of a consistent region, and on shutdown. "
+                    + "The default value is `0.0`, which disables conflation.")
+    public void setConflationWindow(double conflationWindow) {
+        this.conflationWindow = conflationWindow;
+    }
+
+    @Parameter(optional = true, name=CONFLATION_MAX_SIZE_PARAM_NAME,
+            description="Specifies the maximum number of different keys for which messages are held back "
+                    + "within the conflation window. This parameter is ignored when the **" + CONFLATION_WINDOW_PARAM_NAME 
+                    + "** parameter is not specified. The default value is `" + DEFAULT_CONFLATION_MAX_SIZE + "`.")
+    public void setConflationMaxSize(int conflationMaxSize) {
+        this.conflationMaxSize = conflationMaxSize;
+    }
+
+    @Parameter(optional = true, name=LATENCY_SAMPLE_INTERVAL_PARAM_NAME,
+            description="Specifies, that the time between send and acknowledgement is measured for every n-th message. "
+                    + "The percentiles of the time are published in the **sendLatency*** metrics. A higher value reduces the "
+                    + "overhead at high message rates. The value `0` disables the send latency and batching metrics. "
+                    + "The default value is `" + DEFAULT_LATENCY_SAMPLE_INTERVAL + "`.")
+    public void setLatencySampleInterval(int latencySampleInterval) {
+        this.latencySampleInterval = latencySampleInterval;
+    }
+
+    @Parameter(optional = true, name=LATENCY_METRICS_PERIOD_PARAM_NAME,
+            description="Specifies the period in seconds, in which the send latency and batching metrics are updated. "
+                    + "The latencies are calculated from the messages sampled within the last period. When no message has been "
+                    + "sampled within a period, the latency metrics keep their values. The value must be greater than 0.0. "
+                    + "The default value is `" + DEFAULT_LATENCY_METRICS_PERIOD + "`.")
+    public void setLatencyMetricsPeriod(double latencyMetricsPeriod) {
+        this.latencyMetricsPeriod = latencyMetricsPeriod;
+    }
+
+    @Parameter(optional = true, name=PER_TOPIC_METRICS_PARAM_NAME,
+            description="When set to `true`, the operator creates metrics for every topic, to which messages are sent, "
+                    + "when the first sampled message of the topic is acknowledged. The metrics are **sendLatencyP50Us[topic]**, "
+                    + "**sendLatencyP99Us[topic]**, **sendLatencyMaxUs[topic]**, **messagesPerSec[topic]**, and **bytesPerSec[topic]**. "
+                    + "This parameter is ignored when the **" + LATENCY_SAMPLE_INTERVAL_PARAM_NAME + "** parameter is `0`. "
+                    + "The default value is `false`.")
+    public void setPerTopicMetrics(boolean perTopicMetrics) {
+        this.perTopicMetrics = perTopicMetrics;
+    }
+
+    @Parameter(optional = true, name=MAX_RECORD_RETRIES_PARAM_NAME,
+            description="Specifies how often the operator re-sends a single message after the Kafka producer "
+                    + "reported a retriable error for it, for example a timeout, which occurs when the producer "
+                    + "has exhausted its own retries configured with the `retries` producer property. "
+                    + "Messages are not re-sent when the operator uses a transactional producer within a "
+                    + "consistent region. The default value is `0`, so that messages are not re-sent by the operator.")
+    public void setMaxRecordRetries(int maxRecordRetries) {
+        this.maxRecordRetries = maxRecordRetries;
+    }
+
+    @Parameter(optional = true, name=RECORD_RETRY_BACKOFF_PARAM_NAME,
+            description="Specifies the time in seconds the operator waits before it re-sends a failed message "
+                    + "the first time. The time doubles with every further re-send of the same message. "
+                    + "This parameter is ignored when the **" + MAX_RECORD_RETRIES_PARAM_NAME + "** parameter is not specified. "
+                    + "The default value is `1.0`.")
+    public void setRecordRetryBackoff(double recordRetryBackoff) {
+        this.recordRetryBackoff = recordRetryBackoff;
+    }
+
+    @Parameter(optional = true, name=FLUSH_ON_PUNCTUATION_PARAM_NAME,
+            description="When set to `true`, the operator flushes the Kafka producer when it receives a window punctuation. "
+                    + "A flush makes all buffered messages immediately available to send, regardless of the `linger.ms` "
+                    + "producer property, and blocks until the messages are acknowledged. "
+                    + "This allows to bound the latency for the last messages of a batch of tuples when `linger.ms` is set to "
+                    + "a high value for throughput. The default value is `false`.")
+    public void setFlushOnPunctuation(boolean flushOnPunctuation) {
+        this.flushOnPunctuation = flushOnPunctuation;
+    }
+
+    @Parameter(optional = true, name=FLUSH_ATTR_PARAM_NAME,
+            description="Specifies a `boolean` input attribute that controls flushing of the Kafka producer. When the "
+                    + "attribute value is `true`, the operator flushes the producer after it has sent the message of the tuple. "
+                    + "A flush makes all buffered messages immediately available to send and blocks until the messages are "
+                    + "acknowledged.")
+    public void setFlushAttr(TupleAttribute<Tuple, Boolean> flushAttr) {
+        this.flushAttr = flushAttr;
+    }
+
     @Parameter(optional = true, name=KEYATTR_PARAM_NAME, 
     		description="Specifies the input attribute that contains "
     				+ "the Kafka key value. If not specified, the operator "
@@ -111,7 +369,13 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
     				+ "operator will look for an input attribute named *message*. "
     				+ "If this parameter is not specified and there is no input "
     				+ "attribute named *message*, the operator will throw an "
-    				+ "exception and terminate.")
+    				+ "exception and terminate.\\n"
+    				+ "\\n"
+    				+ "The attribute can also be a list, for example `list<rstring>` or `list<blob>`. "
+    				+ "Then every list element is sent as a separate message with the key, partition, timestamp, and topic "
+    				+ "of the input tuple. When the list elements are tuples, the element tuples must contain an attribute "
+    				+ "named *message* and can contain an attribute named *key*, for example `list<tuple<rstring key, blob message>>`. "
+    				+ "The *key* attribute of the list element is used instead of the key of the input tuple.")
     public void setMessageAttr(TupleAttribute<Tuple, ?> messageAttr) {
 		this.messageAttr = messageAttr;
 	}
@@ -198,7 +462,7 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         
         if(msgAttr != null) {
             // validate the message attribute type
-            checker.checkAttributeType(msgAttr, SUPPORTED_ATTR_TYPES);
+            checkMessageAttributeType(checker, msgAttr);
         } else {
         	// the operator does not specify a message attribute, so set an invalid context
         	checker.setInvalidContext(Messages.getString("MESSAGE_ATTRIBUTE_NOT_FOUND"), new Object[0]); //$NON-NLS-1$
@@ -241,6 +505,114 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         }
     }
 
+    /*
+     * The message attribute can have one of the supported types, or it can be a list 
+     * of a supported type, or a list of tuples with an attribute named "message" and an optional attribute named "key".
+     */
+    private static void checkMessageAttributeType(OperatorContextChecker checker, Attribute msgAttr) {
+        Type type = msgAttr.getType();
+        MetaType metaType = type.getMetaType();
+        if (metaType != MetaType.LIST && metaType != MetaType.BLIST) {
+            checker.checkAttributeType(msgAttr, SUPPORTED_ATTR_TYPES);
+            return;
+        }
+        Type elementType = ((CollectionType) type).getElementType();
+        if (elementType.getMetaType() == MetaType.TUPLE) {
+            StreamSchema elementSchema = ((TupleType) elementType).getTupleSchema();
+            Attribute elementMsgAttr = elementSchema.getAttribute(DEFAULT_MESSAGE_ATTR_NAME);
+            if (elementMsgAttr == null) {
+                checker.setInvalidContext(Messages.getString("MESSAGE_ATTRIBUTE_NOT_FOUND_IN_LIST_ELEMENT", msgAttr.getName()), new Object[0]); //$NON-NLS-1$
+            } else {
+                checker.checkAttributeType(elementMsgAttr, SUPPORTED_ATTR_TYPES);
+            }
+            Attribute elementKeyAttr = elementSchema.getAttribute(DEFAULT_KEY_ATTR_NAME);
+            if (elementKeyAttr != null) {
+                checker.checkAttributeType(elementKeyAttr, SUPPORTED_ATTR_TYPES);
+            }
+        } else if (!Arrays.asList(SUPPORTED_ATTR_TYPES).contains(elementType.getMetaType())) {
+            checker.setInvalidContext(Messages.getString("UNSUPPORTED_LIST_ELEMENT_TYPE", msgAttr.getName(), elementType.getLanguageType()), new Object[0]); //$NON-NLS-1$
+        }
+    }
+
+    @ContextCheck(compile = true)
+    public static void checkErrorPortSchema(OperatorContextChecker checker) {
+        OperatorContext opContext = checker.getOperatorContext();
+        if (opContext.getNumberOfStreamingOutputs() == 0) return;
+        StreamSchema schema = opContext.getStreamingOutputs().get(0).getStreamSchema();
+        for (String attrName: Arrays.asList(ERROR_PORT_TOPIC_ATTR_NAME, ERROR_PORT_ERROR_CLASS_ATTR_NAME, ERROR_PORT_ERROR_MESSAGE_ATTR_NAME)) {
+            Attribute attr = schema.getAttribute(attrName);
+            if (attr != null) {
+                checker.checkAttributeType(attr, MetaType.RSTRING);
+            }
+        }
+    }
+
+    @ContextCheck(compile = true)
+    public static void checkDeliveryReportPortSchema(OperatorContextChecker checker) {
+        OperatorContext opContext = checker.getOperatorContext();
+        if (opContext.getNumberOfStreamingOutputs() < 2) return;
+        StreamSchema schema = opContext.getStreamingOutputs().get(1).getStreamSchema();
+        Attribute attr = schema.getAttribute(REPORT_PORT_TOPIC_ATTR_NAME);
+        if (attr != null) checker.checkAttributeType(attr, MetaType.RSTRING);
+        attr = schema.getAttribute(REPORT_PORT_PARTITION_ATTR_NAME);
+        if (attr != null) checker.checkAttributeType(attr, MetaType.INT32);
+        attr = schema.getAttribute(REPORT_PORT_OFFSET_ATTR_NAME);
+        if (attr != null) checker.checkAttributeType(attr, MetaType.INT64);
+        attr = schema.getAttribute(REPORT_PORT_TIMESTAMP_ATTR_NAME);
+        if (attr != null) checker.checkAttributeType(attr, MetaType.INT64);
+    }
+
+    @ContextCheck(compile = false, runtime = true)
+    public static void checkConflationParams(OperatorContextChecker checker) {
+        Set<String> paramNames = checker.getOperatorContext().getParameterNames();
+        if (paramNames.contains(CONFLATION_WINDOW_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(CONFLATION_WINDOW_PARAM_NAME).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", CONFLATION_WINDOW_PARAM_NAME, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(CONFLATION_MAX_SIZE_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(CONFLATION_MAX_SIZE_PARAM_NAME).get(0);
+            if (Integer.valueOf(value) <= 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GT", CONFLATION_MAX_SIZE_PARAM_NAME, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+    }
+
+    @ContextCheck(compile = false, runtime = true)
+    public static void checkLatencyMetricsParams(OperatorContextChecker checker) {
+        Set<String> paramNames = checker.getOperatorContext().getParameterNames();
+        if (paramNames.contains(LATENCY_SAMPLE_INTERVAL_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(LATENCY_SAMPLE_INTERVAL_PARAM_NAME).get(0);
+            if (Integer.valueOf(value) < 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", LATENCY_SAMPLE_INTERVAL_PARAM_NAME, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(LATENCY_METRICS_PERIOD_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(LATENCY_METRICS_PERIOD_PARAM_NAME).get(0);
+            if (Double.valueOf(value) <= 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GT", LATENCY_METRICS_PERIOD_PARAM_NAME, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+    }
+
+    @ContextCheck(compile = false, runtime = true)
+    public static void checkRecordRetryParams(OperatorContextChecker checker) {
+        Set<String> paramNames = checker.getOperatorContext().getParameterNames();
+        if (paramNames.contains(MAX_RECORD_RETRIES_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(MAX_RECORD_RETRIES_PARAM_NAME).get(0);
+            if (Integer.valueOf(value) < 0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", MAX_RECORD_RETRIES_PARAM_NAME, value, "0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+        if (paramNames.contains(RECORD_RETRY_BACKOFF_PARAM_NAME)) {
+            String value = checker.getOperatorContext().getParameterValues(RECORD_RETRY_BACKOFF_PARAM_NAME).get(0);
+            if (Double.valueOf(value) < 0.0) {
+                checker.setInvalidContext(Messages.getString("INVALID_PARAMETER_VALUE_GE", RECORD_RETRY_BACKOFF_PARAM_NAME, value, "0.0"), new Object[0]); //$NON-NLS-1$
+            }
+        }
+    }
+
     @ContextCheck(compile = true)
 	public static void checkConsistentRegion(OperatorContextChecker checker) {
 
@@ -302,21 +674,67 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         timestampAttributeName = timestampAttribute != null ? timestampAttribute.getName() : null;
         
         // get message type
-        messageType = messageAttr.getAttribute().getType().getObjectType();
+        Type messageAttrType = messageAttr.getAttribute().getType();
+        if (messageAttrType.getMetaType() == MetaType.LIST || messageAttrType.getMetaType() == MetaType.BLIST) {
+            isMessageList = true;
+            Type elementType = ((CollectionType) messageAttrType).getElementType();
+            if (elementType.getMetaType() == MetaType.TUPLE) {
+                isMessageTupleList = true;
+                StreamSchema elementSchema = ((TupleType) elementType).getTupleSchema();
+                messageType = elementSchema.getAttribute(DEFAULT_MESSAGE_ATTR_NAME).getType().getObjectType();
+                Attribute elementKeyAttr = elementSchema.getAttribute(DEFAULT_KEY_ATTR_NAME);
+                if (elementKeyAttr != null) {
+                    hasListElementKey = true;
+                    keyType = elementKeyAttr.getType().getObjectType();
+                }
+            } else {
+                messageType = elementType.getObjectType();
+            }
+        } else {
+            messageType = messageAttrType.getObjectType();
+        }
         
         crContext = context.getOptionalContext(ConsistentRegionContext.class);
         if (crContext != null) {
             isResetting = new AtomicBoolean(context.getPE().getRelaunchCount() > 0);
         }
         
-        initProducer();
+        if (context.getNumberOfStreamingOutputs() > 0) {
+            errorPort = getOutput(0);
+        }
+        if (context.getNumberOfStreamingOutputs() > 1) {
+            deliveryReportPort = getOutput(1);
+        }
+        if (errorPort != null) {
+            reportSubmitter = new AsyncTupleSubmitter(context, REPORT_QUEUE_CAPACITY);
+        }
+        producer = createProducer();
+
+        if (conflationWindow > 0.0) {
+            conflationMap = new LinkedHashMap<>();
+            final long windowMs = Math.max(1l, (long) (conflationWindow * 1000.0));
+            conflationTimer = context.getScheduledExecutorService().scheduleAtFixedRate(() -> {
+                try {
+                    sendConflatedRecords();
+                } catch (Exception e) {
+                    logger.error("Sending conflated messages failed: " + e.getLocalizedMessage(), e); //$NON-NLS-1$
+                }
+            }, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        }
 
         registerForDataGovernance(context, topics);
 
         logger.info(">>> Operator initialized! <<<"); //$NON-NLS-1$
     }
 
-    private void initProducer() throws Exception {
+    /**
+     * Creates and configures the producer client. The client is assigned to the producer field
+     * not before it is completely configured.
+     * @return the producer client
+     * @throws Exception the client cannot be created
+     */
+    private KafkaProducerClient createProducer() throws Exception {
+        KafkaProducerClient producer;
         // configure producer
         KafkaOperatorProperties props = getKafkaProperties();
         if(crContext == null) {
@@ -330,12 +748,92 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         		break;
         	case Transactional:
         		logger.info("Creating TransactionalKafkaProducerClient...");
-        		producer = new TransactionalKafkaProducerClient(getOperatorContext(), keyType, messageType, props, /*lazyTransactionBegin*/true);
+        		producer = new TransactionalKafkaProducerClient(getOperatorContext(), keyType, messageType, props, /*lazyTransactionBegin*/true, pipelinedCommits);
         		break;
         	default:
         		throw new RuntimeException("Unrecognized ConsistentRegionPolicy: " + consistentRegionPolicy);
         	}
         }
+        producer.setRecordRetries(maxRecordRetries, (long) (recordRetryBackoff * 1000.0));
+        producer.setClientMetrics(getOperatorContext().getMetrics(), getClientMetrics(DEFAULT_CLIENT_METRICS), getClientMetricsPeriodMs());
+        producer.setProducerMetrics(latencySampleInterval, (long) (latencyMetricsPeriod * 1000.0), perTopicMetrics);
+        if (errorPort != null) {
+            // called by the I/O thread of the Kafka producer and by the retry executor
+            producer.setFailedRecordHandler((record, tuple, exception) ->
+                reportSubmitter.enqueue(() -> submitFailedRecord(record, tuple, exception)));
+        }
+        if (deliveryReportPort != null) {
+            // called by the I/O thread of the Kafka producer
+            producer.setDeliveryReportHandler((record, tuple, metadata) ->
+                reportSubmitter.enqueue(() -> submitDeliveryReport(record, tuple, metadata)));
+        }
+        return producer;
+    }
+
+    /**
+     * Submits a tuple for a message that has been acknowledged by the broker to the delivery report output port.
+     * Attributes of the port that match the attributes of the input tuple are copied from the input tuple.
+     * This method is called by the thread of the {@link AsyncTupleSubmitter}.
+     * 
+     * @param record   the producer record
+     * @param tuple    the input tuple 
+     * @param metadata the metadata of the record returned by the broker
+     */
+    private void submitDeliveryReport(ProducerRecord<?, ?> record, Tuple tuple, RecordMetadata metadata) {
+        OutputTuple outTuple = deliveryReportPort.newTuple();
+        if (tuple != null) {
+            outTuple.assign(tuple);
+        }
+        StreamSchema schema = deliveryReportPort.getStreamSchema();
+        if (schema.getAttribute(REPORT_PORT_TOPIC_ATTR_NAME) != null) {
+            outTuple.setString(REPORT_PORT_TOPIC_ATTR_NAME, metadata.topic());
+        }
+        if (schema.getAttribute(REPORT_PORT_PARTITION_ATTR_NAME) != null) {
+            outTuple.setInt(REPORT_PORT_PARTITION_ATTR_NAME, metadata.partition());
+        }
+        if (schema.getAttribute(REPORT_PORT_OFFSET_ATTR_NAME) != null) {
+            outTuple.setLong(REPORT_PORT_OFFSET_ATTR_NAME, metadata.offset());
+        }
+        if (schema.getAttribute(REPORT_PORT_TIMESTAMP_ATTR_NAME) != null) {
+            outTuple.setLong(REPORT_PORT_TIMESTAMP_ATTR_NAME, metadata.timestamp());
+        }
+        try {
+            deliveryReportPort.submit(outTuple);
+        } catch (Exception e) {
+            logger.error("Failed to submit tuple to the delivery report output port: " + e.getLocalizedMessage(), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Submits a tuple for a message that could not be sent to the error output port.
+     * Attributes of the error port that match the attributes of the input tuple are copied from the input tuple.
+     * This method is called by the thread of the {@link AsyncTupleSubmitter}.
+     * 
+     * @param record    the failed producer record
+     * @param tuple     the input tuple 
+     * @param exception the exception that caused the failure
+     */
+    private void submitFailedRecord(ProducerRecord<?, ?> record, Tuple tuple, Exception exception) {
+        OutputTuple outTuple = errorPort.newTuple();
+        if (tuple != null) {
+            outTuple.assign(tuple);
+        }
+        StreamSchema schema = errorPort.getStreamSchema();
+        if (schema.getAttribute(ERROR_PORT_TOPIC_ATTR_NAME) != null) {
+            outTuple.setString(ERROR_PORT_TOPIC_ATTR_NAME, record.topic());
+        }
+        if (schema.getAttribute(ERROR_PORT_ERROR_CLASS_ATTR_NAME) != null) {
+            outTuple.setString(ERROR_PORT_ERROR_CLASS_ATTR_NAME, exception.getClass().getName());
+        }
+        if (schema.getAttribute(ERROR_PORT_ERROR_MESSAGE_ATTR_NAME) != null) {
+            String msg = exception.getLocalizedMessage();
+            outTuple.setString(ERROR_PORT_ERROR_MESSAGE_ATTR_NAME, msg == null? "": msg); //$NON-NLS-1$
+        }
+        try {
+            errorPort.submit(outTuple);
+        } catch (Exception e) {
+            logger.error("Failed to submit tuple to the error output port: " + e.getLocalizedMessage(), e); //$NON-NLS-1$
+        }
     }
 
     /**
@@ -360,16 +858,128 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
             logger.debug("Operator is in the middle of resetting...skipping tuple processing!"); //$NON-NLS-1$
             return;
         }
+        if (reportSubmitter != null) {
+            // backpressure of the output ports
+            reportSubmitter.awaitSpace();
+        }
 
         List<String> topicList = getTopics(tuple);
-        Object key = keyAttributeName != null ? toJavaPrimitveObject(keyType, tuple.getObject(keyAttributeName)) : null;
-        Object value = toJavaPrimitveObject(messageType, messageAttr.getValue(tuple));
+        Object key = (keyAttributeName != null && !hasListElementKey) ? toJavaPrimitveObject(keyType, tuple.getObject(keyAttributeName)) : null;
         Integer partition = (partitionAttributeName != null) ? tuple.getInt(partitionAttributeName) : null;
         Long timestamp = (timestampAttributeName) != null ? tuple.getLong(timestampAttributeName) : null;
         
-        // send message to all topics
-        for (String topic : topicList)
-            producer.processTuple(new ProducerRecord(topic, partition, timestamp, key, value));
+        if (isMessageList) {
+            // every list element is a message; key, partition, timestamp, and topics are resolved once per tuple
+            List<?> elements = (List<?>) messageAttr.getValue(tuple);
+            for (Object element: elements) {
+                Object elementKey = key;
+                Object value;
+                if (isMessageTupleList) {
+                    Tuple elementTuple = (Tuple) element;
+                    if (hasListElementKey) {
+                        elementKey = toJavaPrimitveObject(keyType, elementTuple.getObject(DEFAULT_KEY_ATTR_NAME));
+                    }
+                    value = toJavaPrimitveObject(messageType, elementTuple.getObject(DEFAULT_MESSAGE_ATTR_NAME));
+                } else {
+                    value = toJavaPrimitveObject(messageType, element);
+                }
+                for (String topic : topicList)
+                    sendRecord(new ProducerRecord(topic, partition, timestamp, elementKey, value), tuple);
+            }
+        } else {
+            Object value = toJavaPrimitveObject(messageType, messageAttr.getValue(tuple));
+            // send message to all topics
+            for (String topic : topicList)
+                sendRecord(new ProducerRecord(topic, partition, timestamp, key, value), tuple);
+        }
+
+        if (flushAttr != null && flushAttr.getValue(tuple)) {
+            if (logger.isDebugEnabled()) logger.debug("flush requested by input tuple"); //$NON-NLS-1$
+            flush();
+        }
+    }
+
+    /**
+     * Sends a record, or puts it into the conflation window when conflation is enabled and the record has a key.
+     * @param record the record
+     * @param tuple  the tuple from which the record has been created
+     * @throws Exception sending a record failed
+     */
+    @SuppressWarnings("rawtypes")
+    private void sendRecord(ProducerRecord record, Tuple tuple) throws Exception {
+        if (conflationMap == null) {
+            producer.processRecord(record, tuple);
+            return;
+        }
+        if (record.key() == null) {
+            synchronized (conflationMap) {
+                producer.processRecord(record, tuple);
+            }
+            return;
+        }
+        final Object key = record.key() instanceof byte[]? ByteBuffer.wrap((byte[]) record.key()): record.key();
+        final List<Object> conflationKey = Arrays.asList(record.topic(), record.partition(), key);
+        synchronized (conflationMap) {
+            if (conflationMap.put(conflationKey, new ConflatedRecord(record, tuple)) != null) {
+                nConflatedMessages.increment();
+            }
+            if (conflationMap.size() >= conflationMaxSize) {
+                sendConflatedRecords();
+            }
+        }
+    }
+
+    /**
+     * Sends all records from the conflation window.
+     * The records are sent while holding the lock, so that a record cannot overtake an older record with the same key.
+     * @throws Exception sending a record failed
+     */
+    private void sendConflatedRecords() throws Exception {
+        if (conflationMap == null) return;
+        synchronized (conflationMap) {
+            if (conflationMap.isEmpty()) return;
+            if (logger.isDebugEnabled()) logger.debug("sending " + conflationMap.size() + " conflated messages"); //$NON-NLS-1$
+            List<ConflatedRecord> records = new ArrayList<>(conflationMap.values());
+            conflationMap.clear();
+            for (ConflatedRecord r: records) {
+                producer.processRecord(r.record, r.tuple);
+            }
+        }
+    }
+
+    /**
+     * Sends all records from the conflation window and flushes the producer.
+     * The conflation timer cannot send records while the producer is flushed.
+     */
+    private void flush() throws Exception {
+        if (conflationMap == null) {
+            producer.flush();
+            return;
+        }
+        synchronized (conflationMap) {
+            sendConflatedRecords();
+            producer.flush();
+        }
+    }
+
+    private void clearConflatedRecords() {
+        if (conflationMap == null) return;
+        synchronized (conflationMap) {
+            conflationMap.clear();
+        }
+    }
+
+    @Override
+    public void processPunctuation(StreamingInput<Tuple> stream, Punctuation mark) throws Exception {
+        if (flushOnPunctuation && mark == Punctuation.WINDOW_MARKER) {
+            if (crContext != null && isResetting.get()) {
+                logger.debug("Operator is in the middle of resetting...skipping flush!"); //$NON-NLS-1$
+            } else {
+                if (logger.isDebugEnabled()) logger.debug("flush on window punctuation"); //$NON-NLS-1$
+                flush();
+            }
+        }
+        super.processPunctuation(stream, mark);
     }
     
     private List<String> getTopics(Tuple tuple) {
@@ -400,8 +1010,14 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         Logger.getLogger(this.getClass()).trace("Operator " + context.getName() + " shutting down in PE: " //$NON-NLS-1$ //$NON-NLS-2$
                 + context.getPE().getPEId() + " in Job: " + context.getPE().getJobId()); //$NON-NLS-1$
 
-        producer.flush();
+        if (conflationTimer != null) {
+            conflationTimer.cancel(false);
+        }
+        flush();
         producer.close();
+        if (reportSubmitter != null) {
+            reportSubmitter.stop(REPORT_SUBMITTER_STOP_TIMEOUT_MS);
+        }
 
         // Must call super.shutdown()
         super.shutdown();
@@ -416,7 +1032,14 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
         // be acknowledged, an exception
         // will be thrown and the
         // region will be reset
-        producer.drain();
+        if (conflationMap == null) {
+            producer.drain();
+            return;
+        }
+        synchronized (conflationMap) {
+            sendConflatedRecords();
+            producer.drain();
+        }
     }
 
     @Override
@@ -429,8 +1052,13 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
     public void reset(Checkpoint checkpoint) throws Exception {
         logger.debug(">>> RESET (ckpt id=" + checkpoint.getSequenceId() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
         logger.debug("Initiating reset..."); //$NON-NLS-1$
+        clearConflatedRecords();
         producer.tryCancelOutstandingSendRequests (/*mayInterruptIfRunning = */true);
         producer.reset(checkpoint);
+        if (reportSubmitter != null) {
+            // the tuples are replayed
+            reportSubmitter.clear();
+        }
 
         // reset complete
         isResetting.set(false);
@@ -441,13 +1069,37 @@ public abstract class AbstractKafkaProducerOperator extends AbstractKafkaOperato
     public void resetToInitialState() throws Exception {
         logger.debug(">>> RESET TO INIT..."); //$NON-NLS-1$
 
+        clearConflatedRecords();
+        // records already handed over to Kafka still complete, but the client ignores their completions
         producer.tryCancelOutstandingSendRequests (/*mayInterruptIfRunning = */true);
-        producer.close();
-        producer = null;
-        initProducer();
+        if (reportSubmitter != null) {
+            reportSubmitter.clear();
+        }
+        // keep the Kafka producer with its connections unless it is fenced or broken
+        if (!producer.resetToInitialState()) {
+            logger.info("Producer cannot be reset to initial state. Creating a new producer..."); //$NON-NLS-1$
+            if (conflationMap == null) {
+                replaceProducer();
+            } else {
+                // the conflation timer must not use the closed producer
+                synchronized (conflationMap) {
+                    replaceProducer();
+                }
+            }
+        }
         isResetting.set(false);
     }
 
+    /**
+     * Closes the producer client and replaces it with a new one.
+     * The transactional ID of a closed client can be re-used by the new client without fencing.
+     * @throws Exception the new client cannot be created
+     */
+    private void replaceProducer() throws Exception {
+        producer.close();
+        producer = createProducer();
+    }
+
     @Override
     public void retireCheckpoint(long id) throws Exception {
         logger.debug(">>> RETIRE CHECKPOINT: " + id); //$NON-NLS-1$
@@ -0,0 +1,129 @@
+package com.ibm.streamsx.kafka.operators;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.state.ConsistentRegionContext;
+
+/**
+ * Submits tuples with an own thread, so that threads, which must not block, do not submit tuples themselves.
+ * The producer operator uses it for the tuples of the error and delivery report ports, which are created by the
+ * I/O thread of the Kafka producer and by the retry executor. Backpressure on these ports would otherwise stall
+ * sending and acknowledgement of the messages of all partitions.
+ * <p>
+ * A submission is queued as a task, which creates and submits the tuple. Enqueueing never blocks. Instead, the
+ * tuple processing thread of the operator calls {@link #awaitSpace()} before it sends new messages, which bounds
+ * the queue and propagates the backpressure upstream. Within a consistent region, the thread acquires a permit
+ * for every submission, so that no tuple is submitted while the region is drained, checkpointed, or reset.
+ */
+class AsyncTupleSubmitter {
+
+    private static final Logger logger = Logger.getLogger(AsyncTupleSubmitter.class);
+
+    private final int capacity;
+    private final ConsistentRegionContext crContext;
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock spaceLock = new ReentrantLock();
+    private final Condition space = spaceLock.newCondition();
+    private final Thread thread;
+    private volatile boolean stopped = false;
+
+    /**
+     * Constructs a new instance and starts its thread.
+     * @param context  the operator context, which provides the thread factory and the consistent region context
+     * @param capacity the number of queued submissions, at which {@link #awaitSpace()} waits
+     */
+    AsyncTupleSubmitter(OperatorContext context, int capacity) {
+        this.capacity = capacity;
+        this.crContext = context.getOptionalContext(ConsistentRegionContext.class);
+        this.thread = context.getThreadFactory().newThread(this::run);
+        this.thread.setDaemon(false);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a submission. This method never blocks.
+     * @param submission a task that creates and submits a tuple
+     */
+    void enqueue(Runnable submission) {
+        queue.add(submission);
+    }
+
+    /**
+     * Waits until the queue is below its capacity. This method is called by the tuple processing thread.
+     * @throws InterruptedException the thread has been interrupted
+     */
+    void awaitSpace() throws InterruptedException {
+        if (queue.size() < capacity) return;
+        spaceLock.lock();
+        try {
+            while (queue.size() >= capacity && !stopped) {
+                space.await(100, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            spaceLock.unlock();
+        }
+    }
+
+    /**
+     * Discards all queued submissions, for example on reset of a consistent region.
+     */
+    void clear() {
+        queue.clear();
+        signalSpace();
+    }
+
+    /**
+     * Submits the queued tuples and stops the thread.
+     * @param timeoutMs the maximum time in milliseconds to wait for the queued tuples being submitted
+     * @throws InterruptedException the calling thread has been interrupted
+     */
+    void stop(long timeoutMs) throws InterruptedException {
+        stopped = true;
+        thread.join(timeoutMs);
+        if (thread.isAlive()) {
+            logger.warn("Discarding " + queue.size() + " tuples, which could not be submitted within " + timeoutMs + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+            thread.interrupt();
+        }
+        signalSpace();
+    }
+
+    private void signalSpace() {
+        spaceLock.lock();
+        try {
+            space.signalAll();
+        } finally {
+            spaceLock.unlock();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!stopped || !queue.isEmpty()) {
+                final Runnable submission = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (submission == null) continue;
+                if (queue.size() < capacity) {
+                    signalSpace();
+                }
+                if (crContext != null) {
+                    crContext.acquirePermit();
+                }
+                try {
+                    submission.run();
+                } finally {
+                    if (crContext != null) {
+                        crContext.releasePermit();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("tuple submission thread interrupted"); //$NON-NLS-1$
+        }
+    }
+}
@@ -123,6 +123,75 @@ public class KafkaConsumerOperator extends AbstractKafkaConsumerOperator {
     		+ "`key.deserializer` and `value.deserializer` properties. \\n" +  //$NON-NLS-1$
     		"\\n" +  //$NON-NLS-1$
     		
+    		"# Batch Mode\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"When the output message attribute is of a list type, for example `list<rstring>`, the operator " //$NON-NLS-1$
+    		+ "submits a batch of messages with every tuple instead of a single message. The key, topic, offset, partition, " //$NON-NLS-1$
+    		+ "and timestamp output attributes, if present, must then also be lists of the corresponding types. " //$NON-NLS-1$
+    		+ "A batch contains up to **batchSize** messages, which have been received within **batchTimeout** seconds. " //$NON-NLS-1$
+    		+ "The deserializers are selected by the element types of the lists. " //$NON-NLS-1$
+    		+ "Submitting batches reduces the per-message overhead of tuple creation and submission " //$NON-NLS-1$
+    		+ "significantly, especially for small messages. In a consistent region, the offsets are saved once per batch.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
+    		"# Table Mode\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"When the **tableName** parameter is specified, the operator keeps the latest value for every key of the " //$NON-NLS-1$
+    		+ "consumed topics in a table, which is typically used for compacted topics with reference data. " //$NON-NLS-1$
+    		+ "The table is registered under its name in the PE. Other Java operators in the same PE can look up values with " //$NON-NLS-1$
+    		+ "`com.ibm.streamsx.kafka.table.KafkaTable.getTable(name).get(key)` instead of rebuilding the table from the tuples. " //$NON-NLS-1$
+    		+ "The operator reads the topics from the beginning. When the consumer has read all partitions up to their end offsets " //$NON-NLS-1$
+    		+ "at operator start, the bootstrap is complete, and the operator submits a window punctuation after the tuples of these messages. Messages with an empty value (tombstones) delete the key from the table and are not submitted. " //$NON-NLS-1$
+    		+ "All other messages are still submitted as tuples. The table is held in the Java heap; its size is reported by the " //$NON-NLS-1$
+    		+ "**nTableEntries** metric, the lookups by the **nTableLookups** and **nTableHits** metrics.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
+    		"# Latency Metrics\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"The operator samples every **latencySampleInterval**-th fetched message and measures two latencies at its submission: " //$NON-NLS-1$
+    		+ "the age of the message, which is the time since the message timestamp, and the time since the message has been fetched " //$NON-NLS-1$
+    		+ "from Kafka, which includes the time in the internal queue. The median, the 90th and 99th percentiles, and the maximum " //$NON-NLS-1$
+    		+ "of the latencies are published every **latencyMetricsPeriod** seconds in the **recordAgeP50Ms**, **recordAgeP90Ms**, " //$NON-NLS-1$
+    		+ "**recordAgeP99Ms**, **recordAgeMaxMs** metrics in milliseconds and in the **fetchToSubmitP50Us**, **fetchToSubmitP90Us**, " //$NON-NLS-1$
+    		+ "**fetchToSubmitP99Us**, **fetchToSubmitMaxUs** metrics in microseconds. The percentiles have a relative error of less " //$NON-NLS-1$
+    		+ "than 4%. The age depends on the clocks of the producers or brokers, which set the timestamps. " //$NON-NLS-1$
+    		+ "Messages without timestamp are not included in the age.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
+    		"# Partition Metrics\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"When a partition is assigned to the operator, the operator creates metrics for the partition, whose names end with " //$NON-NLS-1$
+    		+ "the topic and partition in brackets, for example **lag[myTopic-0]**. The metrics **offset**, **endOffset**, and " //$NON-NLS-1$
+    		+ "**lag** give the offset of the next message to fetch, the end offset, and the number of messages not yet fetched; " //$NON-NLS-1$
+    		+ "**messagesPerSec** and **bytesPerSec** give the fetch rates. They show, which partitions are hot or lagging behind. " //$NON-NLS-1$
+    		+ "The metrics are updated every **partitionMetricsPeriod** seconds from the lag, which the brokers report in their " //$NON-NLS-1$
+    		+ "fetch responses. The lag of a partition is updated with every fetch response for the partition. " //$NON-NLS-1$
+    		+ "Metrics cannot be removed from an operator. " //$NON-NLS-1$
+    		+ "When a partition is revoked, its lag and rates are set to 0.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
+    		"# Phase Time Metrics\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"When the **phaseTimeMetricsPeriod** parameter is greater than 0.0, the operator accounts the time of its two threads " //$NON-NLS-1$
+    		+ "to the phases of their work and publishes the percentage of the wall time per phase every **phaseTimeMetricsPeriod** seconds. " //$NON-NLS-1$
+    		+ "The polling thread reports **pollThreadFetchPercent** for fetching messages from the brokers, " //$NON-NLS-1$
+    		+ "**pollThreadDeserializePercent** for deserializing, filtering, and conflating, and **pollThreadQueueFullPercent** " //$NON-NLS-1$
+    		+ "for pauses due to full queue or low memory. The tuple processing thread reports **processThreadQueueWaitPercent** " //$NON-NLS-1$
+    		+ "for waiting for messages and **processThreadSubmitPercent** for creating and submitting tuples, which includes the time " //$NON-NLS-1$
+    		+ "that downstream operators block the submission. A high fetch percentage points to the brokers, a high submit percentage " //$NON-NLS-1$
+    		+ "to the downstream operators. The remaining time is spent in other work. The times are measured per poll and per tuple " //$NON-NLS-1$
+    		+ "or batch with `System.nanoTime()`.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
+    		"# Kafka Client Metrics\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		"The operator copies metrics of the Kafka consumer every **clientMetricsPeriod** seconds into custom metrics " //$NON-NLS-1$
+    		+ "with the same names. The metrics are selected with the **clientMetrics** parameter. By default, the metrics " //$NON-NLS-1$
+    		+ "**fetch-latency-avg**, **fetch-latency-max**, **records-lag-max**, **fetch-size-avg**, **fetch-rate**, and " //$NON-NLS-1$
+    		+ "**records-per-request-avg** are copied. Times are in milliseconds. As the Kafka consumer is not thread-safe, " //$NON-NLS-1$
+    		+ "the metrics are copied by the thread that fetches the messages, not by the thread that submits the tuples.\\n" +  //$NON-NLS-1$
+    		"\\n" +  //$NON-NLS-1$
+    		
     		"# Committing received Kafka messages\\n" +
     		"\\n" +
     		"As default, the operator sets the consusmer property `auto.commit.enable` to `false` and commits every "
@@ -4,11 +4,33 @@ package com.ibm.streamsx.kafka.operators;
 import com.ibm.streams.operator.model.Icons;
 import com.ibm.streams.operator.model.InputPortSet;
 import com.ibm.streams.operator.model.InputPorts;
+import com.ibm.streams.operator.model.OutputPortSet;
+import com.ibm.streams.operator.model.OutputPortSet.WindowPunctuationOutputMode;
+import com.ibm.streams.operator.model.OutputPorts;
 import com.ibm.streams.operator.model.PrimitiveOperator;
 
 @PrimitiveOperator(name = "KafkaProducer", namespace = "com.ibm.streamsx.kafka", description = KafkaProducerOperator.DESC)
 @InputPorts({ @InputPortSet(description = "This port consumes tuples to be written to the Kafka topic(s). Each tuple received on "
 		+ "this port will be written to the Kafka topic(s).", cardinality = 1, optional = false) })
+@OutputPorts({ @OutputPortSet(description = "This optional port emits a tuple for each message that finally failed to be written "
+		+ "to a Kafka topic. Attributes of this port that have the same name and type as input attributes are copied "
+		+ "from the input tuple. Optional attributes `rstring topic`, `rstring errorClass`, and `rstring errorMessage` "
+		+ "receive the topic of the message, the class name of the exception, and its message. "
+		+ "The tuples of the output ports are submitted by a thread of the operator, not by the threads that send the "
+		+ "messages. When the output ports are blocked and 10000 tuples are queued, the operator stops sending messages "
+		+ "until the queue has space. In a consistent region, no tuple is submitted while the region is drained, "
+		+ "checkpointed, or reset, and queued tuples are discarded on reset. "
+		+ "See the **Error Handling** section for details.", cardinality = 1, optional = true, 
+		windowPunctuationOutputMode = WindowPunctuationOutputMode.Free),
+		@OutputPortSet(description = "This optional port emits a delivery report for each message that has been "
+		+ "acknowledged by the Kafka broker. Attributes of this port that have the same name and type as input attributes "
+		+ "are copied from the input tuple, so that they can be used to correlate the report with the input tuple. "
+		+ "Optional attributes `rstring topic`, `int32 partition`, `int64 offset`, and `int64 messageTimestamp` receive the "
+		+ "metadata of the written message. The tuples are submitted asynchronously after the broker has acknowledged the "
+		+ "message, by the same thread and with the same backpressure handling as the tuples of the error port. Their order can differ from the order of the input tuples when messages are written to different "
+		+ "partitions. When the operator is used with the `Transactional` consistent region policy, the report is "
+		+ "submitted before the transaction is committed. To use this port, the error output port must also be declared.",
+		cardinality = 1, optional = true, windowPunctuationOutputMode = WindowPunctuationOutputMode.Free) })
 @Icons(location16 = "icons/KafkaProducer_16.gif", location32 = "icons/KafkaProducer_32.gif")
 public class KafkaProducerOperator extends AbstractKafkaProducerOperator {
 
@@ -89,6 +111,15 @@ public class KafkaProducerOperator extends AbstractKafkaProducerOperator {
 			"---\\n" +  //$NON-NLS-1$
 			"\\n" //$NON-NLS-1$
 			+ "\\n" +			 //$NON-NLS-1$
+			"# Load-aware Partitioning\\n" +  //$NON-NLS-1$
+			"\\n" +  //$NON-NLS-1$
+			"When the producer property `partitioner.class` is set to "  //$NON-NLS-1$
+			+ "`com.ibm.streamsx.kafka.clients.producer.LoadAwarePartitioner`, messages without key are written to the " //$NON-NLS-1$
+			+ "partition with the least bytes that are queued in the producer or not yet acknowledged by the broker. " //$NON-NLS-1$
+			+ "Partitions of a slow broker receive less messages. To fill batches, the partitioner keeps the selected partition " //$NON-NLS-1$
+			+ "until messages of `batch.size` bytes have been assigned to it. This size can be changed with the producer property " //$NON-NLS-1$
+			+ "`load.aware.partitioner.sticky.bytes`. Messages with key are partitioned by the hash of the key.\\n" +  //$NON-NLS-1$
+			"\\n" +  //$NON-NLS-1$
 			"# Consistent Region Strategy\\n" +  //$NON-NLS-1$
 			"\\n" +  //$NON-NLS-1$
 			"The `KafkaProducer` operator can participate in a consistent region. The operator " //$NON-NLS-1$
@@ -142,6 +173,26 @@ public class KafkaProducerOperator extends AbstractKafkaProducerOperator {
 			+ "because older brokers do not support transactions." //$NON-NLS-1$
 			+ "\\n" //$NON-NLS-1$
 			+ "\\n" //$NON-NLS-1$
+			+ "# Send Latency and Batching Metrics\\n" //$NON-NLS-1$
+			+ "\\n" //$NON-NLS-1$
+			+ "For every **latencySampleInterval**-th message, the operator measures the time between sending the message " //$NON-NLS-1$
+			+ "and its acknowledgement by the Kafka brokers. Every **latencyMetricsPeriod** seconds, the percentiles of the measured " //$NON-NLS-1$
+			+ "times are published in the metrics **sendLatencyP50Us**, **sendLatencyP90Us**, **sendLatencyP99Us**, and " //$NON-NLS-1$
+			+ "**sendLatencyMaxUs** in microseconds. The times are recorded in a histogram, which neither locks nor allocates memory. " //$NON-NLS-1$
+			+ "The metrics **bytesPerBatch**, **recordsPerRequest**, and **bytesPerRequest** are averages taken from the " //$NON-NLS-1$
+			+ "Kafka producer. The Kafka producer has no metric for the number of messages per batch; **recordsPerBatch** is " //$NON-NLS-1$
+			+ "therefore estimated from the average batch size and the average message size. When the **perTopicMetrics** " //$NON-NLS-1$
+			+ "parameter is `true`, latency and rate metrics are also created for every topic.\\n" //$NON-NLS-1$
+			+ "\\n" //$NON-NLS-1$
+			+ "# Kafka Client Metrics\\n" //$NON-NLS-1$
+			+ "\\n" //$NON-NLS-1$
+			+ "The operator copies metrics of the Kafka producer every **clientMetricsPeriod** seconds into custom metrics " //$NON-NLS-1$
+			+ "with the same names. The metrics are selected with the **clientMetrics** parameter. By default, the metrics " //$NON-NLS-1$
+			+ "**request-latency-avg**, **request-latency-max**, **batch-size-avg**, **compression-rate-avg*1000**, " //$NON-NLS-1$
+			+ "**buffer-available-bytes**, **record-queue-time-avg**, and **record-queue-time-max** are copied. " //$NON-NLS-1$
+			+ "The compression rate is multiplied by 1000, because the metric values are integers. Times are in milliseconds. " //$NON-NLS-1$
+			+ "The metrics are copied by a background thread, not with the tuple processing.\\n" //$NON-NLS-1$
+			+ "\\n" //$NON-NLS-1$
 			+ "# Error Handling\\n" //$NON-NLS-1$
 			+ "\\n" //$NON-NLS-1$
 			+ "Many exceptions thrown by the underlying Kafka API are considered fatal. In the event " //$NON-NLS-1$
@@ -150,5 +201,21 @@ public class KafkaProducerOperator extends AbstractKafkaProducerOperator {
 			+ "to set the KafkaProducer `retries` property to a value greater than 0 to enable the producer's " //$NON-NLS-1$
 			+ "retry mechanism. \\n" +  //$NON-NLS-1$
 			"\\n" +  //$NON-NLS-1$
+			"When the Kafka producer gives up sending a message with a retriable error, for example with a timeout, " //$NON-NLS-1$
+			+ "the operator can re-send the message. The number of re-sends per message is controlled by the **" //$NON-NLS-1$
+			+ MAX_RECORD_RETRIES_PARAM_NAME + "** parameter, the back-off time between the re-sends by the **" //$NON-NLS-1$
+			+ RECORD_RETRY_BACKOFF_PARAM_NAME + "** parameter.\\n" +  //$NON-NLS-1$
+			"\\n" +  //$NON-NLS-1$
+			"When the optional output port is present, messages that cannot be re-sent or have exhausted their re-sends " //$NON-NLS-1$
+			+ "are submitted as tuples to this port instead of letting the operator fail. This includes errors that " //$NON-NLS-1$
+			+ "affect only the message, like a message that is too large. Errors that affect the producer as a whole, " //$NON-NLS-1$
+			+ "like authentication or authorization failures, a fenced or out-of-sequence producer, are still fatal. " //$NON-NLS-1$
+			+ "When the operator is part of a consistent region and the **" + CONSISTENT_REGION_POLICY_PARAM_NAME //$NON-NLS-1$
+			+ "** parameter is `Transactional`, every failed message causes a reset of the consistent region " //$NON-NLS-1$
+			+ "because the transaction cannot be committed.\\n" +  //$NON-NLS-1$
+			"\\n" +  //$NON-NLS-1$
+			"The custom metrics **nFailedMessages**, **nRetriedMessages**, and **nDeadLetteredMessages** count the " //$NON-NLS-1$
+			+ "messages that finally failed, the re-sends, and the tuples submitted to the output port.\\n" +  //$NON-NLS-1$
+			"\\n" +  //$NON-NLS-1$
 			""; //$NON-NLS-1$
 }
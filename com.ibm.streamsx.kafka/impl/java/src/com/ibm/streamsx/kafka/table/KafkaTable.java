@@ -0,0 +1,152 @@
+package com.ibm.streamsx.kafka.table;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streams.operator.types.RString;
+
+/**
+ * A table that holds the latest value for every key of a topic. Tables are maintained by KafkaConsumer
+ * operators in table mode and registered by name, so that they can be looked up by other Java operators
+ * that run in the same PE and share the class loader of this toolkit.
+ * <p>
+ * Keys are normalized, so that a key of type String and RString, or byte[] and Blob, find the same entry.
+ * The values are the deserialized message values, for example String, Long, or byte[].
+ * <p>
+ * Example for a lookup from another operator:
+ * <pre>
+ * KafkaTable table = KafkaTable.getTable ("customers");
+ * if (table != null &amp;&amp; table.awaitBootstrap (30, TimeUnit.SECONDS)) {
+ *     Object value = table.get (key);
+ * }
+ * </pre>
+ */
+public class KafkaTable {
+
+    private static final Logger logger = Logger.getLogger(KafkaTable.class);
+    private static final ConcurrentHashMap<String, KafkaTable> tables = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ConcurrentHashMap<Object, Object> entries = new ConcurrentHashMap<>();
+    private final CountDownLatch bootstrapLatch = new CountDownLatch(1);
+    private final AtomicLong nLookups = new AtomicLong(0l);
+    private final AtomicLong nHits = new AtomicLong(0l);
+
+    private KafkaTable(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the table with the given name.
+     * @param name the table name
+     * @return the table or null, if no operator in this PE maintains a table with this name
+     */
+    public static KafkaTable getTable(String name) {
+        return tables.get(name);
+    }
+
+    /**
+     * Creates and registers a new, empty table. This method is used by the KafkaConsumer operator.
+     * @param name the table name
+     * @return the new table
+     * @throws IllegalStateException a table with this name is already registered
+     */
+    public static KafkaTable create(String name) {
+        KafkaTable table = new KafkaTable(name);
+        if (tables.putIfAbsent(name, table) != null) {
+            throw new IllegalStateException("A table with name '" + name + "' is already registered in this PE"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        logger.info("table '" + name + "' registered"); //$NON-NLS-1$ //$NON-NLS-2$
+        return table;
+    }
+
+    /**
+     * Unregisters the table. This method is used by the KafkaConsumer operator.
+     */
+    public void unregister() {
+        tables.remove(name, this);
+        logger.info("table '" + name + "' unregistered"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the latest value for a key.
+     * @param key the key
+     * @return the value or null, if the table does not contain the key
+     */
+    public Object get(Object key) {
+        nLookups.incrementAndGet();
+        final Object value = entries.get(normalize(key));
+        if (value != null) nHits.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Puts the value for a key, or removes the key when the value is null (tombstone).
+     * This method is used by the KafkaConsumer operator.
+     * @param key   the key
+     * @param value the value or null
+     */
+    public void put(Object key, Object value) {
+        if (value == null) {
+            entries.remove(normalize(key));
+        } else {
+            entries.put(normalize(key), value);
+        }
+    }
+
+    /**
+     * Marks the initial load of the table from the beginning to the end offsets as complete.
+     * This method is used by the KafkaConsumer operator.
+     */
+    public void setBootstrapComplete() {
+        bootstrapLatch.countDown();
+    }
+
+    /**
+     * Tests whether the initial load of the table is complete.
+     * @return true, if the table contains all messages up to the end offsets at the time when the operator started.
+     */
+    public boolean isBootstrapComplete() {
+        return bootstrapLatch.getCount() == 0;
+    }
+
+    /**
+     * Waits until the initial load of the table is complete.
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the timeout
+     * @return true, if the initial load is complete, false if the waiting time elapsed.
+     * @throws InterruptedException the thread has been interrupted while waiting
+     */
+    public boolean awaitBootstrap(long timeout, TimeUnit unit) throws InterruptedException {
+        return bootstrapLatch.await(timeout, unit);
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public long getNumLookups() {
+        return nLookups.get();
+    }
+
+    public long getNumHits() {
+        return nHits.get();
+    }
+
+    private static Object normalize(Object key) {
+        if (key instanceof RString) return ((RString) key).getString();
+        if (key instanceof byte[]) return ByteBuffer.wrap((byte[]) key);
+        if (key instanceof Blob) return ((Blob) key).getByteBuffer();
+        return key;
+    }
+}
@@ -0,0 +1,244 @@
+package com.ibm.streamsx.kafka.testfixtures;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import com.ibm.streams.operator.Attribute;
+import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.control.ControlPlaneContext;
+import com.ibm.streams.operator.control.variable.ControlVariableAccessor;
+import com.ibm.streams.operator.metrics.Metric;
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+import com.ibm.streams.operator.state.Checkpoint;
+import com.ibm.streams.operator.state.ConsistentRegionContext;
+
+/**
+ * Stubs of the Streams operator API, which allow to run the operator and client code outside of a Streams PE.
+ * The stubs are dynamic proxies, so that they do not depend on the exact version of the interfaces.
+ * Methods that are not implemented return null, false, or 0.
+ */
+public final class Stubs {
+
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1, r -> {
+        Thread t = new Thread(r, "stubs-scheduler"); //$NON-NLS-1$
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Stubs() {
+    }
+
+    /**
+     * Creates an operator context without consistent region.
+     * All custom metrics exist and keep their values. The control plane context holds the control variables in memory.
+     * @return the operator context
+     */
+    public static OperatorContext operatorContext() {
+        return operatorContext(false);
+    }
+
+    /**
+     * Creates an operator context.
+     * All custom metrics exist and keep their values. The control plane context holds the control variables in memory.
+     * @param consistentRegion when true, the operator is in a consistent region. The consistent region context has no function.
+     * @return the operator context
+     */
+    public static OperatorContext operatorContext(boolean consistentRegion) {
+        final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+        final OperatorMetrics operatorMetrics = proxy(OperatorMetrics.class, (p, method, args) -> {
+            if (method.getName().equals("getCustomMetric") || method.getName().equals("createCustomMetric")) { //$NON-NLS-1$ //$NON-NLS-2$
+                return metrics.computeIfAbsent((String) args[0], Stubs::metric);
+            }
+            if (method.getName().equals("getCustomMetrics")) { //$NON-NLS-1$
+                return metrics;
+            }
+            return defaultValue(method.getReturnType());
+        });
+        final ControlPlaneContext controlPlaneContext = controlPlaneContext();
+        final ConsistentRegionContext crContext = consistentRegion? proxy(ConsistentRegionContext.class,
+                (p, method, args) -> defaultValue(method.getReturnType())): null;
+        final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        return proxy(OperatorContext.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getMetrics": return operatorMetrics; //$NON-NLS-1$
+            case "getOptionalContext": //$NON-NLS-1$
+                if (args[0] == ControlPlaneContext.class) return controlPlaneContext;
+                return args[0] == ConsistentRegionContext.class? crContext: null;
+            case "getThreadFactory": return threadFactory; //$NON-NLS-1$
+            case "getScheduledExecutorService": return scheduler; //$NON-NLS-1$
+            case "getName": return "stubs"; //$NON-NLS-1$ //$NON-NLS-2$
+            case "getParameterNames": return new HashSet<String>(); //$NON-NLS-1$
+            default: return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a control plane context, which keeps the control variables in memory.
+     * A control variable keeps the initial value of its first creation, like a variable in the JCP.
+     * @return the control plane context
+     */
+    @SuppressWarnings("unchecked")
+    public static ControlPlaneContext controlPlaneContext() {
+        final Map<String, String> variables = new ConcurrentHashMap<>();
+        return proxy(ControlPlaneContext.class, (p, method, args) -> {
+            if (!method.getName().equals("createStringControlVariable")) { //$NON-NLS-1$
+                return defaultValue(method.getReturnType());
+            }
+            final String name = (String) args[0];
+            variables.putIfAbsent(name, (String) args[2]);
+            final ControlVariableAccessor<String> accessor = proxy(ControlVariableAccessor.class, (a, m, a2) -> {
+                switch (m.getName()) {
+                case "sync": return a; //$NON-NLS-1$
+                case "getValue": return variables.get(name); //$NON-NLS-1$
+                case "setValue": variables.put(name, (String) a2[0]); return null; //$NON-NLS-1$
+                default: return defaultValue(m.getReturnType());
+                }
+            });
+            return accessor;
+        });
+    }
+
+    /**
+     * Creates a checkpoint, which discards the written data. The checkpoint cannot be read.
+     * @param sequenceId the sequence ID of the checkpoint
+     * @return the checkpoint
+     * @throws IOException the object output stream cannot be created
+     */
+    public static Checkpoint checkpoint(long sequenceId) throws IOException {
+        return checkpoint(sequenceId, (byte[]) null);
+    }
+
+    /**
+     * Creates a checkpoint, which discards the written data and which can be read from the given data.
+     * The streams are created once per checkpoint, like in the Streams runtime.
+     * @param sequenceId the sequence ID of the checkpoint
+     * @param data       the data written by an ObjectOutputStream, or null when the checkpoint cannot be read
+     * @return the checkpoint
+     * @throws IOException the object output stream cannot be created
+     */
+    public static Checkpoint checkpoint(long sequenceId, byte[] data) throws IOException {
+        return checkpoint(sequenceId, data, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    /**
+     * Creates a checkpoint, which writes the data to the given stream. The checkpoint cannot be read.
+     * The written data can be read by a checkpoint created with {@link #checkpoint(long, byte[])}
+     * after the object output stream of the checkpoint has been flushed.
+     * @param sequenceId the sequence ID of the checkpoint
+     * @param sink       the stream that receives the written data
+     * @return the checkpoint
+     * @throws IOException the object output stream cannot be created
+     */
+    public static Checkpoint checkpoint(long sequenceId, OutputStream sink) throws IOException {
+        return checkpoint(sequenceId, null, sink);
+    }
+
+    private static Checkpoint checkpoint(long sequenceId, byte[] data, OutputStream sink) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(sink);
+        final ObjectInputStream[] in = new ObjectInputStream[1];
+        return proxy(Checkpoint.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getSequenceId": return sequenceId; //$NON-NLS-1$
+            case "getOutputStream": return out; //$NON-NLS-1$
+            case "getInputStream": //$NON-NLS-1$
+                if (data == null) throw new IOException("checkpoint cannot be read"); //$NON-NLS-1$
+                if (in[0] == null) in[0] = new ObjectInputStream(new ByteArrayInputStream(data));
+                return in[0];
+            default: return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a metric that keeps its value.
+     * @param name the metric name
+     * @return the metric
+     */
+    public static Metric metric(String name) {
+        final long[] value = new long[1];
+        return proxy(Metric.class, (p, method, args) -> {
+            switch (method.getName()) {
+            case "getName": return name; //$NON-NLS-1$
+            case "getValue": return value[0]; //$NON-NLS-1$
+            case "setValue": value[0] = (Long) args[0]; return null; //$NON-NLS-1$
+            case "increment": ++value[0]; return null; //$NON-NLS-1$
+            case "incrementValue": value[0] += (Long) args[0]; return null; //$NON-NLS-1$
+            default: return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a stream schema that contains the given attributes.
+     * @param attributeNames the attribute names
+     * @return the schema
+     */
+    public static StreamSchema streamSchema(String... attributeNames) {
+        final Set<String> names = new HashSet<>(Arrays.asList(attributeNames));
+        return proxy(StreamSchema.class, (p, method, args) -> {
+            if (method.getName().equals("getAttribute") && args[0] instanceof String) { //$NON-NLS-1$
+                final String name = (String) args[0];
+                return names.contains(name)? proxy(Attribute.class, (a, m, a2) ->
+                        m.getName().equals("getName")? name: defaultValue(m.getReturnType())): null; //$NON-NLS-1$
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    /**
+     * Creates an output tuple, which keeps the last value that has been set.
+     * Keeping the value prevents the JIT compiler from eliminating the conversion.
+     * @return the output tuple
+     */
+    public static OutputTuple outputTuple() {
+        final Object[] lastValue = new Object[1];
+        return proxy(OutputTuple.class, (p, method, args) -> {
+            if (method.getName().startsWith("set") && args != null && args.length == 2) { //$NON-NLS-1$
+                lastValue[0] = args[1];
+                return null;
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> iface, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] {iface}, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0l;
+        if (type == int.class) return 0;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return (char) 0;
+    }
+}
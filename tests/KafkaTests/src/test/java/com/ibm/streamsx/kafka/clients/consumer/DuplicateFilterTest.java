@@ -0,0 +1,99 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.util.Arrays;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streamsx.kafka.clients.OffsetManager;
+
+/*
+ * Tests the detection of replayed records by offset, the detection of records
+ * with same content in the rotating windows, and the reset to checkpointed offsets.
+ */
+public class DuplicateFilterTest {
+
+	private static final String TOPIC = "test";
+
+	@Test
+	public void replayedOffsetsAreDuplicates() {
+		DuplicateFilter filter = new DuplicateFilter(0, 0.001);
+		Assert.assertFalse(filter.isDuplicate(record(0, 0, "a")));
+		Assert.assertFalse(filter.isDuplicate(record(0, 1, "b")));
+		Assert.assertTrue(filter.isDuplicate(record(0, 0, "a")));
+		Assert.assertTrue(filter.isDuplicate(record(0, 1, "b")));
+		// the high-water mark is kept per partition
+		Assert.assertFalse(filter.isDuplicate(record(1, 0, "a")));
+		// without window, the same content at a new offset is no duplicate
+		Assert.assertFalse(filter.isDuplicate(record(0, 2, "a")));
+		Assert.assertEquals(0.0, filter.getFalsePositiveProbability(), 0.0);
+	}
+
+	@Test
+	public void windowRotation() {
+		DuplicateFilter filter = new DuplicateFilter(2, 0.001);
+		Assert.assertFalse(filter.isDuplicate(record(0, 0, "c0")));
+		Assert.assertFalse(filter.isDuplicate(record(0, 1, "c1")));
+		// the current window is full: c0 and c1 move into the previous window
+		Assert.assertFalse(filter.isDuplicate(record(0, 2, "c2")));
+		Assert.assertFalse(filter.isDuplicate(record(0, 3, "c3")));
+		// same content at a new offset, found in the previous window
+		Assert.assertTrue(filter.isDuplicate(record(0, 4, "c0")));
+		// the second rotation drops c0 and c1
+		Assert.assertFalse(filter.isDuplicate(record(0, 5, "c4")));
+		Assert.assertFalse(filter.isDuplicate(record(0, 6, "c0")));
+		// c2 and c3 are in the previous window now
+		Assert.assertTrue(filter.isDuplicate(record(0, 7, "c3")));
+		Assert.assertTrue(filter.getFalsePositiveProbability() > 0.0);
+		Assert.assertTrue(filter.getFalsePositiveProbability() < 0.01);
+	}
+
+	@Test
+	public void contentDetectionIncludesTopicAndKey() {
+		DuplicateFilter filter = new DuplicateFilter(10, 0.001);
+		Assert.assertFalse(filter.isDuplicate(new ConsumerRecord<>(TOPIC, 0, 0, "k1", "v")));
+		Assert.assertFalse(filter.isDuplicate(new ConsumerRecord<>(TOPIC, 0, 1, "k2", "v")));
+		Assert.assertFalse(filter.isDuplicate(new ConsumerRecord<>("other", 0, 0, "k1", "v")));
+		Assert.assertTrue(filter.isDuplicate(new ConsumerRecord<>(TOPIC, 0, 2, "k1", "v")));
+	}
+
+	@Test
+	public void resetLowersHighWaterMarksToCheckpoint() {
+		DuplicateFilter filter = new DuplicateFilter(10, 0.001);
+		for (int offset = 0; offset < 10; ++offset) {
+			Assert.assertFalse(filter.isDuplicate(record(0, offset, "p0-" + offset)));
+			Assert.assertFalse(filter.isDuplicate(record(1, offset, "p1-" + offset)));
+		}
+		// the checkpoint contains the offsets of the next records to submit; partition 1 is not in the checkpoint
+		OffsetManager offsetManager = new OffsetManager(null);
+		offsetManager.addTopic(TOPIC, Arrays.asList(new TopicPartition(TOPIC, 0)));
+		offsetManager.setOffset(TOPIC, 0, 5l);
+		filter.reset(offsetManager);
+
+		Assert.assertTrue(filter.isDuplicate(record(0, 4, "p0-4")));
+		// the records after the checkpoint are replayed, although their content has been seen
+		for (int offset = 5; offset < 10; ++offset) {
+			Assert.assertFalse(filter.isDuplicate(record(0, offset, "p0-" + offset)));
+			Assert.assertFalse(filter.isDuplicate(record(1, offset, "p1-" + offset)));
+		}
+		Assert.assertTrue(filter.isDuplicate(record(0, 9, "p0-9")));
+	}
+
+	@Test
+	public void resetKeepsLowerHighWaterMarks() {
+		DuplicateFilter filter = new DuplicateFilter(0, 0.001);
+		Assert.assertFalse(filter.isDuplicate(record(0, 3, "a")));
+		OffsetManager offsetManager = new OffsetManager(null);
+		offsetManager.addTopic(TOPIC, Arrays.asList(new TopicPartition(TOPIC, 0)));
+		offsetManager.setOffset(TOPIC, 0, 10l);
+		filter.reset(offsetManager);
+		Assert.assertTrue(filter.isDuplicate(record(0, 3, "a")));
+		Assert.assertFalse(filter.isDuplicate(record(0, 4, "b")));
+	}
+
+	private static ConsumerRecord<String, String> record(int partition, long offset, String value) {
+		return new ConsumerRecord<>(TOPIC, partition, offset, null, value);
+	}
+}
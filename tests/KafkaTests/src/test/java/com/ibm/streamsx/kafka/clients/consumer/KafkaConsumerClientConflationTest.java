@@ -0,0 +1,101 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the conflation by key of the consumer client with a MockConsumer.
+ * The newest record of every key is kept in the order of the offsets.
+ */
+public class KafkaConsumerClientConflationTest {
+
+	private static final String TOPIC = "test";
+
+	private MockConsumer<String, String> mockConsumer;
+	private OperatorContext context;
+	private KafkaConsumerClient client;
+
+	@Before
+	public void setup() throws Exception {
+		mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		mockConsumer.updateBeginningOffsets(Collections.singletonMap(new TopicPartition(TOPIC, 0), 0l));
+		context = Stubs.operatorContext();
+		client = new KafkaConsumerClient.KafkaConsumerClientBuilder()
+				.setKafkaProperties(new KafkaOperatorProperties())
+				.setKeyClass(String.class)
+				.setValueClass(String.class)
+				.setOperatorContext(context)
+				.setConflateByKey(true)
+				.setConsumerFactory(p -> mockConsumer)
+				.build();
+		client.subscribeToTopics(Collections.singletonList(TOPIC), Collections.singletonList(0), StartPosition.Beginning);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void newestRecordOfEveryKeyInOffsetOrder() throws Exception {
+		// one poll returns all records
+		mockConsumer.schedulePollTask(() -> {
+			addRecord(0, "a", "a0");
+			addRecord(1, "b", "b1");
+			addRecord(2, "a", "a2");
+			addRecord(3, null, "n3");
+			addRecord(4, "c", "c4");
+			addRecord(5, null, "n5");
+			addRecord(6, "b", "b6");
+		});
+		client.sendStartPollingEvent(100l);
+
+		List<String> values = new ArrayList<>();
+		ConsumerRecord<?, ?> record;
+		while (values.size() < 5 && (record = client.getNextRecord()) != null) {
+			values.add((String) record.value());
+		}
+		// records without key are always kept
+		Assert.assertEquals(Arrays.asList("a2", "n3", "c4", "n5", "b6"), values);
+		Assert.assertEquals(2l, context.getMetrics().getCustomMetric("nConflatedMessages").getValue());
+	}
+
+	@Test
+	public void recordsOfDifferentPollsAreNotConflated() throws Exception {
+		mockConsumer.schedulePollTask(() -> {
+			addRecord(0, "a", "a0");
+			addRecord(1, "a", "a1");
+		});
+		mockConsumer.schedulePollTask(() -> {
+			addRecord(2, "a", "a2");
+		});
+		client.sendStartPollingEvent(100l);
+
+		List<String> values = new ArrayList<>();
+		ConsumerRecord<?, ?> record;
+		while (values.size() < 2 && (record = client.getNextRecord()) != null) {
+			values.add((String) record.value());
+		}
+		Assert.assertEquals(Arrays.asList("a1", "a2"), values);
+	}
+
+	private void addRecord(long offset, String key, String value) {
+		mockConsumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, key, value));
+	}
+}
@@ -0,0 +1,169 @@
+package com.ibm.streamsx.kafka.clients.consumer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the criteria of the record filter, and that the consumer client
+ * advances the offset past filtered records with an offset marker.
+ */
+public class RecordFilterTest {
+
+	private static final String TOPIC = "test";
+
+	@Test
+	public void unconfiguredFilterAcceptsAll() {
+		RecordFilter filter = new RecordFilter();
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, null)));
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, "key")));
+	}
+
+	@Test
+	public void keys() {
+		RecordFilter filter = new RecordFilter();
+		filter.setKeys(Arrays.asList("a", "b"));
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, "a")));
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, "b")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, "ab")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, null)));
+	}
+
+	@Test
+	public void keyPrefix() {
+		RecordFilter filter = new RecordFilter();
+		filter.setKeyPrefix("sensor.");
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, "sensor.1")));
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, "sensor.")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, "sensor")));
+		// the last byte of the prefix differs
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, "sensor:1")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, "actor.1")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, null)));
+	}
+
+	@Test
+	public void headers() {
+		RecordFilter filter = new RecordFilter();
+		Map<String, String> headers = new HashMap<>();
+		headers.put("type", "order");
+		headers.put("trace", null);
+		filter.setHeaders(headers);
+		Assert.assertTrue(filter.accept(record(0, 0, 0l, null, "type", "order", "trace", "1")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, null, "type", "invoice", "trace", "1")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, null, "type", "order")));
+		Assert.assertFalse(filter.accept(record(0, 0, 0l, null)));
+	}
+
+	@Test
+	public void timestampsAreInclusive() {
+		RecordFilter filter = new RecordFilter();
+		filter.setMinTimestamp(1000l);
+		filter.setMaxTimestamp(2000l);
+		Assert.assertFalse(filter.accept(record(0, 0, 999l, null)));
+		Assert.assertTrue(filter.accept(record(0, 0, 1000l, null)));
+		Assert.assertTrue(filter.accept(record(0, 0, 2000l, null)));
+		Assert.assertFalse(filter.accept(record(0, 0, 2001l, null)));
+	}
+
+	@Test
+	public void partitions() {
+		RecordFilter filter = new RecordFilter();
+		filter.setPartitions(Arrays.asList(1, 3));
+		Assert.assertTrue(filter.accept(record(1, 0, 0l, null)));
+		Assert.assertFalse(filter.accept(record(2, 0, 0l, null)));
+	}
+
+	@Test
+	public void offsetMarkerAfterFilteredRecordsInConsistentRegion() throws Exception {
+		List<ConsumerRecord<?, ?>> queued = pollFiltered(true, "keep.0", "drop.1", "keep.2", "drop.3", "drop.4");
+		Assert.assertEquals(3, queued.size());
+		Assert.assertEquals(0l, queued.get(0).offset());
+		Assert.assertEquals("keep.0", queued.get(0).key());
+		Assert.assertEquals(2l, queued.get(1).offset());
+		Assert.assertEquals("keep.2", queued.get(1).key());
+		// the offset of the next record to consume is taken from the marker
+		Assert.assertTrue(queued.get(2) instanceof RecordFilter.OffsetMarker);
+		Assert.assertEquals(4l, queued.get(2).offset());
+	}
+
+	@Test
+	public void noOffsetMarkerWhenLastRecordIsAccepted() throws Exception {
+		List<ConsumerRecord<?, ?>> queued = pollFiltered(true, "drop.0", "keep.1");
+		Assert.assertEquals(1, queued.size());
+		Assert.assertEquals(1l, queued.get(0).offset());
+		Assert.assertFalse(queued.get(0) instanceof RecordFilter.OffsetMarker);
+	}
+
+	@Test
+	public void noOffsetMarkerWithoutConsistentRegion() throws Exception {
+		List<ConsumerRecord<?, ?>> queued = pollFiltered(false, "keep.0", "drop.1");
+		Assert.assertEquals(1, queued.size());
+		Assert.assertEquals(0l, queued.get(0).offset());
+	}
+
+	/*
+	 * Polls records with the given keys from partition 0 with a client that accepts the keys with prefix "keep.".
+	 * Returns the queued records of the poll.
+	 */
+	private static List<ConsumerRecord<?, ?>> pollFiltered(boolean consistentRegion, String... keys) throws Exception {
+		MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		mockConsumer.updateBeginningOffsets(Collections.singletonMap(new TopicPartition(TOPIC, 0), 0l));
+		RecordFilter filter = new RecordFilter();
+		filter.setKeyPrefix("keep.");
+		KafkaConsumerClient client = new KafkaConsumerClient.KafkaConsumerClientBuilder()
+				.setKafkaProperties(new KafkaOperatorProperties())
+				.setKeyClass(String.class)
+				.setValueClass(String.class)
+				.setOperatorContext(Stubs.operatorContext(consistentRegion))
+				.setRecordFilter(filter)
+				.setConsumerFactory(p -> mockConsumer)
+				.build();
+		try {
+			client.subscribeToTopics(Collections.singletonList(TOPIC), Collections.singletonList(0), StartPosition.Beginning);
+			mockConsumer.schedulePollTask(() -> {
+				for (int i = 0; i < keys.length; ++i) {
+					mockConsumer.addRecord(record(0, i, 0l, keys[i]));
+				}
+			});
+			client.sendStartPollingEvent(100l);
+			List<ConsumerRecord<?, ?>> queued = new ArrayList<>();
+			// waits up to one second for all queued records of the poll
+			client.getNextRecords(queued, keys.length, 1000l);
+			return queued;
+		} finally {
+			client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+		}
+	}
+
+	/*
+	 * creates a record with UTF-8 encoded key and headers given as name, value, name, value, ...
+	 */
+	private static ConsumerRecord<byte[], byte[]> record(int partition, long offset, long timestamp, String key, String... headers) {
+		RecordHeaders recordHeaders = new RecordHeaders();
+		for (int i = 0; i < headers.length; i += 2) {
+			recordHeaders.add(headers[i], headers[i +1].getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] keyBytes = key == null? null: key.getBytes(StandardCharsets.UTF_8);
+		byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+		return new ConsumerRecord<>(TOPIC, partition, offset, timestamp, TimestampType.CREATE_TIME, null,
+				keyBytes == null? -1: keyBytes.length, value.length, keyBytes, value, recordHeaders);
+	}
+}
@@ -0,0 +1,84 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests that the completions of records, which have been sent before the reset of a client that keeps
+ * its Kafka producer, neither fail the next send nor create delivery reports or error tuples.
+ */
+public class KafkaProducerClientResetTest {
+
+	private static final String TOPIC = "test";
+
+	private MockProducer<String, String> mockProducer;
+	private KafkaProducerClient client;
+	private List<ProducerRecord<?, ?>> delivered;
+	private List<ProducerRecord<?, ?>> failed;
+
+	@Before
+	public void setup() throws Exception {
+		mockProducer = new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+		client = new AtLeastOnceKafkaProducerClient(Stubs.operatorContext(true), String.class, Blob.class,
+				new KafkaOperatorProperties(), p -> mockProducer);
+		delivered = new ArrayList<>();
+		failed = new ArrayList<>();
+		client.setDeliveryReportHandler((record, tuple, metadata) -> delivered.add(record));
+		client.setFailedRecordHandler((record, tuple, exception) -> failed.add(record));
+	}
+
+	@Test
+	public void failureBeforeResetDoesNotFailNextSend() throws Exception {
+		client.processRecord(record("before"), null);
+		client.tryCancelOutstandingSendRequests(true);
+		Assert.assertTrue(client.resetToInitialState());
+		// the Kafka producer cannot cancel the record; it fails after the reset
+		mockProducer.errorNext(new KafkaException("broken connection"));
+		client.processRecord(record("after"), null);
+		mockProducer.completeNext();
+		Assert.assertEquals(1, delivered.size());
+		Assert.assertEquals("after", delivered.get(0).value());
+		Assert.assertTrue(failed.isEmpty());
+	}
+
+	@Test
+	public void completionsBeforeResetAreNotReported() throws Exception {
+		client.processRecord(record("delivered"), null);
+		client.processRecord(record("failed"), null);
+		client.tryCancelOutstandingSendRequests(true);
+		Assert.assertTrue(client.resetToInitialState());
+		mockProducer.completeNext();
+		mockProducer.errorNext(new RecordTooLargeException("too large"));
+		Assert.assertTrue(delivered.isEmpty());
+		Assert.assertTrue(failed.isEmpty());
+	}
+
+	@Test
+	public void failureWithoutResetFailsNextSend() throws Exception {
+		client.processRecord(record("before"), null);
+		mockProducer.errorNext(new KafkaException("broken connection"));
+		try {
+			client.processRecord(record("after"), null);
+			Assert.fail("the failure must be thrown on next send");
+		} catch (KafkaException e) {
+			// expected
+		}
+	}
+
+	private static ProducerRecord<String, String> record(String value) {
+		return new ProducerRecord<>(TOPIC, value);
+	}
+}
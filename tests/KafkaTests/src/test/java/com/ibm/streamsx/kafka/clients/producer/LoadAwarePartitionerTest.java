@@ -0,0 +1,185 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.types.Blob;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the selection of the least loaded partition, the stickiness, the handling of unavailable partitions,
+ * and that the producer client removes the bytes of a record from the tracker when the send completes or fails.
+ */
+public class LoadAwarePartitionerTest {
+
+	private static final String TOPIC = "test";
+	private static final Node NODE = new Node(0, "localhost", 9092);
+
+	@Test
+	public void leastLoadedPartition() {
+		PartitionLoadTracker tracker = new PartitionLoadTracker();
+		LoadAwarePartitioner partitioner = partitioner(tracker, 100l);
+		tracker.add(TOPIC, 0, 500l);
+		tracker.add(TOPIC, 1, 200l);
+		tracker.add(TOPIC, 3, 300l);
+		Assert.assertEquals(2, partition(partitioner, cluster(4), 10));
+		Assert.assertEquals(10l, tracker.getQueuedBytes(new TopicPartition(TOPIC, 2)));
+	}
+
+	@Test
+	public void stickyUntilStickyBytes() {
+		PartitionLoadTracker tracker = new PartitionLoadTracker();
+		LoadAwarePartitioner partitioner = partitioner(tracker, 100l);
+		tracker.add(TOPIC, 1, 50l);
+		Cluster cluster = cluster(2);
+		Assert.assertEquals(0, partition(partitioner, cluster, 40));
+		// partition 0 has more queued bytes than partition 1 now, but the partitioner sticks to it
+		Assert.assertEquals(0, partition(partitioner, cluster, 40));
+		Assert.assertEquals(0, partition(partitioner, cluster, 40));
+		// 120 bytes have been assigned since the selection
+		Assert.assertEquals(1, partition(partitioner, cluster, 40));
+	}
+
+	@Test
+	public void recordsWithKeyArePartitionedByHash() {
+		PartitionLoadTracker tracker = new PartitionLoadTracker();
+		LoadAwarePartitioner partitioner = partitioner(tracker, 100l);
+		Cluster cluster = cluster(4);
+		byte[] key = "key".getBytes();
+		int partition = partitioner.partition(TOPIC, key, key, null, new byte[10], cluster);
+		for (int i = 0; i < 10; ++i) {
+			Assert.assertEquals(partition, partitioner.partition(TOPIC, key, key, null, new byte[10], cluster));
+		}
+		Assert.assertEquals(143l, tracker.getQueuedBytes(new TopicPartition(TOPIC, partition)));
+	}
+
+	@Test
+	public void unavailablePartitionsAreSkipped() {
+		PartitionLoadTracker tracker = new PartitionLoadTracker();
+		LoadAwarePartitioner partitioner = partitioner(tracker, 1000l);
+		tracker.add(TOPIC, 1, 1000l);
+		tracker.add(TOPIC, 2, 500l);
+		// partition 0 has no leader
+		Assert.assertEquals(2, partition(partitioner, cluster(3, 0), 10));
+		// the sticky partition becomes unavailable
+		Assert.assertEquals(1, partition(partitioner, cluster(3, 0, 2), 10));
+	}
+
+	@Test
+	public void bytesAreRemovedOnCompletion() throws Exception {
+		final List<MockProducer<byte[], byte[]>> producers = new ArrayList<>();
+		KafkaProducerClient client = new KafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class,
+				partitionerProperties(), p -> {
+					MockProducer<byte[], byte[]> producer = new MockProducer<>(cluster(1), false, partitioner(p),
+							new ByteArraySerializer(), new ByteArraySerializer());
+					producers.add(producer);
+					return producer;
+				});
+		final TopicPartition tp = new TopicPartition(TOPIC, 0);
+		final PartitionLoadTracker tracker = client.getPartitionLoadTracker();
+		client.send(new ProducerRecord<byte[], byte[]>(TOPIC, new byte[100]));
+		client.send(new ProducerRecord<byte[], byte[]>(TOPIC, new byte[50]));
+		Assert.assertEquals(150l, tracker.getQueuedBytes(tp));
+		producers.get(0).completeNext();
+		Assert.assertEquals(50l, tracker.getQueuedBytes(tp));
+		producers.get(0).errorNext(new RecordTooLargeException("too large"));
+		Assert.assertEquals(0l, tracker.getQueuedBytes(tp));
+		client.setSendException(null);
+		client.close();
+	}
+
+	@Test
+	public void bytesAreRemovedWhenSendThrows() throws Exception {
+		final Cluster cluster = cluster(1);
+		KafkaProducerClient client = new KafkaProducerClient(Stubs.operatorContext(), String.class, Blob.class,
+				partitionerProperties(), p -> {
+					final LoadAwarePartitioner partitioner = partitioner(p);
+					return new MockProducer<byte[], byte[]>(cluster, false, partitioner, new ByteArraySerializer(), new ByteArraySerializer()) {
+						@Override
+						public synchronized Future<RecordMetadata> send(ProducerRecord<byte[], byte[]> record, Callback callback) {
+							// the partition is selected, but the record cannot be appended; the callback is not invoked
+							partitioner.partition(record.topic(), null, null, record.value(), record.value(), cluster);
+							throw new BufferExhaustedException("buffer exhausted");
+						}
+					};
+				});
+		try {
+			client.send(new ProducerRecord<byte[], byte[]>(TOPIC, new byte[100]));
+			Assert.fail("send must throw");
+		} catch (BufferExhaustedException e) {
+			// expected
+		}
+		Assert.assertEquals(0l, client.getPartitionLoadTracker().getQueuedBytes(new TopicPartition(TOPIC, 0)));
+		client.close();
+	}
+
+	/*
+	 * selects the partition for a record without key with the given number of value bytes
+	 */
+	private static int partition(LoadAwarePartitioner partitioner, Cluster cluster, int nBytes) {
+		return partitioner.partition(TOPIC, null, null, null, new byte[nBytes], cluster);
+	}
+
+	private static LoadAwarePartitioner partitioner(PartitionLoadTracker tracker, long stickyBytes) {
+		Map<String, Object> configs = new HashMap<>();
+		configs.put(LoadAwarePartitioner.LOAD_TRACKER_CONFIG, tracker);
+		configs.put(LoadAwarePartitioner.STICKY_BYTES_CONFIG, stickyBytes);
+		LoadAwarePartitioner partitioner = new LoadAwarePartitioner();
+		partitioner.configure(configs);
+		return partitioner;
+	}
+
+	/*
+	 * creates the partitioner with the producer properties that have been configured by the client
+	 */
+	private static LoadAwarePartitioner partitioner(KafkaOperatorProperties props) {
+		Map<String, Object> configs = new HashMap<>();
+		props.forEach((k, v) -> configs.put(k.toString(), v));
+		LoadAwarePartitioner partitioner = new LoadAwarePartitioner();
+		partitioner.configure(configs);
+		return partitioner;
+	}
+
+	private static KafkaOperatorProperties partitionerProperties() {
+		KafkaOperatorProperties props = new KafkaOperatorProperties();
+		props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, LoadAwarePartitioner.class.getName());
+		return props;
+	}
+
+	/*
+	 * creates a cluster with one topic. The given partitions have no leader.
+	 */
+	private static Cluster cluster(int nPartitions, int... unavailable) {
+		List<PartitionInfo> partitions = new ArrayList<>();
+		for (int p = 0; p < nPartitions; ++p) {
+			boolean available = true;
+			for (int u: unavailable) {
+				if (u == p) available = false;
+			}
+			Node leader = available? NODE: null;
+			partitions.add(new PartitionInfo(TOPIC, p, leader, new Node[] {NODE}, new Node[] {NODE}));
+		}
+		return new Cluster("cluster", Collections.singletonList(NODE), partitions,
+				Collections.<String>emptySet(), Collections.<String>emptySet());
+	}
+}
@@ -0,0 +1,237 @@
+package com.ibm.streamsx.kafka.clients.producer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.streams.operator.OperatorContext;
+import com.ibm.streams.operator.state.Checkpoint;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the transactional producer client with pipelined commits: the background commit, the re-send of the
+ * records of a failed commit, and the re-send of the checkpointed records on reset when the control topic
+ * shows that their transaction has not been committed.
+ */
+public class TransactionalKafkaProducerClientTest {
+
+	private static final String TOPIC = "test";
+	private static final String CONTROL_TOPIC = "__streams_control_topic";
+	private static final TopicPartition CONTROL_TOPIC_PARTITION = new TopicPartition(CONTROL_TOPIC, 0);
+
+	private OperatorContext context;
+	private MockConsumer<byte[], byte[]> controlTopicConsumer;
+	// the producers created by the clients in the order of creation; the factory is also invoked by a background thread
+	private List<CommitFailingProducer> producers;
+	private List<KafkaProducerClient> clients;
+
+	/*
+	 * A MockProducer, whose next commit can be made to fail.
+	 */
+	private static class CommitFailingProducer extends MockProducer<String, String> {
+		private volatile boolean failNextCommit = false;
+
+		CommitFailingProducer() {
+			super(true, new StringSerializer(), new StringSerializer());
+		}
+
+		@Override
+		public void commitTransaction() {
+			if (failNextCommit) {
+				failNextCommit = false;
+				throw new TimeoutException("commit timed out");
+			}
+			super.commitTransaction();
+		}
+
+		List<String> committedValues() {
+			List<String> values = new ArrayList<>();
+			for (ProducerRecord<String, String> r: history()) {
+				if (r.topic().equals(TOPIC)) values.add(r.value());
+			}
+			return values;
+		}
+	}
+
+	@Before
+	public void setup() {
+		context = Stubs.operatorContext(true);
+		controlTopicConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		controlTopicConsumer.updatePartitions(CONTROL_TOPIC, Collections.singletonList(new PartitionInfo(CONTROL_TOPIC, 0, null, null, null)));
+		controlTopicConsumer.updateEndOffsets(Collections.singletonMap(CONTROL_TOPIC_PARTITION, 0l));
+		producers = new CopyOnWriteArrayList<>();
+		clients = new ArrayList<>();
+	}
+
+	@After
+	public void tearDown() {
+		for (KafkaProducerClient client: clients) {
+			client.close();
+		}
+	}
+
+	@Test
+	public void commitInBackground() throws Exception {
+		KafkaProducerClient client = createClient();
+		Assert.assertEquals(2, producers.size());
+		client.processRecord(record("a"), null);
+		client.processRecord(record("b"), null);
+		client.drain();
+		client.checkpoint(Stubs.checkpoint(1l));
+		// the next transaction is written by the other producer
+		client.processRecord(record("c"), null);
+		Assert.assertTrue(producers.get(1).transactionInFlight());
+		client.drain();
+		Assert.assertTrue(producers.get(0).transactionCommitted());
+		Assert.assertEquals(listOf("a", "b"), producers.get(0).committedValues());
+		Assert.assertTrue(hasControlRecord(producers.get(0), 1l));
+		client.checkpoint(Stubs.checkpoint(2l));
+		client.drain();
+		Assert.assertEquals(listOf("c"), producers.get(1).committedValues());
+		Assert.assertTrue(hasControlRecord(producers.get(1), 2l));
+	}
+
+	@Test
+	public void recordsOfFailedCommitAreResent() throws Exception {
+		KafkaProducerClient client = createClient();
+		producers.get(0).failNextCommit = true;
+		client.processRecord(record("a"), null);
+		client.processRecord(record("b"), null);
+		client.drain();
+		client.checkpoint(Stubs.checkpoint(1l));
+		client.processRecord(record("c"), null);
+		// the failed commit is detected; the control topic shows that the transaction has not been committed
+		client.drain();
+		Assert.assertTrue(producers.get(0).transactionAborted());
+		Assert.assertTrue(producers.get(0).committedValues().isEmpty());
+		client.checkpoint(Stubs.checkpoint(2l));
+		client.drain();
+		Assert.assertEquals(listOf("c", "a", "b"), producers.get(1).committedValues());
+	}
+
+	@Test
+	public void resetAfterRestartResendsUncommittedRecords() throws Exception {
+		KafkaProducerClient client = createClient();
+		client.processRecord(record("a"), null);
+		client.processRecord(record("b"), null);
+		client.drain();
+		byte[] checkpointData = checkpoint(client, 1l);
+
+		// the PE fails before the transaction is committed; the restarted operator gets a new client, which is reset
+		KafkaProducerClient restartedClient = createClient();
+		restartedClient.tryCancelOutstandingSendRequests(true);
+		restartedClient.reset(Stubs.checkpoint(1l, checkpointData));
+		restartedClient.drain();
+		restartedClient.checkpoint(Stubs.checkpoint(3l));
+		restartedClient.drain();
+		Assert.assertEquals(listOf("a", "b"), producers.get(2).committedValues());
+		Assert.assertTrue(hasControlRecord(producers.get(2), 3l));
+	}
+
+	@Test
+	public void resetDoesNotResendCommittedRecords() throws Exception {
+		KafkaProducerClient client = createClient();
+		client.processRecord(record("a"), null);
+		client.drain();
+		byte[] checkpointData = checkpoint(client, 1l);
+		client.drain();
+
+		// the control topic contains the control record of the committed transaction
+		final String transactionalId = ((TransactionalKafkaProducerClient) client).getTransactionalId();
+		// the end offset is behind the commit marker
+		controlTopicConsumer.updateEndOffsets(Collections.singletonMap(CONTROL_TOPIC_PARTITION, 2l));
+		final ConsumerRecord<byte[], byte[]> controlRecord = controlRecord(0l, transactionalId, 1l);
+		controlTopicConsumer.schedulePollTask(() -> controlTopicConsumer.addRecord(controlRecord));
+		client.processRecord(record("b"), null);
+		client.tryCancelOutstandingSendRequests(true);
+		client.reset(Stubs.checkpoint(1l, checkpointData));
+		// the record sent after the checkpoint is replayed by the operators upstream
+		Assert.assertTrue(producers.get(1).transactionAborted());
+		client.drain();
+		// the control topic is read again before the commit, because the sequence IDs have a gap
+		controlTopicConsumer.schedulePollTask(() -> controlTopicConsumer.addRecord(controlRecord));
+		client.checkpoint(Stubs.checkpoint(3l));
+		client.drain();
+		Assert.assertEquals(listOf("a"), producers.get(0).committedValues());
+		Assert.assertTrue(producers.get(1).committedValues().isEmpty());
+		Assert.assertTrue(hasControlRecord(producers.get(1), 3l));
+	}
+
+	private KafkaProducerClient createClient() throws Exception {
+		KafkaProducerClient client = new TransactionalKafkaProducerClient(context, String.class, String.class,
+				new KafkaOperatorProperties(), /*lazyTransactionBegin*/true, /*pipelinedCommits*/true,
+				this::createProducer, this::createControlTopicConsumer);
+		clients.add(client);
+		return client;
+	}
+
+	private Producer<?, ?> createProducer(KafkaOperatorProperties props) {
+		CommitFailingProducer producer = new CommitFailingProducer();
+		producers.add(producer);
+		return producer;
+	}
+
+	private Consumer<?, ?> createControlTopicConsumer(KafkaOperatorProperties props) {
+		return controlTopicConsumer;
+	}
+
+	/*
+	 * checkpoints the client and returns the checkpointed data
+	 */
+	private static byte[] checkpoint(KafkaProducerClient client, long sequenceId) throws Exception {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		Checkpoint checkpoint = Stubs.checkpoint(sequenceId, data);
+		client.checkpoint(checkpoint);
+		checkpoint.getOutputStream().flush();
+		return data.toByteArray();
+	}
+
+	private static boolean hasControlRecord(MockProducer<String, String> producer, long sequenceId) {
+		for (ProducerRecord<String, String> r: producer.history()) {
+			if (r.topic().equals(CONTROL_TOPIC)
+					&& new String(r.headers().lastHeader("seqId").value(), StandardCharsets.UTF_8).equals(String.valueOf(sequenceId))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ConsumerRecord<byte[], byte[]> controlRecord(long offset, String transactionalId, long sequenceId) {
+		RecordHeaders headers = new RecordHeaders();
+		headers.add("tid", transactionalId.getBytes(StandardCharsets.UTF_8));
+		headers.add("seqId", String.valueOf(sequenceId).getBytes(StandardCharsets.UTF_8));
+		return new ConsumerRecord<>(CONTROL_TOPIC, 0, offset, 0l, TimestampType.CREATE_TIME, null, -1, -1, null, null, headers);
+	}
+
+	private static ProducerRecord<String, String> record(String value) {
+		return new ProducerRecord<>(TOPIC, value);
+	}
+
+	private static List<String> listOf(String... values) {
+		List<String> list = new ArrayList<>();
+		Collections.addAll(list, values);
+		return list;
+	}
+}
@@ -0,0 +1,108 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.MetricName;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.streams.operator.metrics.OperatorMetrics;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the parsing of the metric names with factor and the selection
+ * of the Kafka metric with the fewest tags.
+ */
+public class ClientMetricsBridgeTest {
+
+	private OperatorMetrics operatorMetrics;
+	private Map<MetricName, org.apache.kafka.common.Metric> clientMetrics;
+
+	@Before
+	public void setup() {
+		operatorMetrics = Stubs.operatorContext().getMetrics();
+		clientMetrics = new HashMap<>();
+	}
+
+	@Test
+	public void factor() {
+		ClientMetricsBridge bridge = new ClientMetricsBridge(operatorMetrics,
+				Arrays.asList("record-send-rate", " compression-rate-avg * 1000 ", "batch-size-avg*0.5"));
+		addMetric("record-send-rate", 12.6);
+		addMetric("compression-rate-avg", 0.4567);
+		addMetric("batch-size-avg", 1001.0);
+		bridge.update(clientMetrics);
+		Assert.assertEquals(13l, getValue("record-send-rate"));
+		// the metric is published under the name including the factor
+		Assert.assertEquals(457l, getValue("compression-rate-avg * 1000"));
+		Assert.assertEquals(501l, getValue("batch-size-avg*0.5"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void invalidFactor() {
+		new ClientMetricsBridge(operatorMetrics, Collections.singletonList("record-send-rate*x"));
+	}
+
+	@Test
+	public void metricWithFewestTags() {
+		ClientMetricsBridge bridge = new ClientMetricsBridge(operatorMetrics, Collections.singletonList("record-send-rate"));
+		addMetric("record-send-rate", 5.0, "client-id", "c1", "topic", "t1");
+		addMetric("record-send-rate", 30.0, "client-id", "c1");
+		addMetric("record-send-rate", 7.0, "client-id", "c1", "topic", "t2");
+		bridge.update(clientMetrics);
+		Assert.assertEquals(30l, getValue("record-send-rate"));
+	}
+
+	@Test
+	public void invalidValuesAreNotCopied() {
+		ClientMetricsBridge bridge = new ClientMetricsBridge(operatorMetrics,
+				Arrays.asList("fetch-latency-avg", "request-latency-max", "missing-metric"));
+		addMetric("fetch-latency-avg", 20.0);
+		addMetric("request-latency-max", 40.0);
+		bridge.update(clientMetrics);
+		clientMetrics.clear();
+		// the average of no samples and the maximum of no samples
+		addMetric("fetch-latency-avg", Double.NaN);
+		addMetric("request-latency-max", Double.NEGATIVE_INFINITY);
+		bridge.update(clientMetrics);
+		Assert.assertEquals(20l, getValue("fetch-latency-avg"));
+		Assert.assertEquals(40l, getValue("request-latency-max"));
+		Assert.assertEquals(0l, getValue("missing-metric"));
+	}
+
+	private long getValue(String name) {
+		return operatorMetrics.getCustomMetric(name).getValue();
+	}
+
+	/*
+	 * adds a Kafka metric with tags given as name, value, name, value, ...
+	 */
+	private void addMetric(String name, double value, String... tags) {
+		Map<String, String> tagMap = new HashMap<>();
+		for (int i = 0; i < tags.length; i += 2) {
+			tagMap.put(tags[i], tags[i +1]);
+		}
+		final MetricName metricName = new MetricName(name, "producer-metrics", "", tagMap);
+		clientMetrics.put(metricName, new org.apache.kafka.common.Metric() {
+			@Override
+			public MetricName metricName() {
+				return metricName;
+			}
+
+			@Override
+			@Deprecated
+			public double value() {
+				return value;
+			}
+
+			@Override
+			public Object metricValue() {
+				return value;
+			}
+		});
+	}
+}
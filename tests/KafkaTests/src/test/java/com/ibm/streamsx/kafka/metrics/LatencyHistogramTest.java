@@ -0,0 +1,91 @@
+package com.ibm.streamsx.kafka.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/*
+ * Tests the percentiles of the latency histogram, which are exact for small values
+ * and have a relative error of less than 1/32 for large values.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void emptySnapshot() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshotAndReset();
+		Assert.assertEquals(0l, snapshot.getTotalCount());
+		Assert.assertEquals(0l, snapshot.getMax());
+		Assert.assertEquals(0l, snapshot.getValueAtPercentile(50.0));
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 50; ++v) {
+			histogram.record(v);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		Assert.assertEquals(50l, snapshot.getTotalCount());
+		Assert.assertEquals(50l, snapshot.getMax());
+		Assert.assertEquals(1l, snapshot.getValueAtPercentile(0.0));
+		Assert.assertEquals(25l, snapshot.getValueAtPercentile(50.0));
+		Assert.assertEquals(45l, snapshot.getValueAtPercentile(90.0));
+		Assert.assertEquals(50l, snapshot.getValueAtPercentile(99.0));
+		Assert.assertEquals(50l, snapshot.getValueAtPercentile(100.0));
+	}
+
+	@Test
+	public void largeValuesWithinRelativeError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 100000; ++v) {
+			histogram.record(v * 1000l);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		assertWithinRelativeError(50000000l, snapshot.getValueAtPercentile(50.0));
+		assertWithinRelativeError(90000000l, snapshot.getValueAtPercentile(90.0));
+		assertWithinRelativeError(99000000l, snapshot.getValueAtPercentile(99.0));
+		// the percentile is not higher than the highest recorded value
+		Assert.assertEquals(100000000l, snapshot.getMax());
+		Assert.assertEquals(100000000l, snapshot.getValueAtPercentile(100.0));
+	}
+
+	@Test
+	public void extremeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5l);
+		histogram.record(Long.MAX_VALUE);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		Assert.assertEquals(2l, snapshot.getTotalCount());
+		// negative values are recorded as 0
+		Assert.assertEquals(0l, snapshot.getValueAtPercentile(50.0));
+		Assert.assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100.0));
+	}
+
+	@Test
+	public void snapshotResets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000l);
+		Assert.assertEquals(1000l, histogram.snapshotAndReset().getMax());
+		histogram.record(10l);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+		Assert.assertEquals(1l, snapshot.getTotalCount());
+		Assert.assertEquals(10l, snapshot.getMax());
+		Assert.assertEquals(10l, snapshot.getValueAtPercentile(99.0));
+	}
+
+	@Test
+	public void bucketsCoverValues() {
+		for (long v: new long[] {0l, 1l, 63l, 64l, 65l, 1000l, 123456789l, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+			final int index = LatencyHistogram.bucketIndex(v);
+			final long highest = LatencyHistogram.highestValueInBucket(index);
+			Assert.assertTrue("value " + v, highest >= v);
+			Assert.assertTrue("value " + v, highest - v <= v / 32);
+			if (index > 0) {
+				Assert.assertTrue("value " + v, LatencyHistogram.highestValueInBucket(index -1) < v);
+			}
+		}
+	}
+
+	private static void assertWithinRelativeError(long expected, long actual) {
+		Assert.assertTrue("expected " + expected + ", but was " + actual, Math.abs(actual - expected) <= expected / 32);
+	}
+}
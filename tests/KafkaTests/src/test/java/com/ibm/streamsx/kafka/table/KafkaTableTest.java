@@ -0,0 +1,186 @@
+package com.ibm.streamsx.kafka.table;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streams.operator.types.ValueFactory;
+import com.ibm.streamsx.kafka.clients.consumer.KafkaConsumerClient;
+import com.ibm.streamsx.kafka.clients.consumer.StartPosition;
+import com.ibm.streamsx.kafka.properties.KafkaOperatorProperties;
+import com.ibm.streamsx.kafka.testfixtures.Stubs;
+
+/*
+ * Tests the table of the consumer in table mode: tombstones, key normalization,
+ * registration, the bootstrap from the beginning to the end offsets, and the bootstrap marker of the consumer client.
+ */
+public class KafkaTableTest {
+
+	private static final String TABLE_NAME = "KafkaTableTest";
+	private static final String TOPIC = "test";
+
+	private KafkaTable table;
+
+	@After
+	public void tearDown() {
+		if (table != null) table.unregister();
+	}
+
+	@Test
+	public void tombstoneRemovesKey() {
+		table = KafkaTable.create(TABLE_NAME);
+		table.put("k", "v1");
+		table.put("k", "v2");
+		Assert.assertEquals("v2", table.get("k"));
+		Assert.assertEquals(1l, table.size());
+		table.put("k", null);
+		Assert.assertNull(table.get("k"));
+		Assert.assertEquals(0l, table.size());
+		// a tombstone for a missing key is ignored
+		table.put("missing", null);
+		Assert.assertEquals(0l, table.size());
+		Assert.assertEquals(2l, table.getNumLookups());
+		Assert.assertEquals(1l, table.getNumHits());
+	}
+
+	@Test
+	public void keysAreNormalized() {
+		table = KafkaTable.create(TABLE_NAME);
+		table.put("string", 1l);
+		table.put("bytes".getBytes(StandardCharsets.UTF_8), 2l);
+		Assert.assertEquals(1l, table.get(new RString("string")));
+		Assert.assertEquals(2l, table.get(ValueFactory.newBlob("bytes".getBytes(StandardCharsets.UTF_8))));
+		Assert.assertEquals(2l, table.get("bytes".getBytes(StandardCharsets.UTF_8)));
+		// a tombstone with the other key type removes the entry
+		table.put(new RString("string"), null);
+		Assert.assertNull(table.get("string"));
+	}
+
+	@Test
+	public void registration() {
+		table = KafkaTable.create(TABLE_NAME);
+		Assert.assertSame(table, KafkaTable.getTable(TABLE_NAME));
+		try {
+			KafkaTable.create(TABLE_NAME);
+			Assert.fail("a table name must be unique");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		table.unregister();
+		Assert.assertNull(KafkaTable.getTable(TABLE_NAME));
+		table = null;
+	}
+
+	@Test
+	public void bootstrap() throws Exception {
+		table = KafkaTable.create(TABLE_NAME);
+		Assert.assertFalse(table.isBootstrapComplete());
+		Assert.assertFalse(table.awaitBootstrap(10l, TimeUnit.MILLISECONDS));
+		final KafkaTable t = table;
+		Thread loader = new Thread(() -> {
+			t.put("k", "v");
+			t.setBootstrapComplete();
+		});
+		loader.start();
+		Assert.assertTrue(table.awaitBootstrap(5l, TimeUnit.SECONDS));
+		Assert.assertTrue(table.isBootstrapComplete());
+		// the entries put before the completion are visible after waiting
+		Assert.assertEquals("v", table.get("k"));
+		loader.join();
+	}
+
+	@Test
+	public void bootstrapEndOffsetsExcludeReadPartitions() throws Exception {
+		MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+		Map<TopicPartition, Long> endOffsets = new HashMap<>();
+		for (int p = 0; p < 3; ++p) {
+			beginningOffsets.put(new TopicPartition(TOPIC, p), 10l);
+		}
+		// partitions 1 and 2 are empty
+		endOffsets.put(new TopicPartition(TOPIC, 0), 20l);
+		endOffsets.put(new TopicPartition(TOPIC, 1), 10l);
+		endOffsets.put(new TopicPartition(TOPIC, 2), 10l);
+		mockConsumer.updateBeginningOffsets(beginningOffsets);
+		mockConsumer.updateEndOffsets(endOffsets);
+		KafkaConsumerClient client = createClient(mockConsumer);
+		try {
+			client.subscribeToTopics(Arrays.asList(TOPIC), Arrays.asList(0, 1, 2), StartPosition.Beginning);
+			Map<TopicPartition, Long> unread = client.getEndOffsetsOfUnreadPartitions();
+			Assert.assertEquals(1, unread.size());
+			Assert.assertEquals(Long.valueOf(20l), unread.get(new TopicPartition(TOPIC, 0)));
+		} finally {
+			client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void bootstrapMarkerFollowsLastRecord() throws Exception {
+		MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		final TopicPartition tp0 = new TopicPartition(TOPIC, 0);
+		final TopicPartition tp1 = new TopicPartition(TOPIC, 1);
+		Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+		Map<TopicPartition, Long> endOffsets = new HashMap<>();
+		beginningOffsets.put(tp0, 0l);
+		beginningOffsets.put(tp1, 0l);
+		endOffsets.put(tp0, 2l);
+		// the end offset of partition 1 is behind a transaction marker at offset 2
+		endOffsets.put(tp1, 3l);
+		mockConsumer.updateBeginningOffsets(beginningOffsets);
+		mockConsumer.updateEndOffsets(endOffsets);
+		KafkaConsumerClient client = createClient(mockConsumer);
+		try {
+			client.subscribeToTopics(Arrays.asList(TOPIC), Arrays.asList(0, 1), StartPosition.Beginning);
+			Assert.assertEquals(2, client.beginBootstrap());
+			mockConsumer.schedulePollTask(() -> {
+				mockConsumer.addRecord(record(tp0, 0l));
+				mockConsumer.addRecord(record(tp0, 1l));
+				mockConsumer.addRecord(record(tp1, 0l));
+			});
+			mockConsumer.schedulePollTask(() -> mockConsumer.addRecord(record(tp1, 1l)));
+			// the consumer skips the transaction marker without returning a record
+			mockConsumer.schedulePollTask(() -> mockConsumer.seek(tp1, 3l));
+			mockConsumer.schedulePollTask(() -> mockConsumer.addRecord(record(tp1, 3l)));
+			client.sendStartPollingEvent(10l);
+			List<ConsumerRecord<?, ?>> records = new ArrayList<>();
+			final long deadline = System.currentTimeMillis() + 5000l;
+			while (records.size() < 6 && System.currentTimeMillis() < deadline) {
+				ConsumerRecord<?, ?> record = client.getNextRecord();
+				if (record != null) records.add(record);
+			}
+			Assert.assertEquals(6, records.size());
+			Assert.assertSame(KafkaConsumerClient.BOOTSTRAP_COMPLETE, records.get(4));
+			// the marker is queued once
+			Assert.assertEquals(3l, records.get(5).offset());
+		} finally {
+			client.sendShutdownEvent(5l, TimeUnit.SECONDS);
+		}
+	}
+
+	private static KafkaConsumerClient createClient(MockConsumer<byte[], byte[]> mockConsumer) throws Exception {
+		return new KafkaConsumerClient.KafkaConsumerClientBuilder()
+				.setKafkaProperties(new KafkaOperatorProperties())
+				.setKeyClass(String.class)
+				.setValueClass(String.class)
+				.setOperatorContext(Stubs.operatorContext())
+				.setConsumerFactory(p -> mockConsumer)
+				.build();
+	}
+
+	private static ConsumerRecord<byte[], byte[]> record(TopicPartition tp, long offset) {
+		return new ConsumerRecord<>(tp.topic(), tp.partition(), offset, "k".getBytes(StandardCharsets.UTF_8), "v".getBytes(StandardCharsets.UTF_8));
+	}
+}
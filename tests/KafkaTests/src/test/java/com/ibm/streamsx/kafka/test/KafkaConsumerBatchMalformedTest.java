@@ -0,0 +1,120 @@
+package com.ibm.streamsx.kafka.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.Tuple;
+import com.ibm.streamsx.kafka.test.utils.Constants;
+import com.ibm.streamsx.kafka.test.utils.Delay;
+import com.ibm.streamsx.kafka.test.utils.KafkaSPLStreamsUtils;
+import com.ibm.streamsx.topology.TStream;
+import com.ibm.streamsx.topology.Topology;
+import com.ibm.streamsx.topology.context.StreamsContext;
+import com.ibm.streamsx.topology.context.StreamsContext.Type;
+import com.ibm.streamsx.topology.context.StreamsContextFactory;
+import com.ibm.streamsx.topology.spl.SPL;
+import com.ibm.streamsx.topology.spl.SPLStream;
+import com.ibm.streamsx.topology.spl.SPLStreams;
+import com.ibm.streamsx.topology.tester.Condition;
+import com.ibm.streamsx.topology.tester.Tester;
+
+/*
+ * Test that the consumer in batch mode drops messages with
+ * malformed value from all list attributes, so that the
+ * elements with the same index belong to the same message.
+ *
+ * The producer sends string messages, which the consumer
+ * reads as int32 values. Only messages of four bytes can be
+ * deserialized into an int32 value.
+ *
+ * This test requires the following:
+ *  - topic "test" be created on the Kafka server
+ *  - appConfig "kafka-test" be created on the domain
+ */
+public class KafkaConsumerBatchMalformedTest extends AbstractKafkaTest {
+
+	private static final String TEST_NAME = "KafkaConsumerBatchMalformedTest";
+	private static final String[] DATA = {"abcd", "x", "efgh", "yz", "ijkl", "malformed", "mnop"};
+	private static final StreamSchema BATCH_SCHEMA = com.ibm.streams.operator.Type.Factory.getStreamSchema("tuple<list<rstring> key, list<int32> message, list<int64> offset>");
+
+	public KafkaConsumerBatchMalformedTest() throws Exception {
+		super(TEST_NAME);
+	}
+
+	@Test
+	public void kafkaConsumerBatchMalformedTest() throws Exception {
+		Topology topo = getTopology();
+
+		// create the producer (produces tuples after a short delay); the keys are key_0, key_1, ...
+		TStream<String> stringSrcStream = topo.strings(DATA).modify(new Delay<>(Constants.PRODUCER_DELAY));
+		SPL.invokeSink(Constants.KafkaProducerOp,
+				KafkaSPLStreamsUtils.convertStreamToKafkaTuple(stringSrcStream),
+				getKafkaParams());
+
+		// create the consumer, which submits all messages of the batch in one tuple
+		Map<String, Object> consumerParams = getKafkaParams();
+		consumerParams.put("batchSize", DATA.length);
+		consumerParams.put("batchTimeout", 10.0);
+		SPLStream consumerStream = SPL.invokeSource(topo, Constants.KafkaConsumerOp, consumerParams, BATCH_SCHEMA);
+		TStream<String> pairStream = consumerStream.multiTransform(t -> toKeyMessagePairs(t));
+		SPLStream msgStream = SPLStreams.stringToSPLStream(pairStream);
+
+		// test the output of the consumer
+		StreamsContext<?> context = StreamsContextFactory.getStreamsContext(Type.DISTRIBUTED_TESTER);
+		Tester tester = topo.getTester();
+		Condition<List<String>> condition = KafkaSPLStreamsUtils.stringContentsUnordered(tester, msgStream, getExpectedPairs());
+		tester.complete(context, new HashMap<>(), condition, 30, TimeUnit.SECONDS);
+
+		// check the results
+		Assert.assertTrue(condition.getResult().size() > 0);
+		Assert.assertTrue(condition.getResult().toString(), condition.valid());
+	}
+
+	/*
+	 * converts a batch tuple into one string per message, which contains the list elements with same index
+	 */
+	private static List<String> toKeyMessagePairs(Tuple tuple) {
+		List<?> keys = tuple.getList("key");
+		List<?> messages = tuple.getList("message");
+		List<?> offsets = tuple.getList("offset");
+		List<String> pairs = new ArrayList<String>();
+		if (keys.size() != messages.size() || offsets.size() != messages.size()) {
+			// makes the test fail with a readable result
+			pairs.add("list sizes differ: keys=" + keys + ", messages=" + messages + ", offsets=" + offsets);
+			return pairs;
+		}
+		for (int i = 0; i < messages.size(); ++i) {
+			pairs.add(keys.get(i) + "=" + messages.get(i));
+		}
+		return pairs;
+	}
+
+	private static String[] getExpectedPairs() {
+		List<String> pairs = new ArrayList<String>();
+		for (int i = 0; i < DATA.length; ++i) {
+			byte[] bytes = DATA[i].getBytes(StandardCharsets.UTF_8);
+			if (bytes.length == Integer.BYTES) {
+				pairs.add("key_" + i + "=" + ByteBuffer.wrap(bytes).getInt());
+			}
+		}
+		return pairs.toArray(new String[0]);
+	}
+
+	private Map<String, Object> getKafkaParams() {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("topic", Constants.TOPIC_TEST);
+		params.put("appConfigName", Constants.APP_CONFIG);
+
+		return params;
+	}
+}
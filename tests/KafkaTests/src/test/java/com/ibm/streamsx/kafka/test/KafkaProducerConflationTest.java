@@ -0,0 +1,108 @@
+package com.ibm.streamsx.kafka.test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streamsx.kafka.test.utils.Constants;
+import com.ibm.streamsx.kafka.test.utils.Delay;
+import com.ibm.streamsx.kafka.test.utils.KafkaSPLStreamsUtils;
+import com.ibm.streamsx.topology.TStream;
+import com.ibm.streamsx.topology.Topology;
+import com.ibm.streamsx.topology.context.StreamsContext;
+import com.ibm.streamsx.topology.context.StreamsContext.Type;
+import com.ibm.streamsx.topology.context.StreamsContextFactory;
+import com.ibm.streamsx.topology.function.BiFunction;
+import com.ibm.streamsx.topology.spl.SPL;
+import com.ibm.streamsx.topology.spl.SPLStream;
+import com.ibm.streamsx.topology.spl.SPLStreams;
+import com.ibm.streamsx.topology.tester.Condition;
+import com.ibm.streamsx.topology.tester.Tester;
+
+/*
+ * Test that the producer sends only the latest message
+ * of every key within the conflation window.
+ *
+ * All messages arrive within one conflation window. The
+ * messages are keyed with key_0, key_1, and key_2 in turn.
+ *
+ * This test requires the following:
+ *  - topic "test" be created on the Kafka server
+ *  - appConfig "kafka-test" be created on the domain
+ */
+public class KafkaProducerConflationTest extends AbstractKafkaTest {
+
+	private static final String TEST_NAME = "KafkaProducerConflationTest";
+	private static final int NUM_KEYS = 3;
+
+	public KafkaProducerConflationTest() throws Exception {
+		super(TEST_NAME);
+	}
+
+	@Test
+	public void kafkaProducerConflationTest() throws Exception {
+		Topology topo = getTopology();
+
+		// create the producer (produces tuples after a short delay)
+		TStream<String> stringSrcStream = topo.strings(Constants.STRING_DATA).modify(new Delay<>(Constants.PRODUCER_DELAY));
+		SPLStream keyedStream = SPLStreams.convertStream(stringSrcStream, getCyclicKeyBiFunction(), KafkaSPLStreamsUtils.STRING_SCHEMA);
+		Map<String, Object> producerParams = getKafkaParams();
+		producerParams.put("conflationWindow", 10.0);
+		SPL.invokeSink(Constants.KafkaProducerOp, keyedStream, producerParams);
+
+		// create the consumer
+		SPLStream consumerStream = SPL.invokeSource(topo, Constants.KafkaConsumerOp, getKafkaParams(), KafkaSPLStreamsUtils.STRING_SCHEMA);
+		SPLStream msgStream = SPLStreams.stringToSPLStream(consumerStream.convert(t -> t.getString("key") + "=" + t.getString("message")));
+
+		// test the output of the consumer
+		StreamsContext<?> context = StreamsContextFactory.getStreamsContext(Type.DISTRIBUTED_TESTER);
+		Tester tester = topo.getTester();
+		Condition<List<String>> condition = KafkaSPLStreamsUtils.stringContentsUnordered(tester, msgStream, getExpectedMessages());
+		tester.complete(context, new HashMap<>(), condition, 30, TimeUnit.SECONDS);
+
+		// check the results
+		Assert.assertTrue(condition.getResult().size() > 0);
+		Assert.assertTrue(condition.getResult().toString(), condition.valid());
+	}
+
+	private static BiFunction<String, OutputTuple, OutputTuple> getCyclicKeyBiFunction() {
+		return new BiFunction<String, OutputTuple, OutputTuple>() {
+			private static final long serialVersionUID = 1L;
+			private int counter = 0;
+
+			@Override
+			public OutputTuple apply(String message, OutputTuple outTuple) {
+				outTuple.setString("key", "key_" + (counter++ % NUM_KEYS));
+				outTuple.setString("message", message);
+
+				return outTuple;
+			}
+		};
+	}
+
+	/*
+	 * the last message of every key
+	 */
+	private static String[] getExpectedMessages() {
+		Map<String, String> latest = new LinkedHashMap<String, String>();
+		for (int i = 0; i < Constants.STRING_DATA.length; ++i) {
+			latest.put("key_" + (i % NUM_KEYS), Constants.STRING_DATA[i]);
+		}
+		return latest.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+	}
+
+	private Map<String, Object> getKafkaParams() {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("topic", Constants.TOPIC_TEST);
+		params.put("appConfigName", Constants.APP_CONFIG);
+
+		return params;
+	}
+}
@@ -0,0 +1,93 @@
+package com.ibm.streamsx.kafka.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streamsx.kafka.test.utils.Constants;
+import com.ibm.streamsx.kafka.test.utils.Delay;
+import com.ibm.streamsx.kafka.test.utils.KafkaSPLStreamsUtils;
+import com.ibm.streamsx.topology.TStream;
+import com.ibm.streamsx.topology.Topology;
+import com.ibm.streamsx.topology.context.StreamsContext;
+import com.ibm.streamsx.topology.context.StreamsContext.Type;
+import com.ibm.streamsx.topology.context.StreamsContextFactory;
+import com.ibm.streamsx.topology.spl.SPL;
+import com.ibm.streamsx.topology.spl.SPLStream;
+import com.ibm.streamsx.topology.spl.SPLStreams;
+import com.ibm.streamsx.topology.tester.Condition;
+import com.ibm.streamsx.topology.tester.Tester;
+
+/*
+ * Test that messages, which cannot be written to Kafka,
+ * are submitted to the error output port of the producer.
+ * The maximum request size of the producer is reduced, so that
+ * the long messages fail with a RecordTooLargeException and
+ * the short messages are written to the topic.
+ *
+ * This test requires the following:
+ *  - appConfig "kafka-test" be created on the domain
+ */
+public class KafkaProducerErrorPortTest extends AbstractKafkaTest {
+
+	private static final String TEST_NAME = "KafkaProducerErrorPortTest";
+	private static final String PROPERTIES_FILE = "etc/max_request_size.properties";
+	private static final String RECORD_TOO_LARGE = "org.apache.kafka.common.errors.RecordTooLargeException";
+	// longer than the maximum request size of 200 bytes
+	private static final String LONG_PREFIX = String.format("%0300d", 0);
+	private static final StreamSchema ERROR_SCHEMA = com.ibm.streams.operator.Type.Factory.getStreamSchema("tuple<rstring message, rstring topic, rstring errorClass>");
+
+	public KafkaProducerErrorPortTest() throws Exception {
+		super(TEST_NAME);
+	}
+
+	@Test
+	public void kafkaProducerErrorPortTest() throws Exception {
+		Topology topo = getTopology();
+		topo.addFileDependency(PROPERTIES_FILE, "etc");
+
+		// every message is sent as short and as long message
+		List<String> data = new ArrayList<>();
+		String[] longMessages = new String[Constants.STRING_DATA.length];
+		for (int i = 0; i < Constants.STRING_DATA.length; ++i) {
+			longMessages[i] = LONG_PREFIX + Constants.STRING_DATA[i];
+			data.add(Constants.STRING_DATA[i]);
+			data.add(longMessages[i]);
+		}
+
+		// create the producer (produces tuples after a short delay)
+		TStream<String> stringSrcStream = topo.strings(data.toArray(new String[0])).modify(new Delay<>(5000));
+		SPLStream errorStream = SPL.invokeOperator(Constants.KafkaProducerOp,
+				KafkaSPLStreamsUtils.convertStreamToKafkaTuple(stringSrcStream),
+				ERROR_SCHEMA, getKafkaParams());
+		// messages that failed for another reason are reported with their error class
+		SPLStream msgStream = SPLStreams.stringToSPLStream(errorStream.convert(t -> 
+				RECORD_TOO_LARGE.equals(t.getString("errorClass"))? t.getString("message"): t.getString("errorClass")));
+
+		// test the error output of the producer
+		StreamsContext<?> context = StreamsContextFactory.getStreamsContext(Type.DISTRIBUTED_TESTER);
+		Tester tester = topo.getTester();
+		Condition<List<String>> condition = KafkaSPLStreamsUtils.stringContentsUnordered(tester, msgStream, longMessages);
+		tester.complete(context, new HashMap<>(), condition, 30, TimeUnit.SECONDS);
+
+		// check the results
+		Assert.assertTrue(condition.getResult().size() > 0);
+		Assert.assertTrue(condition.getResult().toString(), condition.valid());
+	}
+
+	private Map<String, Object> getKafkaParams() {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("topic", Constants.TOPIC_TEST);
+		params.put("appConfigName", Constants.APP_CONFIG);
+		params.put("propertiesFile", PROPERTIES_FILE);
+
+		return params;
+	}
+}
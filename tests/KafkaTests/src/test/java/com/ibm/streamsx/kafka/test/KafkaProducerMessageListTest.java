@@ -0,0 +1,95 @@
+package com.ibm.streamsx.kafka.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.streams.operator.OutputTuple;
+import com.ibm.streams.operator.StreamSchema;
+import com.ibm.streams.operator.types.RString;
+import com.ibm.streamsx.kafka.test.utils.Constants;
+import com.ibm.streamsx.kafka.test.utils.Delay;
+import com.ibm.streamsx.kafka.test.utils.KafkaSPLStreamsUtils;
+import com.ibm.streamsx.topology.TStream;
+import com.ibm.streamsx.topology.Topology;
+import com.ibm.streamsx.topology.context.StreamsContext;
+import com.ibm.streamsx.topology.context.StreamsContext.Type;
+import com.ibm.streamsx.topology.context.StreamsContextFactory;
+import com.ibm.streamsx.topology.function.BiFunction;
+import com.ibm.streamsx.topology.spl.SPL;
+import com.ibm.streamsx.topology.spl.SPLStream;
+import com.ibm.streamsx.topology.spl.SPLStreams;
+import com.ibm.streamsx.topology.tester.Condition;
+import com.ibm.streamsx.topology.tester.Tester;
+
+/*
+ * Test that the producer sends every element of a
+ * list-typed message attribute as a separate message.
+ *
+ * This test requires the following:
+ *  - topic "test" be created on the Kafka server
+ *  - appConfig "kafka-test" be created on the domain
+ */
+public class KafkaProducerMessageListTest extends AbstractKafkaTest {
+
+	private static final String TEST_NAME = "KafkaProducerMessageListTest";
+	private static final StreamSchema STRING_LIST_SCHEMA = com.ibm.streams.operator.Type.Factory.getStreamSchema("tuple<list<rstring> message>");
+
+	public KafkaProducerMessageListTest() throws Exception {
+		super(TEST_NAME);
+	}
+
+	@Test
+	public void kafkaProducerMessageListTest() throws Exception {
+		Topology topo = getTopology();
+
+		// create the producer (produces a single tuple with all messages after a short delay)
+		TStream<String> stringSrcStream = topo.strings("batch").modify(new Delay<>(Constants.PRODUCER_DELAY));
+		SPLStream listStream = SPLStreams.convertStream(stringSrcStream, getStringListBiFunction(), STRING_LIST_SCHEMA);
+		SPL.invokeSink(Constants.KafkaProducerOp, listStream, getKafkaParams());
+
+		// create the consumer
+		SPLStream consumerStream = SPL.invokeSource(topo, Constants.KafkaConsumerOp, getKafkaParams(), KafkaSPLStreamsUtils.STRING_NOKEY_SCHEMA);
+		SPLStream msgStream = SPLStreams.stringToSPLStream(consumerStream.convert(t -> t.getString("message")));
+
+		// test the output of the consumer
+		StreamsContext<?> context = StreamsContextFactory.getStreamsContext(Type.DISTRIBUTED_TESTER);
+		Tester tester = topo.getTester();
+		Condition<List<String>> condition = KafkaSPLStreamsUtils.stringContentsUnordered(tester, msgStream, Constants.STRING_DATA);
+		tester.complete(context, new HashMap<>(), condition, 30, TimeUnit.SECONDS);
+
+		// check the results
+		Assert.assertTrue(condition.getResult().size() > 0);
+		Assert.assertTrue(condition.getResult().toString(), condition.valid());
+	}
+
+	private static BiFunction<String, OutputTuple, OutputTuple> getStringListBiFunction() {
+		return new BiFunction<String, OutputTuple, OutputTuple>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public OutputTuple apply(String ignored, OutputTuple outTuple) {
+				List<RString> messages = new ArrayList<RString>();
+				for (String msg : Constants.STRING_DATA)
+					messages.add(new RString(msg));
+				outTuple.setList("message", messages);
+
+				return outTuple;
+			}
+		};
+	}
+
+	private Map<String, Object> getKafkaParams() {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("topic", Constants.TOPIC_TEST);
+		params.put("appConfigName", Constants.APP_CONFIG);
+
+		return params;
+	}
+}